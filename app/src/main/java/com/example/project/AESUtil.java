@@ -1,6 +1,13 @@
 package com.example.project;
-import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 import javax.crypto.SecretKey;
 
 /**
@@ -9,10 +16,32 @@ import javax.crypto.SecretKey;
 public class AESUtil {
 
     // 指定加密算法为AES
-    private static final String ALGORITHM = "AES";
+    static final String ALGORITHM = "AES";
+
+    // 指定生成密钥的长度为256位，旧文件的128位密钥仍然可以解密，见 Reencryptor
+    private static final int KEY_SIZE = 256;
+
+    // 流式加密使用的算法，分块认证加密
+    static final String STREAM_TRANSFORMATION = "AES/GCM/NoPadding";
+
+    // 流式容器的魔数 "SFCK" 和版本号
+    private static final byte[] STREAM_MAGIC = {'S', 'F', 'C', 'K'};
+    private static final byte STREAM_VERSION = 1;
+
+    // 默认分块大小为64KB，读取时允许的最大分块为1MB
+    static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    static final int MAX_CHUNK_SIZE = 1024 * 1024;
+
+    // GCM的IV长度、标签长度以及IV中随机前缀的长度
+    static final int GCM_IV_LENGTH = 12;
+    static final int GCM_TAG_LENGTH = 16;
+    static final int NONCE_PREFIX_LENGTH = 8;
+
+    // 流式容器头部长度：魔数 + 版本 + 分块大小 + IV前缀
+    static final int STREAM_HEADER_LENGTH = STREAM_MAGIC.length + 1 + 4 + NONCE_PREFIX_LENGTH;
 
-    // 指定生成密钥的长度为128位
-    private static final int KEY_SIZE = 128;
+    // 分块头部中表示最后一个分块的标记位
+    static final int LAST_CHUNK_FLAG = 0x80000000;
 
     /**
      * 生成一个AES密钥。
@@ -20,9 +49,7 @@ public class AESUtil {
      * @throws Exception 抛出异常，包括密钥生成失败的情况
      */
     public static SecretKey generateKey() throws Exception {
-        KeyGenerator keyGenerator = KeyGenerator.getInstance(ALGORITHM); // 创建一个密钥生成器
-        keyGenerator.init(KEY_SIZE); // 初始化密钥生成器，设置密钥长度
-        return keyGenerator.generateKey(); // 生成密钥并返回
+        return CipherEngine.current().generateKey(KEY_SIZE); // 使用当前线程缓存的密钥生成器生成密钥
     }
 
     /**
@@ -33,9 +60,7 @@ public class AESUtil {
      * @throws Exception 抛出异常，包括加密过程失败的情况
      */
     public static byte[] encrypt(byte[] dataToEncrypt, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance(ALGORITHM); // 创建一个Cipher对象，用于加密
-        cipher.init(Cipher.ENCRYPT_MODE, key); // 初始化为加密模式
-        return cipher.doFinal(dataToEncrypt); // 加密数据并返回加密后的数据
+        return CipherEngine.current().encrypt(dataToEncrypt, key); // 复用当前线程的Cipher和缓冲区进行加密
     }
 
     /**
@@ -46,8 +71,160 @@ public class AESUtil {
      * @throws Exception 抛出异常，包括解密过程失败的情况
      */
     public static byte[] decrypt(byte[] encryptedData, SecretKey key) throws Exception {
-        Cipher cipher = Cipher.getInstance(ALGORITHM); // 创建一个Cipher对象，用于解密
-        cipher.init(Cipher.DECRYPT_MODE, key); // 初始化为解密模式
-        return cipher.doFinal(encryptedData); // 解密数据并返回解密后的数据
+        return CipherEngine.current().decrypt(encryptedData, key); // 复用当前线程的Cipher和缓冲区进行解密
+    }
+
+    /**
+     * 使用指定的密钥加密 src 中剩余的数据并写入 dst，不分配新的数组。
+     * @param src 明文缓冲区
+     * @param dst 密文缓冲区，剩余空间需不少于 {@link #getOutputSize} 的返回值
+     * @param key 加密密钥
+     * @return 返回写入 dst 的字节数
+     * @throws Exception 抛出异常，包括加密过程失败的情况
+     */
+    public static int encrypt(ByteBuffer src, ByteBuffer dst, SecretKey key) throws Exception {
+        return CipherEngine.current().encrypt(src, dst, key);
+    }
+
+    /**
+     * 使用指定的密钥解密 src 中剩余的数据并写入 dst，不分配新的数组。
+     * @param src 密文缓冲区
+     * @param dst 明文缓冲区，剩余空间需不少于 {@link #getOutputSize} 的返回值
+     * @param key 解密密钥
+     * @return 返回写入 dst 的字节数
+     * @throws Exception 抛出异常，包括解密过程失败的情况
+     */
+    public static int decrypt(ByteBuffer src, ByteBuffer dst, SecretKey key) throws Exception {
+        return CipherEngine.current().decrypt(src, dst, key);
+    }
+
+    /**
+     * 计算加密或解密指定长度的数据所需的输出缓冲区大小。
+     * @param inputLength 输入数据长度
+     * @return 返回输出缓冲区的最小长度
+     * @throws Exception 抛出异常，包括创建Cipher失败的情况
+     */
+    public static int getOutputSize(int inputLength) throws Exception {
+        return CipherEngine.current().getOutputSize(inputLength);
+    }
+
+    /**
+     * 创建一个加密输出流，写入的数据会被分块加密后写入底层输出流。
+     * 调用者必须关闭返回的流，否则最后一个分块不会被写出。
+     * @param out 底层输出流，例如 MediaStore 文件的输出流
+     * @param key 加密密钥
+     * @return 返回加密输出流
+     * @throws IOException 写入文件头失败时抛出
+     */
+    public static OutputStream newEncryptingStream(OutputStream out, SecretKey key) throws IOException {
+        return new ChunkedCipherOutputStream(out, key, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * 创建一个解密输入流，读取 {@link #newEncryptingStream} 写出的数据，每个分块在返回前都会被校验。
+     * @param in 底层输入流
+     * @param key 解密密钥
+     * @return 返回解密输入流
+     * @throws IOException 文件头无效或读取失败时抛出
+     */
+    public static InputStream newDecryptingStream(InputStream in, SecretKey key) throws IOException {
+        return new ChunkedCipherInputStream(in, key);
+    }
+
+    /**
+     * 根据文件头自动识别加密格式并返回解密输入流。
+     * 分块格式的数据以流的方式解密；旧版整体加密的数据只能一次性读入后解密。
+     * @param in 底层输入流
+     * @param key 解密密钥
+     * @return 返回解密输入流
+     * @throws Exception 读取或解密失败时抛出
+     */
+    public static InputStream openDecryptingStream(InputStream in, SecretKey key) throws Exception {
+        PushbackInputStream pushback = new PushbackInputStream(in, STREAM_MAGIC.length);
+        byte[] magic = new byte[STREAM_MAGIC.length];
+        int read = 0;
+        while (read < magic.length) {
+            int n = pushback.read(magic, read, magic.length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        pushback.unread(magic, 0, read);
+        if (read == magic.length && Arrays.equals(magic, STREAM_MAGIC)) {
+            return newDecryptingStream(pushback, key);
+        }
+        // 旧版格式：整体读入后解密
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = pushback.read(chunk)) != -1) {
+            buffer.write(chunk, 0, n);
+        }
+        pushback.close();
+        return new ByteArrayInputStream(decrypt(buffer.toByteArray(), key));
+    }
+
+    /**
+     * 生成流式容器的文件头。
+     * @param chunkSize 分块大小
+     * @param noncePrefix IV前缀
+     * @return 返回文件头字节数组
+     */
+    static byte[] buildStreamHeader(int chunkSize, byte[] noncePrefix) {
+        byte[] header = new byte[STREAM_HEADER_LENGTH];
+        System.arraycopy(STREAM_MAGIC, 0, header, 0, STREAM_MAGIC.length);
+        int offset = STREAM_MAGIC.length;
+        header[offset++] = STREAM_VERSION;
+        header[offset++] = (byte) (chunkSize >>> 24);
+        header[offset++] = (byte) (chunkSize >>> 16);
+        header[offset++] = (byte) (chunkSize >>> 8);
+        header[offset++] = (byte) chunkSize;
+        System.arraycopy(noncePrefix, 0, header, offset, NONCE_PREFIX_LENGTH);
+        return header;
+    }
+
+    /**
+     * 校验流式容器的文件头并取出分块大小。
+     * @param header 文件头字节数组
+     * @return 返回分块大小
+     * @throws IOException 文件头无效时抛出
+     */
+    static int parseStreamHeader(byte[] header) throws IOException {
+        for (int i = 0; i < STREAM_MAGIC.length; i++) {
+            if (header[i] != STREAM_MAGIC[i]) {
+                throw new IOException("不是有效的加密签名文件");
+            }
+        }
+        int offset = STREAM_MAGIC.length;
+        if (header[offset++] != STREAM_VERSION) {
+            throw new IOException("不支持的加密文件版本: " + header[offset - 1]);
+        }
+        int chunkSize = ((header[offset] & 0xFF) << 24) | ((header[offset + 1] & 0xFF) << 16)
+                | ((header[offset + 2] & 0xFF) << 8) | (header[offset + 3] & 0xFF);
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IOException("分块大小无效: " + chunkSize);
+        }
+        return chunkSize;
+    }
+
+    /**
+     * 把分块序号写入IV的最后4个字节。
+     * @param nonce IV数组
+     * @param index 分块序号
+     */
+    static void putChunkIndex(byte[] nonce, int index) {
+        nonce[NONCE_PREFIX_LENGTH] = (byte) (index >>> 24);
+        nonce[NONCE_PREFIX_LENGTH + 1] = (byte) (index >>> 16);
+        nonce[NONCE_PREFIX_LENGTH + 2] = (byte) (index >>> 8);
+        nonce[NONCE_PREFIX_LENGTH + 3] = (byte) index;
+    }
+
+    /**
+     * 用0覆盖数组内容，避免敏感数据残留在内存中。
+     * @param data 需要清除的数组
+     */
+    static void wipe(byte[] data) {
+        Arrays.fill(data, (byte) 0);
     }
 }
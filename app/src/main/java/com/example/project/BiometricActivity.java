@@ -15,6 +15,7 @@ public class BiometricActivity extends AppCompatActivity {
 
     private BiometricPrompt biometricPrompt; // 生物识别提示
     private BiometricPrompt.PromptInfo promptInfo; // 生物识别提示信息
+    private boolean authenticated; // 是否已经验证成功
 
     /**
      * 在Activity创建时调用，设置界面并初始化生物识别。
@@ -25,6 +26,7 @@ public class BiometricActivity extends AppCompatActivity {
         getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN, WindowManager.LayoutParams.FLAG_FULLSCREEN); // 设置全屏显示
         setContentView(R.layout.activity_biometric); // 设置布局文件
 
+        StartupPrewarmer.start(this); // 在提示显示期间预热加密、密钥和签名列表，验证成功之前不交出结果
         setupBiometricAuthentication(); // 设置生物识别身份验证
     }
 
@@ -39,6 +41,7 @@ public class BiometricActivity extends AppCompatActivity {
             public void onAuthenticationError(int errorCode, CharSequence errString) {
                 // 认证错误时调用
                 super.onAuthenticationError(errorCode, errString);
+                StartupPrewarmer.discard(); // 丢弃预热的签名列表
                 Toast.makeText(BiometricActivity.this, "取消生物识别: " + errString, Toast.LENGTH_LONG).show();
                 finish(); // 结束Activity
             }
@@ -47,6 +50,8 @@ public class BiometricActivity extends AppCompatActivity {
             public void onAuthenticationSucceeded(BiometricPrompt.AuthenticationResult result) {
                 // 认证成功时调用
                 super.onAuthenticationSucceeded(result);
+                authenticated = true;
+                StartupPrewarmer.unlock(); // 允许主界面取走预热的签名列表
                 startMainActivity(); // 启动主Activity
             }
 
@@ -79,6 +84,17 @@ public class BiometricActivity extends AppCompatActivity {
         finish(); // 结束当前Activity，返回到主界面
     }
 
+    /**
+     * 没有验证成功就关闭时丢弃预热的结果。
+     */
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (!authenticated && isFinishing()) {
+            StartupPrewarmer.discard();
+        }
+    }
+
     /**
      * 处理物理返回键事件，确保返回时关闭当前Activity。
      */
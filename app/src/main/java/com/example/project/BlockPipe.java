@@ -0,0 +1,213 @@
+package com.example.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * BlockPipe 类是连接两个线程的有界字节管道，用于让流水线的相邻阶段并行执行。
+ * 写端把数据攒成固定大小的块交给读端，总共只有 capacity 个块，写端超前过多时会阻塞等待读端归还。
+ * 块在两端之间循环使用，稳定运行时不再分配内存。调用 abort 后两端都会立即收到异常。
+ */
+final class BlockPipe {
+
+    private static final Block END = new Block(new byte[0]);  // 写端关闭或管道中止的标记
+
+    private final BlockingQueue<Block> full;   // 已写入、等待读端处理的块
+    private final BlockingQueue<Block> free;   // 读端处理完、可以再次写入的块
+    private volatile Throwable failure;        // abort 的原因
+
+    private final Sink sink = new Sink();
+    private final Source source = new Source();
+
+    /**
+     * 构造函数。
+     * @param blockSize 每个块的字节数
+     * @param capacity 块的总数，决定写端最多能超前读端多少数据
+     */
+    BlockPipe(int blockSize, int capacity) {
+        if (blockSize <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("块大小和容量必须为正数");
+        }
+        // 两个队列都多留一个位置给结束标记
+        this.full = new ArrayBlockingQueue<>(capacity + 1);
+        this.free = new ArrayBlockingQueue<>(capacity + 1);
+        for (int i = 0; i < capacity; i++) {
+            free.add(new Block(new byte[blockSize]));
+        }
+    }
+
+    /**
+     * @return 返回写端，只能由一个线程使用
+     */
+    OutputStream sink() {
+        return sink;
+    }
+
+    /**
+     * @return 返回读端，只能由一个线程使用
+     */
+    InputStream source() {
+        return source;
+    }
+
+    /**
+     * 中止管道，阻塞在任一端的线程都会被唤醒并收到异常。
+     * @param cause 中止的原因
+     */
+    void abort(Throwable cause) {
+        if (failure == null) {
+            failure = cause;
+        }
+        // 队列已满时对应的一端不会阻塞，放入失败也没有关系
+        free.offer(END);
+        full.offer(END);
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable cause = failure;
+        if (cause != null) {
+            throw new IOException("管道已中止: " + cause.getMessage(), cause);
+        }
+    }
+
+    private Block take(BlockingQueue<Block> queue) throws IOException {
+        checkFailure();
+        Block block;
+        try {
+            block = queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("管道等待被中断");
+        }
+        checkFailure();
+        return block;
+    }
+
+    /**
+     * 在两端之间传递的数据块。
+     */
+    private static final class Block {
+        final byte[] data;
+        int length;  // 有效字节数
+
+        Block(byte[] data) {
+            this.data = data;
+        }
+    }
+
+    private final class Sink extends OutputStream {
+        private Block block;
+        private boolean closed;
+
+        @Override
+        public void write(int b) throws IOException {
+            ensureBlock();
+            block.data[block.length++] = (byte) b;
+            if (block.length == block.data.length) {
+                flushBlock();
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                ensureBlock();
+                int n = Math.min(len, block.data.length - block.length);
+                System.arraycopy(b, off, block.data, block.length, n);
+                block.length += n;
+                off += n;
+                len -= n;
+                if (block.length == block.data.length) {
+                    flushBlock();
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            if (block != null && block.length > 0) {
+                flushBlock();
+            }
+            closed = true;
+            checkFailure();
+            full.offer(END);
+        }
+
+        private void ensureBlock() throws IOException {
+            if (closed) {
+                throw new IOException("管道写端已关闭");
+            }
+            if (block == null) {
+                block = take(free);
+                block.length = 0;
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            checkFailure();
+            full.offer(block);  // 块的总数不超过队列容量，不会失败
+            block = null;
+        }
+    }
+
+    private final class Source extends InputStream {
+        private Block block;
+        private int position;
+        private boolean eof;
+
+        @Override
+        public int read() throws IOException {
+            if (!fill()) {
+                return -1;
+            }
+            return block.data[position++] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, block.length - position);
+            System.arraycopy(block.data, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            eof = true;
+        }
+
+        /**
+         * 确保当前块中有未读数据。
+         * @return 到达末尾时返回 false
+         */
+        private boolean fill() throws IOException {
+            while (!eof && (block == null || position == block.length)) {
+                if (block != null) {
+                    free.offer(block);  // 归还读完的块
+                    block = null;
+                }
+                Block next = take(full);
+                if (next == END) {
+                    eof = true;
+                } else {
+                    block = next;
+                    position = 0;
+                }
+            }
+            return !eof;
+        }
+    }
+}
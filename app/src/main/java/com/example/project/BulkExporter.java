@@ -0,0 +1,201 @@
+package com.example.project;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BulkExporter 类把多个签名解密后导出到用户通过 SAF 选择的同一个 ZIP 文件中。
+ * 签名在有界的线程池中并行解密（线程数随 CPU 核数增长，最多 MAX_WORKERS 个），ZIP 由一个线程顺序写入，
+ * 见 ZipExportEngine。原本就是图片的签名原样导出，矢量和单色格式渲染为 PNG。
+ * 进度和结果在主线程回调，导出可以随时取消，取消或失败时删除不完整的 ZIP 文件。
+ */
+public final class BulkExporter {
+
+    private static final String TAG = "BulkExporter";
+
+    // 解密线程数的上限，解密和 PNG 编码都受 CPU 限制，更多线程只会增加内存占用
+    private static final int MAX_WORKERS = 4;
+
+    // 每个解密线程最多领先写入线程的条目数
+    private static final int IN_FLIGHT_PER_WORKER = 2;
+
+    /**
+     * 导出事件的回调，都在主线程调用。
+     */
+    public interface Listener {
+        /**
+         * @param completed 已经处理完的签名数
+         * @param total 签名总数
+         */
+        void onProgress(int completed, int total);
+
+        /**
+         * 导出完成。
+         * @param exported 导出的签名数
+         * @param failed 无法解密的签名数
+         */
+        void onFinished(int exported, int failed);
+
+        /**
+         * 导出失败或被取消，ZIP 文件已被删除。
+         * @param error 失败的原因，取消时为 null
+         */
+        void onFailed(Exception error);
+    }
+
+    /**
+     * 一次正在进行的导出。
+     */
+    public static final class Task {
+        private final ZipExportEngine engine;
+
+        private Task(ZipExportEngine engine) {
+            this.engine = engine;
+        }
+
+        /**
+         * 取消导出，可以在任意线程调用。
+         */
+        public void cancel() {
+            engine.cancel();
+        }
+    }
+
+    private BulkExporter() {
+    }
+
+    /**
+     * 开始在后台导出签名。
+     * @param context 任意上下文
+     * @param signatures 要导出的签名文件的 URI
+     * @param destination 用户通过 ACTION_CREATE_DOCUMENT 创建的 ZIP 文档
+     * @param listener 导出事件的回调
+     * @return 返回可以取消的导出任务
+     */
+    public static Task start(Context context, List<Uri> signatures, Uri destination, Listener listener) {
+        Context appContext = context.getApplicationContext();
+        int workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount, namedThreads("export-worker"));
+        ZipExportEngine engine = new ZipExportEngine(workers, workerCount * IN_FLIGHT_PER_WORKER);
+        Handler mainHandler = new Handler(Looper.getMainLooper());
+
+        List<ZipExportEngine.Job> jobs = new ArrayList<>(signatures.size());
+        for (Uri uri : signatures) {
+            jobs.add(() -> decrypt(appContext, uri));
+        }
+
+        Thread writer = new Thread(() -> {
+            ZipExportEngine.Result result = null;
+            Exception error = null;
+            try (OutputStream out = appContext.getContentResolver().openOutputStream(destination, "w")) {
+                if (out == null) {
+                    throw new FileNotFoundException("无法打开导出文件: " + destination);
+                }
+                result = engine.run(jobs, out, (completed, failed, total) ->
+                        mainHandler.post(() -> listener.onProgress(completed, total)));
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                workers.shutdownNow();
+            }
+            if (error != null || result.cancelled) {
+                deleteQuietly(appContext, destination);  // 不留下不完整的 ZIP
+                Exception failure = error;
+                mainHandler.post(() -> listener.onFailed(failure));
+            } else {
+                ZipExportEngine.Result finished = result;
+                mainHandler.post(() -> listener.onFinished(finished.exported, finished.failed.size()));
+            }
+        }, "export-writer");
+        writer.start();
+        return new Task(engine);
+    }
+
+    /**
+     * 解密一个签名。已经是图片的签名原样返回，其他格式渲染为 PNG。
+     */
+    private static ZipExportEngine.Entry decrypt(Context context, Uri uri) throws Exception {
+        byte[] plain;
+        try (InputStream in = SignatureVault.openDecrypted(context, uri)) {
+            plain = readAll(in);
+        }
+        String baseName = baseName(SignatureVault.getFileName(context, uri));
+        String extension = ZipExportEngine.imageExtension(plain);
+        if (extension != null) {
+            return new ZipExportEngine.Entry(baseName + extension, plain);
+        }
+        byte[] source = plain;
+        Bitmap bitmap = SignatureDecoder.decode(() -> new ByteArrayInputStream(source),
+                SignatureExporter.DEFAULT_TARGET_LONG_SIDE, SignatureExporter.DEFAULT_TARGET_LONG_SIDE);
+        AESUtil.wipe(plain);
+        if (bitmap == null) {
+            throw new IOException("无法识别的签名格式: " + uri);
+        }
+        try {
+            ByteArrayOutputStream png = new ByteArrayOutputStream();
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, png)) {
+                throw new IOException("图片编码失败: " + uri);
+            }
+            return new ZipExportEngine.Entry(baseName + ".png", png.toByteArray());
+        } finally {
+            if (bitmap.isMutable()) {
+                bitmap.eraseColor(0);  // 不在内存中残留明文像素
+            }
+            bitmap.recycle();
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        byte[] chunk = new byte[16 * 1024];
+        int read;
+        while ((read = in.read(chunk)) != -1) {
+            buffer.write(chunk, 0, read);
+        }
+        AESUtil.wipe(chunk);
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 去掉加密文件名的扩展名，导出时按内容重新加上。
+     */
+    private static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot > 0 ? fileName.substring(0, dot) : fileName;
+    }
+
+    private static void deleteQuietly(Context context, Uri document) {
+        try {
+            DocumentsContract.deleteDocument(context.getContentResolver(), document);
+        } catch (Exception e) {
+            Log.w(TAG, "无法删除不完整的导出文件", e);
+        }
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setPriority(Thread.NORM_PRIORITY - 1);  // 不和界面线程抢占 CPU
+            return thread;
+        };
+    }
+}
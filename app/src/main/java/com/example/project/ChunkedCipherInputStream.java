@@ -0,0 +1,175 @@
+package com.example.project;
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * ChunkedCipherInputStream 类读取 {@link ChunkedCipherOutputStream} 写出的分块容器，
+ * 每读入一个分块就立即校验其GCM标签并解密，只有校验通过的明文才会返回给调用者。
+ * 如果数据在最后一个分块之前结束，会抛出异常而不是静默返回截断的数据。
+ */
+public class ChunkedCipherInputStream extends FilterInputStream {
+
+    private final Cipher cipher;          // 用于逐块解密的Cipher对象
+    private final SecretKey key;          // 解密密钥
+    private final byte[] header;          // 文件头，作为附加认证数据的一部分
+    private final byte[] nonce = new byte[AESUtil.GCM_IV_LENGTH];  // 当前分块的IV
+    private final byte[] cipherBuffer;    // 密文分块缓冲区
+    private final byte[] plainBuffer;     // 已解密的明文缓冲区
+    private int position;                 // 明文缓冲区中的读取位置
+    private int available;                // 明文缓冲区中的有效字节数
+    private int chunkIndex;               // 下一个分块的序号
+    private boolean finished;             // 是否已经读到最后一个分块
+    private boolean closed;               // 是否已经关闭
+
+    /**
+     * 构造函数，读取并校验文件头。
+     * @param in 底层输入流，必须位于容器的起始位置
+     * @param key 解密密钥
+     * @throws IOException 文件头无效或读取失败时抛出
+     */
+    public ChunkedCipherInputStream(InputStream in, SecretKey key) throws IOException {
+        super(in);
+        this.key = key;
+        header = new byte[AESUtil.STREAM_HEADER_LENGTH];
+        readFully(header, 0, header.length);
+        int chunkSize = AESUtil.parseStreamHeader(header);
+        System.arraycopy(header, header.length - AESUtil.NONCE_PREFIX_LENGTH, nonce, 0, AESUtil.NONCE_PREFIX_LENGTH);
+        cipherBuffer = new byte[chunkSize + AESUtil.GCM_TAG_LENGTH];
+        plainBuffer = new byte[chunkSize];
+        try {
+            cipher = CipherEngine.obtain(AESUtil.STREAM_TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("无法创建解密器", e);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return plainBuffer[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, available - position);
+        System.arraycopy(plainBuffer, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int step = (int) Math.min(n - skipped, available - position);
+            position += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return available - position;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        AESUtil.wipe(plainBuffer);  // 清除残留的明文
+        CipherEngine.recycle(AESUtil.STREAM_TRANSFORMATION, cipher);  // 归还Cipher供后续的流复用
+        super.close();
+    }
+
+    /**
+     * 确保明文缓冲区中有可读数据，必要时读取并解密下一个分块。
+     * @return 如果还有数据返回 true，读到容器末尾返回 false
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (position == available) {
+            if (finished) {
+                return false;
+            }
+            readChunk();
+        }
+        return true;
+    }
+
+    /**
+     * 读取、校验并解密一个分块。
+     */
+    private void readChunk() throws IOException {
+        byte[] chunkHeader = new byte[4];
+        readFully(chunkHeader, 0, 4);
+        int value = ((chunkHeader[0] & 0xFF) << 24) | ((chunkHeader[1] & 0xFF) << 16)
+                | ((chunkHeader[2] & 0xFF) << 8) | (chunkHeader[3] & 0xFF);
+        boolean last = (value & AESUtil.LAST_CHUNK_FLAG) != 0;
+        int length = value & ~AESUtil.LAST_CHUNK_FLAG;
+        if (length > plainBuffer.length) {
+            throw new IOException("分块长度无效: " + length);
+        }
+        readFully(cipherBuffer, 0, length + AESUtil.GCM_TAG_LENGTH);
+
+        AESUtil.putChunkIndex(nonce, chunkIndex++);
+        try {
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(header);
+            cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+            available = cipher.doFinal(cipherBuffer, 0, length + AESUtil.GCM_TAG_LENGTH, plainBuffer, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("分块校验失败，数据已损坏或密钥错误", e);
+        }
+        position = 0;
+        finished = last;
+    }
+
+    /**
+     * 从底层输入流中读满指定长度的数据。
+     */
+    private void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            int n = in.read(b, off, len);
+            if (n < 0) {
+                throw new EOFException("加密数据不完整");
+            }
+            off += n;
+            len -= n;
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.project;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * ChunkedCipherOutputStream 类把写入的明文按固定大小分块，逐块进行AES-GCM加密后写入底层输出流。
+ * 内存中最多只保留一个分块的明文和密文，因此无论数据多大，占用的堆内存都保持不变。
+ *
+ * 容器格式：
+ * <pre>
+ * 头部：  magic(4) | version(1) | chunkSize(4) | noncePrefix(8)
+ * 分块：  header(4, 最高位为结束标记，其余为明文长度) | 密文 | GCM标签(16)
+ * </pre>
+ * 每个分块的IV由 noncePrefix 和分块序号组成，附加认证数据为文件头加结束标记，
+ * 因此分块被篡改、重排或截断都能在读取时被发现。
+ */
+public class ChunkedCipherOutputStream extends FilterOutputStream {
+
+    private final Cipher cipher;          // 用于逐块加密的Cipher对象
+    private final SecretKey key;          // 加密密钥
+    private final byte[] header;          // 文件头，同时作为附加认证数据的一部分
+    private final byte[] nonce = new byte[AESUtil.GCM_IV_LENGTH];  // 当前分块的IV
+    private final byte[] plainBuffer;     // 明文分块缓冲区
+    private final byte[] cipherBuffer;    // 密文分块缓冲区
+    private int buffered;                 // 缓冲区中已有的明文字节数
+    private int chunkIndex;               // 下一个分块的序号
+    private boolean closed;               // 是否已经关闭
+
+    /**
+     * 构造函数，立即向底层输出流写入文件头。
+     * @param out 底层输出流
+     * @param key 加密密钥
+     * @param chunkSize 每个分块的明文大小
+     * @throws IOException 写入文件头或初始化Cipher失败时抛出
+     */
+    public ChunkedCipherOutputStream(OutputStream out, SecretKey key, int chunkSize) throws IOException {
+        super(out);
+        if (chunkSize <= 0 || chunkSize > AESUtil.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        this.key = key;
+        this.plainBuffer = new byte[chunkSize];
+        this.cipherBuffer = new byte[chunkSize + AESUtil.GCM_TAG_LENGTH];
+        try {
+            this.cipher = CipherEngine.obtain(AESUtil.STREAM_TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("无法创建加密器", e);
+        }
+
+        byte[] noncePrefix = new byte[AESUtil.NONCE_PREFIX_LENGTH];
+        new SecureRandom().nextBytes(noncePrefix);  // 每个文件使用随机的IV前缀
+        header = AESUtil.buildStreamHeader(chunkSize, noncePrefix);
+        System.arraycopy(noncePrefix, 0, nonce, 0, noncePrefix.length);
+        out.write(header);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        if (buffered == plainBuffer.length) {
+            writeChunk(false);
+        }
+        plainBuffer[buffered++] = (byte) b;  // 逐字节写入时直接放入缓冲区，不创建临时数组
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed");
+        }
+        while (len > 0) {
+            if (buffered == plainBuffer.length) {
+                writeChunk(false);  // 缓冲区已满且还有后续数据，说明这不是最后一个分块
+            }
+            int n = Math.min(len, plainBuffer.length - buffered);
+            System.arraycopy(b, off, plainBuffer, buffered, n);
+            buffered += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * 只刷新底层输出流，不会提前写出未满的分块。
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * 写出最后一个分块（带结束标记）并关闭底层输出流。
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeChunk(true);
+            out.flush();
+        } finally {
+            AESUtil.wipe(plainBuffer);  // 清除残留的明文
+            CipherEngine.recycle(AESUtil.STREAM_TRANSFORMATION, cipher);  // 归还Cipher供后续的流复用
+            out.close();
+        }
+    }
+
+    /**
+     * 加密缓冲区中的明文并作为一个分块写出。
+     * @param last 是否为最后一个分块
+     */
+    private void writeChunk(boolean last) throws IOException {
+        AESUtil.putChunkIndex(nonce, chunkIndex++);
+        try {
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(AESUtil.GCM_TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(header);
+            cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+            int length = cipher.doFinal(plainBuffer, 0, buffered, cipherBuffer, 0);
+            int chunkHeader = buffered | (last ? AESUtil.LAST_CHUNK_FLAG : 0);
+            out.write(chunkHeader >>> 24);
+            out.write(chunkHeader >>> 16);
+            out.write(chunkHeader >>> 8);
+            out.write(chunkHeader);
+            out.write(cipherBuffer, 0, length);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("分块加密失败", e);
+        }
+        buffered = 0;
+    }
+}
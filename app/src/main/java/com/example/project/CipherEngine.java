@@ -0,0 +1,257 @@
+package com.example.project;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+/**
+ * CipherEngine 类是每个线程独享的加解密引擎。
+ * 它缓存 Cipher 和 KeyGenerator 实例，避免每次调用都进行提供者查找；
+ * 同时复用直接内存缓冲区，并在每次使用后将其清零，避免明文残留。
+ * 流式加解密需要在多次调用之间持有 Cipher，因此另外提供了一个按算法划分的 Cipher 对象池。
+ */
+public final class CipherEngine {
+
+    // 每个线程各自持有一个引擎实例
+    private static final ThreadLocal<CipherEngine> ENGINES = new ThreadLocal<CipherEngine>() {
+        @Override
+        protected CipherEngine initialValue() {
+            return new CipherEngine();
+        }
+    };
+
+    // 按算法名称划分的 Cipher 对象池，供流式加解密使用
+    private static final ConcurrentHashMap<String, Queue<Cipher>> POOL = new ConcurrentHashMap<>();
+
+    // 每种算法最多缓存的 Cipher 数量
+    static final int MAX_POOLED_CIPHERS = 4;
+
+    // 超过该大小的缓冲区用完即释放，避免大文件处理后长期占用内存
+    private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+
+    // 用于清零缓冲区的全零数组
+    private static final byte[] ZEROS = new byte[4096];
+
+    private final String algorithm;       // 整体加解密使用的算法
+    private Cipher cipher;                // 缓存的 Cipher 实例
+    private KeyGenerator keyGenerator;    // 缓存的密钥生成器
+    private int keyGeneratorSize;         // 密钥生成器初始化时使用的密钥长度
+    private ByteBuffer inputBuffer;       // 可复用的输入缓冲区
+    private ByteBuffer outputBuffer;      // 可复用的输出缓冲区
+
+    private CipherEngine() {
+        this.algorithm = AESUtil.ALGORITHM;
+    }
+
+    /**
+     * 获取当前线程的引擎实例。
+     * @return 返回当前线程的引擎
+     */
+    public static CipherEngine current() {
+        return ENGINES.get();
+    }
+
+    /**
+     * 使用缓存的密钥生成器生成一个AES密钥。密钥长度与上次不同时重新初始化生成器。
+     * @param keySize 密钥长度
+     * @return 返回生成的密钥
+     * @throws GeneralSecurityException 密钥生成失败时抛出
+     */
+    public SecretKey generateKey(int keySize) throws GeneralSecurityException {
+        if (keyGenerator == null) {
+            keyGenerator = KeyGenerator.getInstance(algorithm);
+        }
+        if (keyGeneratorSize != keySize) {
+            keyGenerator.init(keySize);
+            keyGeneratorSize = keySize;
+        }
+        return keyGenerator.generateKey();
+    }
+
+    /**
+     * 加密 src 中剩余的全部数据并写入 dst。
+     * @param src 明文，读取 position 到 limit 之间的数据
+     * @param dst 密文输出，需要至少 {@link #getOutputSize} 字节的剩余空间
+     * @param key 加密密钥
+     * @return 返回写入 dst 的字节数
+     * @throws GeneralSecurityException 加密失败时抛出
+     */
+    public int encrypt(ByteBuffer src, ByteBuffer dst, SecretKey key) throws GeneralSecurityException {
+        Cipher c = cipher();
+        c.init(Cipher.ENCRYPT_MODE, key);
+        return c.doFinal(src, dst);
+    }
+
+    /**
+     * 解密 src 中剩余的全部数据并写入 dst。
+     * @param src 密文，读取 position 到 limit 之间的数据
+     * @param dst 明文输出，需要至少 {@link #getOutputSize} 字节的剩余空间
+     * @param key 解密密钥
+     * @return 返回写入 dst 的字节数
+     * @throws GeneralSecurityException 解密失败时抛出
+     */
+    public int decrypt(ByteBuffer src, ByteBuffer dst, SecretKey key) throws GeneralSecurityException {
+        Cipher c = cipher();
+        c.init(Cipher.DECRYPT_MODE, key);
+        return c.doFinal(src, dst);
+    }
+
+    /**
+     * 计算处理指定长度的输入所需的输出缓冲区大小。
+     * @param inputLength 输入长度
+     * @return 返回输出缓冲区的最小长度
+     * @throws GeneralSecurityException 创建 Cipher 失败时抛出
+     */
+    public int getOutputSize(int inputLength) throws GeneralSecurityException {
+        // 分组加密的输出最多比输入多一个分组（填充）
+        return inputLength + cipher().getBlockSize();
+    }
+
+    /**
+     * 对字节数组进行加密，数据经由可复用的直接缓冲区处理，处理后缓冲区被清零。
+     * @param data 明文
+     * @param key 加密密钥
+     * @return 返回密文
+     * @throws GeneralSecurityException 加密失败时抛出
+     */
+    public byte[] encrypt(byte[] data, SecretKey key) throws GeneralSecurityException {
+        return process(data, key, true);
+    }
+
+    /**
+     * 对字节数组进行解密，数据经由可复用的直接缓冲区处理，处理后缓冲区被清零。
+     * @param data 密文
+     * @param key 解密密钥
+     * @return 返回明文
+     * @throws GeneralSecurityException 解密失败时抛出
+     */
+    public byte[] decrypt(byte[] data, SecretKey key) throws GeneralSecurityException {
+        return process(data, key, false);
+    }
+
+    private byte[] process(byte[] data, SecretKey key, boolean encrypt) throws GeneralSecurityException {
+        int outputSize = getOutputSize(data.length);
+        ByteBuffer in = inputBuffer(data.length);
+        ByteBuffer out = outputBuffer(outputSize);
+        try {
+            in.put(data);
+            in.flip();
+            if (encrypt) {
+                encrypt(in, out, key);
+            } else {
+                decrypt(in, out, key);
+            }
+            out.flip();
+            byte[] result = new byte[out.remaining()];
+            out.get(result);
+            return result;
+        } finally {
+            releaseInput(data.length);
+            releaseOutput(outputSize);
+        }
+    }
+
+    /**
+     * 获取容量至少为 size 的输入缓冲区。调用者用完后必须清零，{@link #process} 会自动完成。
+     */
+    private ByteBuffer inputBuffer(int size) {
+        if (inputBuffer == null || inputBuffer.capacity() < size) {
+            inputBuffer = ByteBuffer.allocateDirect(roundUp(size));
+        }
+        inputBuffer.clear();
+        return inputBuffer;
+    }
+
+    /**
+     * 获取容量至少为 size 的输出缓冲区。
+     */
+    private ByteBuffer outputBuffer(int size) {
+        if (outputBuffer == null || outputBuffer.capacity() < size) {
+            outputBuffer = ByteBuffer.allocateDirect(roundUp(size));
+        }
+        outputBuffer.clear();
+        return outputBuffer;
+    }
+
+    private void releaseInput(int used) {
+        zero(inputBuffer, used);
+        if (inputBuffer.capacity() > MAX_RETAINED_BUFFER) {
+            inputBuffer = null;
+        }
+    }
+
+    private void releaseOutput(int used) {
+        zero(outputBuffer, used);
+        if (outputBuffer.capacity() > MAX_RETAINED_BUFFER) {
+            outputBuffer = null;
+        }
+    }
+
+    private Cipher cipher() throws GeneralSecurityException {
+        if (cipher == null) {
+            cipher = Cipher.getInstance(algorithm);
+        }
+        return cipher;
+    }
+
+    /**
+     * 从对象池中取出一个 Cipher，池中没有时新建一个。用完后应调用 {@link #recycle} 归还。
+     * @param transformation 算法名称
+     * @return 返回 Cipher 实例
+     * @throws GeneralSecurityException 创建 Cipher 失败时抛出
+     */
+    public static Cipher obtain(String transformation) throws GeneralSecurityException {
+        Queue<Cipher> queue = POOL.get(transformation);
+        Cipher pooled = queue == null ? null : queue.poll();
+        return pooled != null ? pooled : Cipher.getInstance(transformation);
+    }
+
+    /**
+     * 把 Cipher 归还到对象池。调用者归还后不能再使用该实例。
+     * @param transformation 算法名称
+     * @param cipher 需要归还的 Cipher
+     */
+    public static void recycle(String transformation, Cipher cipher) {
+        Queue<Cipher> queue = POOL.get(transformation);
+        if (queue == null) {
+            queue = new ConcurrentLinkedQueue<>();
+            Queue<Cipher> existing = POOL.putIfAbsent(transformation, queue);
+            if (existing != null) {
+                queue = existing;
+            }
+        }
+        if (queue.size() < MAX_POOLED_CIPHERS) {
+            queue.offer(cipher);
+        }
+    }
+
+    /**
+     * 用0覆盖缓冲区的前 length 个字节。
+     * @param buffer 需要清零的缓冲区
+     * @param length 需要清零的长度
+     */
+    static void zero(ByteBuffer buffer, int length) {
+        buffer.clear();
+        int remaining = Math.min(length, buffer.capacity());
+        while (remaining > 0) {
+            int n = Math.min(remaining, ZEROS.length);
+            buffer.put(ZEROS, 0, n);
+            remaining -= n;
+        }
+        buffer.clear();
+    }
+
+    private static int roundUp(int size) {
+        int capacity = 4096;
+        while (capacity < size && capacity > 0) {
+            capacity <<= 1;
+        }
+        return capacity > 0 ? capacity : size;
+    }
+}
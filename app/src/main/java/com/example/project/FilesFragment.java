@@ -4,15 +4,13 @@ import android.app.AlertDialog;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
-import android.database.Cursor;
 import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.provider.MediaStore;
-import android.provider.OpenableColumns;
-import android.util.Base64;
+import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -24,17 +22,23 @@ import android.widget.ImageButton;
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
 
-import java.io.InputStream;
-import javax.crypto.SecretKey;
-import javax.crypto.spec.SecretKeySpec;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * FilesFragment 类管理文件视图和签名的加解密展示。
  */
 public class FilesFragment extends Fragment {
+    private static final String TAG = "FilesFragment"; // 日志标签
     private static final int REQUEST_OPEN_DOCUMENT = 1; // 文档打开请求码
     private ImageView imageViewSignature; // 显示签名的ImageView
     private Button buttonSaveSignature, buttonCancelDisplay; // 保存和取消显示签名的按钮
+    private final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor(); // 解密和解码签名的后台线程
+    private final Handler mainHandler = new Handler(Looper.getMainLooper()); // 把解码结果发送到主线程
+    private Future<?> pendingDecode; // 正在进行的解码
+    private int decodeGeneration; // 每次选择文件加一，用于丢弃过期的结果
+    private Bitmap displayedBitmap; // 正在显示的签名位图
 
     /**
      * 当视图创建时调用，初始化界面和事件监听器。
@@ -52,6 +56,10 @@ public class FilesFragment extends Fragment {
         buttonSaveSignature.setOnClickListener(v -> saveSignatureToGallery());
         buttonCancelDisplay.setOnClickListener(v -> hideImageAndButtons());
         helpButton.setOnClickListener(v -> showHelpDialog());
+        helpButton.setOnLongClickListener(v -> {
+            showMetricsDialog();
+            return true;
+        });
 
         return view;
     }
@@ -62,11 +70,26 @@ public class FilesFragment extends Fragment {
     private void showHelpDialog() {
         AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
         builder.setTitle("帮助中心")
-                .setMessage("\n用户可在签名中心新建签名，然后在解密中心解密刚刚创建的签名并保存，在使用完毕后将保存的未加密签名删除\n\n请勿修改签名文件的文件名")
+                .setMessage("\n用户可在签名中心新建签名，然后在解密中心解密刚刚创建的签名并保存，在使用完毕后将保存的未加密签名删除\n\n旧版本创建的签名文件请勿修改文件名")
                 .setPositiveButton("关闭", (dialog, id) -> dialog.dismiss());
         builder.create().show();
     }
 
+    /**
+     * 显示保存和读取各阶段的耗时统计，长按帮助按钮打开，同时写入日志。
+     */
+    private void showMetricsDialog() {
+        String metrics = PipelineMetrics.dump();
+        Log.i(TAG, "流水线统计:\n" + metrics);
+        new AlertDialog.Builder(getActivity())
+                .setTitle("性能统计")
+                .setMessage(metrics)
+                .setPositiveButton("关闭", (dialog, id) -> dialog.dismiss())
+                .setNeutralButton("清空", (dialog, id) -> PipelineMetrics.reset())
+                .create()
+                .show();
+    }
+
     /**
      * 启动系统文件选择器。
      */
@@ -90,54 +113,105 @@ public class FilesFragment extends Fragment {
     }
 
     /**
-     * 根据文件URI解密并展示签名图像。
+     * 根据文件URI在后台解密并解码签名图像，完成后在主线程展示。
+     * 再次选择文件时，尚未完成的上一次解码会被取消，结果也不会再展示。
      */
     private void decryptAndDisplayImage(Uri uri)
     {
-        try {
-            String fileName = getFileName(uri); // 从URI获取文件名
-            SecretKey secretKey = getKey(fileName); // 根据文件名获取相应的密钥
-            InputStream inputStream = getContext().getContentResolver().openInputStream(uri); // 获取文件的输入流
-            byte[] fileData = new byte[inputStream.available()]; // 创建缓冲区以接收文件数据
-            inputStream.read(fileData); // 读取文件数据到缓冲区
-            byte[] decryptedData = AESUtil.decrypt(fileData, secretKey); // 使用密钥解密文件数据
-            Bitmap bitmap = BitmapFactory.decodeByteArray(decryptedData, 0, decryptedData.length); // 将解密后的数据转换为Bitmap
-            imageViewSignature.setImageBitmap(bitmap); // 在ImageView中显示Bitmap
-            imageViewSignature.setVisibility(View.VISIBLE); // 设置ImageView为可见
-            buttonSaveSignature.setVisibility(View.VISIBLE); // 显示保存按钮
-            buttonCancelDisplay.setVisibility(View.VISIBLE); // 显示取消显示按钮
-        } catch (Exception e) {
-            Toast.makeText(getContext(), "解密失败: " + e.getMessage(), Toast.LENGTH_LONG).show(); // 解密失败时显示错误信息
+        int targetSize = imageViewSignature.getWidth(); // 按界面宽度解码
+        if (targetSize <= 0) {
+            targetSize = getResources().getDisplayMetrics().widthPixels;
+        }
+        int size = targetSize;
+        Context context = requireContext().getApplicationContext();
+        int generation = ++decodeGeneration;
+        if (pendingDecode != null) {
+            pendingDecode.cancel(true);
         }
+        SignatureCache cache = SignatureCache.get(context);
+        pendingDecode = decodeExecutor.submit(() -> {
+            Bitmap bitmap = null;
+            Exception error = null;
+            try {
+                String key = SignatureCache.keyFor(context, uri, size);
+                // 最近打开过的签名直接使用缓存；在主线程显示之前钉住，不允许被淘汰时擦除
+                bitmap = cache.acquire(key);
+                if (bitmap == null) {
+                    // 每次打开都从文件开头边读边解密，不把文件或明文整个读入内存
+                    bitmap = SignatureDecoder.decode(() -> SignatureVault.openDecrypted(context, uri), size, size);
+                    if (bitmap == null) {
+                        error = new IllegalArgumentException("无法识别的图片格式");
+                    } else {
+                        cache.putAndPin(key, bitmap);
+                    }
+                }
+            } catch (Exception e) {
+                error = e;
+            }
+            Bitmap result = bitmap;
+            Exception failure = error;
+            mainHandler.post(() -> showDecoded(cache, generation, result, failure));
+        });
     }
 
     /**
-     * 根据URI获取文件的名称。
-     * @param uri 文件的URI
-     * @return 文件名
+     * 在主线程展示解码结果。
      */
-    private String getFileName(Uri uri) {
-        Cursor cursor = getContext().getContentResolver().query(uri, null, null, null, null); // 查询文件URI获取文件信息
-        int nameIndex = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME); // 获取文件名所在的列索引
-        cursor.moveToFirst(); // 移动到查询结果的第一条记录
-        String name = cursor.getString(nameIndex); // 获取文件名
-        cursor.close(); // 关闭cursor
-        return name;
+    private void showDecoded(SignatureCache cache, int generation, Bitmap bitmap, Exception error) {
+        if (generation != decodeGeneration || getView() == null) {
+            if (bitmap != null) {
+                cache.unpin(bitmap);
+            }
+            return;  // 已经选择了其他文件，或者界面已经销毁
+        }
+        pendingDecode = null;
+        if (error != null) {
+            Toast.makeText(getContext(), "解密失败: " + error.getMessage(), Toast.LENGTH_LONG).show(); // 解密失败时显示错误信息
+            return;
+        }
+        setDisplayedBitmap(bitmap); // 在ImageView中显示Bitmap
+        cache.unpin(bitmap); // 释放后台线程的钉住，显示期间由 setDisplayedBitmap 钉住
+        imageViewSignature.setVisibility(View.VISIBLE); // 设置ImageView为可见
+        buttonSaveSignature.setVisibility(View.VISIBLE); // 显示保存按钮
+        buttonCancelDisplay.setVisibility(View.VISIBLE); // 显示取消显示按钮
     }
 
     /**
-     * 根据文件名获取对应的解密密钥。
-     * @param fileName 文件名
-     * @return 解密所用的密钥
+     * 更换正在显示的位图，并相应地钉住或取消钉住缓存中的位图。
      */
-    private SecretKey getKey(String fileName) {
-        SharedPreferences preferences = getActivity().getSharedPreferences("加密签名", Context.MODE_PRIVATE); // 获取SharedPreferences实例
-        String keyString = preferences.getString(fileName, null); // 根据文件名获取密钥字符串
-        if (keyString == null) {
-            throw new IllegalArgumentException("No key found for file: " + fileName); // 如果密钥不存在，抛出异常
+    private void setDisplayedBitmap(Bitmap bitmap) {
+        SignatureCache cache = SignatureCache.get(requireContext());
+        if (displayedBitmap != null) {
+            cache.unpin(displayedBitmap);
+        }
+        displayedBitmap = bitmap;
+        if (bitmap != null) {
+            cache.pin(bitmap);
         }
-        byte[] keyBytes = Base64.decode(keyString, Base64.DEFAULT); // 将密钥字符串解码为字节数组
-        return new SecretKeySpec(keyBytes, "AES"); // 创建密钥规范并返回
+        imageViewSignature.setImageBitmap(bitmap);
+    }
+
+    /**
+     * 视图销毁时取消尚未完成的解码。
+     */
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        setDisplayedBitmap(null);
+        decodeGeneration++;
+        if (pendingDecode != null) {
+            pendingDecode.cancel(true);
+            pendingDecode = null;
+        }
+    }
+
+    /**
+     * 片段销毁时关闭解码线程。
+     */
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        decodeExecutor.shutdownNow();
     }
 
     /**
@@ -155,6 +229,7 @@ public class FilesFragment extends Fragment {
      * 隐藏图片和按钮。
      */
     private void hideImageAndButtons() {
+        setDisplayedBitmap(null); // 不再显示的位图可以被缓存淘汰和擦除
         imageViewSignature.setVisibility(View.GONE); // 隐藏图片显示
         buttonSaveSignature.setVisibility(View.GONE); // 隐藏保存按钮
         buttonCancelDisplay.setVisibility(View.GONE); // 隐藏取消显示按钮
@@ -0,0 +1,141 @@
+package com.example.project;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * InkMetrics 类统计签名板从触摸输入到墨迹绘制的性能数据：
+ * 每个触摸采样从事件时间戳到被绘制出来的延迟、每帧绘制的采样数量以及书写过程中的掉帧次数。
+ * 这些数据可以在测试中或调试浮层中查询，用于调优绘制路径。所有方法都应在主线程中调用。
+ */
+public class InkMetrics {
+
+    // 默认的帧间隔（60Hz），视图附加到窗口后会按屏幕刷新率更新
+    private static final long DEFAULT_FRAME_INTERVAL_NANOS = 16_666_667L;
+
+    private final LatencyHistogram inputToInkMillis = new LatencyHistogram();  // 输入到绘制的延迟（毫秒）
+    private final LatencyHistogram samplesPerFrame = new LatencyHistogram();   // 每帧绘制的采样数量
+
+    private long[] pendingEventTimes = new long[32];  // 尚未绘制的采样的事件时间（毫秒，uptimeMillis 时基）
+    private int pendingCount;                         // 尚未绘制的采样数量
+    private long frameIntervalNanos = DEFAULT_FRAME_INTERVAL_NANOS;  // 期望的帧间隔
+    private long firstPendingNanos;                   // 第一个尚未绘制的采样到达的时间
+    private long lastFrameNanos;                      // 上一帧的绘制时间，0表示不在书写过程中
+    private long frames;                              // 书写过程中绘制的帧数
+    private long droppedFrames;                       // 书写过程中丢失的帧数
+    private long totalSamples;                        // 收到的采样总数
+
+    /**
+     * 记录一个新的触摸采样。
+     * @param eventTimeMillis 采样的事件时间，与 SystemClock.uptimeMillis 使用相同的时基
+     * @param receivedNanos 视图收到该采样的时间（纳秒）
+     */
+    public void onSample(long eventTimeMillis, long receivedNanos) {
+        if (pendingCount == 0) {
+            firstPendingNanos = receivedNanos;
+        }
+        if (pendingCount == pendingEventTimes.length) {
+            pendingEventTimes = Arrays.copyOf(pendingEventTimes, pendingCount * 2);
+        }
+        pendingEventTimes[pendingCount++] = eventTimeMillis;
+        totalSamples++;
+    }
+
+    /**
+     * 在一帧绘制完成时调用，结算这一帧中绘制的采样。
+     * @param nowMillis 当前时间，与 SystemClock.uptimeMillis 使用相同的时基
+     * @param nowNanos 当前时间的纳秒值，用于计算帧间隔
+     */
+    public void onFrameDrawn(long nowMillis, long nowNanos) {
+        if (pendingCount == 0) {
+            return;
+        }
+        for (int i = 0; i < pendingCount; i++) {
+            inputToInkMillis.record(nowMillis - pendingEventTimes[i]);
+        }
+        samplesPerFrame.record(pendingCount);
+        pendingCount = 0;
+
+        if (lastFrameNanos != 0) {
+            // 从上一帧或本帧的第一个采样到达（取较晚者）开始计算，手指停住不动的时间不计为掉帧
+            long since = Math.max(lastFrameNanos, firstPendingNanos);
+            long missed = (nowNanos - since - frameIntervalNanos / 2) / frameIntervalNanos;
+            if (missed > 0) {
+                droppedFrames += missed;  // 等待时间超过了一个半帧间隔，说明中间有帧被跳过
+            }
+        }
+        lastFrameNanos = nowNanos;
+        frames++;
+    }
+
+    /**
+     * 在一笔结束时调用，之后到下一笔开始之间的空闲时间不计为掉帧。
+     */
+    public void onStrokeEnd() {
+        lastFrameNanos = 0;
+    }
+
+    /**
+     * 设置屏幕刷新率，用于判断掉帧。
+     * @param refreshRate 每秒刷新次数
+     */
+    public void setRefreshRate(float refreshRate) {
+        if (refreshRate > 0) {
+            frameIntervalNanos = (long) (1_000_000_000L / refreshRate);
+        }
+    }
+
+    /**
+     * @return 返回输入到绘制的延迟直方图（毫秒）
+     */
+    public LatencyHistogram getInputToInkMillis() {
+        return inputToInkMillis;
+    }
+
+    /**
+     * @return 返回每帧绘制的采样数量直方图
+     */
+    public LatencyHistogram getSamplesPerFrame() {
+        return samplesPerFrame;
+    }
+
+    /**
+     * @return 返回书写过程中绘制的帧数
+     */
+    public long getFrames() {
+        return frames;
+    }
+
+    /**
+     * @return 返回书写过程中丢失的帧数
+     */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /**
+     * @return 返回收到的触摸采样总数（包括批量的历史采样）
+     */
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    /**
+     * 清空所有统计数据。
+     */
+    public void reset() {
+        inputToInkMillis.reset();
+        samplesPerFrame.reset();
+        pendingCount = 0;
+        lastFrameNanos = 0;
+        frames = 0;
+        droppedFrames = 0;
+        totalSamples = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "samples=%d frames=%d dropped=%d latencyMs[%s] samplesPerFrame[%s]",
+                totalSamples, frames, droppedFrames, inputToInkMillis, samplesPerFrame);
+    }
+}
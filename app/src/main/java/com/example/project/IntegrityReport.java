@@ -0,0 +1,77 @@
+package com.example.project;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * IntegrityReport 类记录一次完整性扫描的结果：扫描的文件数、损坏和缺少密钥的文件、主密钥已丢失的文件、孤立的密钥以及耗时。
+ * 同时提供判断孤立密钥的规则，与扫描过程分开，便于单独测试。
+ */
+final class IntegrityReport {
+
+    // 每类问题文件最多记录的 URI 数，其余只计数
+    static final int MAX_LISTED = 20;
+
+    int scanned;          // 扫描的文件数
+    int verified;         // 完整解密并通过认证的文件数
+    int corrupt;          // 解密或认证失败的文件数
+    int keyless;          // 按文件名找不到密钥的旧文件数
+    int keyLost;          // 由已经不存在的主密钥加密的文件数
+    int orphanedKeys;     // 没有对应文件的密钥数
+    int removedKeys;      // 实际删除的孤立密钥数
+    long elapsedMillis;   // 扫描耗时
+
+    final List<String> corruptFiles = new ArrayList<>();  // 损坏文件的 URI（最多 MAX_LISTED 个）
+    final List<String> keylessFiles = new ArrayList<>();  // 缺少密钥的文件的 URI（最多 MAX_LISTED 个）
+    final List<String> keyLostFiles = new ArrayList<>();  // 主密钥已丢失的文件的 URI（最多 MAX_LISTED 个）
+
+    void addCorrupt(String uri) {
+        corrupt++;
+        if (corruptFiles.size() < MAX_LISTED) {
+            corruptFiles.add(uri);
+        }
+    }
+
+    void addKeyless(String uri) {
+        keyless++;
+        if (keylessFiles.size() < MAX_LISTED) {
+            keylessFiles.add(uri);
+        }
+    }
+
+    void addKeyLost(String uri) {
+        keyLost++;
+        if (keyLostFiles.size() < MAX_LISTED) {
+            keyLostFiles.add(uri);
+        }
+    }
+
+    /**
+     * 找出没有对应文件的密钥。以点开头的名称是应用保留的密钥（例如缩略图缓存的密钥），不属于任何文件。
+     * 调用者必须先取得密钥名称的快照，再读取保存队列中未发布的文件名，最后枚举 MediaStore，
+     * 这样正在保存的文件的密钥要么不在快照中，要么能在队列或 MediaStore 中找到。
+     * @param keyNames 密钥存储中的名称快照
+     * @param fileNames MediaStore 中所有签名文件的文件名
+     * @param pendingNames 保存队列中尚未发布的文件名
+     * @return 返回按名称排序的孤立密钥
+     */
+    static Set<String> orphanedKeys(Collection<String> keyNames, Set<String> fileNames, Set<String> pendingNames) {
+        Set<String> orphans = new TreeSet<>();
+        for (String name : keyNames) {
+            if (!name.startsWith(".") && !fileNames.contains(name) && !pendingNames.contains(name)) {
+                orphans.add(name);
+            }
+        }
+        return orphans;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "scanned=%d verified=%d corrupt=%d keyless=%d keyLost=%d orphanedKeys=%d removedKeys=%d elapsed=%dms",
+                scanned, verified, corrupt, keyless, keyLost, orphanedKeys, removedKeys, elapsedMillis);
+    }
+}
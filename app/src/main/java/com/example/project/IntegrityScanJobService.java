@@ -0,0 +1,69 @@
+package com.example.project;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IntegrityScanJobService 在设备空闲并充电时定期运行 IntegrityScanner，检查文件并清理孤立的密钥。
+ */
+public class IntegrityScanJobService extends JobService {
+
+    private static final String TAG = "IntegrityScanJob";
+
+    static final int JOB_ID = 1002;
+
+    // 扫描间隔
+    private static final long INTERVAL_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private volatile IntegrityScanner scanner;
+
+    /**
+     * 调度定期扫描。已经调度过时保持不变，不会重置下次运行的时间。
+     * @param context 任意上下文
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) {
+            return;
+        }
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, IntegrityScanJobService.class))
+                .setPeriodic(INTERVAL_MILLIS)
+                .setRequiresDeviceIdle(true)
+                .setRequiresCharging(true)  // 需要完整解密所有文件
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        IntegrityScanner task = new IntegrityScanner(this);
+        scanner = task;
+        new Thread(() -> {
+            boolean retry = false;
+            try {
+                task.run();
+            } catch (Exception e) {
+                Log.w(TAG, "完整性扫描失败", e);
+                retry = true;
+            }
+            jobFinished(params, retry);
+        }, "IntegrityScan").start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        IntegrityScanner task = scanner;
+        if (task != null) {
+            task.cancel();
+        }
+        return true;  // 被取消的扫描没有删除任何密钥，稍后重新开始
+    }
+}
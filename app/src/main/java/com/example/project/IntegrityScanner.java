@@ -0,0 +1,200 @@
+package com.example.project;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * IntegrityScanner 类检查密钥存储和签名目录是否一致。
+ * 按ID分批枚举 MediaStore 中的签名文件，在线程池中并行完整解密每个文件（分块 GCM 会认证每一块），
+ * 统计损坏和缺少密钥的文件；最后找出没有对应文件的密钥，一次批量删除（密钥存储只落盘一次）。
+ * 发现缺少密钥的文件时不删除任何孤立密钥：文件可能被系统重命名过，孤立密钥可能正是它的密钥。
+ * run 会阻塞，必须在后台线程调用。
+ */
+public final class IntegrityScanner {
+
+    private static final String TAG = "IntegrityScanner";
+
+    // 每批枚举的文件数
+    private static final int BATCH_SIZE = 200;
+
+    // 线程数的上限
+    private static final int MAX_WORKERS = 4;
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    // 单个文件的检查结果
+    private enum Check {
+        OK,
+        CORRUPT,
+        KEYLESS,
+        KEY_LOST
+    }
+
+    private final Context context;
+    private volatile boolean cancelled;
+
+    /**
+     * 构造函数。
+     * @param context 任意上下文
+     */
+    public IntegrityScanner(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * 请求停止，当前批次完成后 run 返回，被取消的扫描不删除任何密钥。可以在任意线程调用。
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 扫描所有签名文件并清理孤立的密钥。
+     * @return 返回扫描结果
+     * @throws Exception 主密钥不可用（无法区分损坏的文件）或密钥存储不可用时抛出
+     */
+    public IntegrityReport run() throws Exception {
+        long start = SystemClock.elapsedRealtime();
+        KeystoreMasterKey.get();  // 主密钥不可用时所有信封格式的文件都会被误报为损坏
+        IntegrityReport report = new IntegrityReport();
+
+        // 顺序很重要：先取密钥快照，再读保存队列，最后枚举文件，见 IntegrityReport.orphanedKeys
+        KeyStoreEngine keyStore = KeyStores.get(context);
+        Set<String> keyNames = keyStore.names();
+        Set<String> pendingNames = SaveQueue.get(context).getPendingFileNames();
+        Set<String> fileNames = new HashSet<>();
+
+        int workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        try {
+            long afterId = -1;
+            while (!cancelled) {
+                List<Long> ids = new ArrayList<>(BATCH_SIZE);
+                afterId = nextBatch(afterId, ids, fileNames);
+                if (ids.isEmpty()) {
+                    break;
+                }
+                List<Future<Check>> futures = new ArrayList<>(ids.size());
+                for (long id : ids) {
+                    Uri uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+                    futures.add(workers.submit(() -> verify(uri)));
+                }
+                for (int i = 0; i < futures.size(); i++) {
+                    String uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, ids.get(i)).toString();
+                    report.scanned++;
+                    switch (futures.get(i).get()) {
+                        case OK:
+                            report.verified++;
+                            break;
+                        case KEYLESS:
+                            report.addKeyless(uri);
+                            break;
+                        case KEY_LOST:
+                            report.addKeyLost(uri);
+                            break;
+                        case CORRUPT:
+                        default:
+                            report.addCorrupt(uri);
+                            break;
+                    }
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        if (!cancelled) {
+            Set<String> orphans = IntegrityReport.orphanedKeys(keyNames, fileNames, pendingNames);
+            report.orphanedKeys = orphans.size();
+            if (report.keyless > 0) {
+                Log.w(TAG, "发现 " + report.keyless + " 个缺少密钥的文件，保留 " + orphans.size() + " 个孤立密钥");
+            } else if (!orphans.isEmpty()) {
+                report.removedKeys = keyStore.removeAll(orphans);  // 一次落盘
+            }
+        }
+        report.elapsedMillis = SystemClock.elapsedRealtime() - start;
+        if (report.corrupt > 0) {
+            Log.w(TAG, "损坏的文件: " + report.corruptFiles);
+        }
+        if (report.keyless > 0) {
+            Log.w(TAG, "缺少密钥的文件: " + report.keylessFiles);
+        }
+        if (report.keyLost > 0) {
+            Log.w(TAG, "主密钥已丢失、无法解密的文件: " + report.keyLostFiles);
+        }
+        Log.i(TAG, "完整性扫描" + (cancelled ? "被取消" : "完成") + ": " + report);
+        return report;
+    }
+
+    /**
+     * 按ID顺序读取下一批签名文件的ID和文件名。
+     * @return 返回这一批最后一个ID，没有更多文件时返回 afterId
+     */
+    private long nextBatch(long afterId, List<Long> ids, Set<String> fileNames) {
+        Bundle args = new Bundle();
+        args.putString(ContentResolver.QUERY_ARG_SQL_SELECTION,
+                SignatureIndex.MEDIA_SELECTION + " AND " + MediaStore.Images.Media._ID + " > ?");
+        args.putStringArray(ContentResolver.QUERY_ARG_SQL_SELECTION_ARGS,
+                new String[]{SignatureIndex.MEDIA_RELATIVE_PATH, Long.toString(afterId)});
+        String order = MediaStore.Images.Media._ID + " ASC";
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, order);
+            args.putInt(ContentResolver.QUERY_ARG_LIMIT, BATCH_SIZE);
+        } else {
+            // Android 10 及以下的 MediaStore 不识别 QUERY_ARG_LIMIT，只能把 LIMIT 写在排序条件里
+            args.putString(ContentResolver.QUERY_ARG_SQL_SORT_ORDER, order + " LIMIT " + BATCH_SIZE);
+        }
+        String[] projection = {MediaStore.Images.Media._ID, MediaStore.Images.Media.DISPLAY_NAME};
+        long lastId = afterId;
+        try (Cursor cursor = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                projection, args, null)) {
+            while (cursor != null && cursor.moveToNext()) {
+                lastId = cursor.getLong(0);
+                ids.add(lastId);
+                if (!cursor.isNull(1)) {
+                    fileNames.add(cursor.getString(1));
+                }
+            }
+        }
+        return lastId;
+    }
+
+    /**
+     * 完整解密一个文件，丢弃明文。认证失败、格式错误或读取失败都视为损坏。
+     */
+    private Check verify(Uri uri) {
+        byte[] buffer = new byte[READ_BUFFER_SIZE];
+        try (InputStream in = SignatureVault.openDecrypted(context, uri)) {
+            while (in.read(buffer) != -1) {
+                // 只需要读完，分块流在每一块读完时认证
+            }
+            return Check.OK;
+        } catch (IllegalArgumentException e) {
+            return Check.KEYLESS;  // 按文件名找不到密钥
+        } catch (SignatureEnvelope.KeyMismatchException e) {
+            return Check.KEY_LOST;  // 加密文件的主密钥已经不存在
+        } catch (Exception e) {
+            Log.w(TAG, "无法解密: " + uri, e);
+            return Check.CORRUPT;
+        } finally {
+            AESUtil.wipe(buffer);
+        }
+    }
+}
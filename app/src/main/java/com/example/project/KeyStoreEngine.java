@@ -0,0 +1,61 @@
+package com.example.project;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * KeyStoreEngine 接口定义了按文件名保存签名密钥的存储引擎。
+ * 实现必须是线程安全的，批量操作只落盘一次。
+ */
+public interface KeyStoreEngine extends Closeable {
+
+    /**
+     * 查找密钥。
+     * @param name 文件名
+     * @return 返回密钥的原始字节，不存在时返回 null
+     * @throws IOException 读取失败时抛出
+     */
+    byte[] get(String name) throws IOException;
+
+    /**
+     * 保存或覆盖一个密钥。
+     * @param name 文件名
+     * @param key 密钥的原始字节
+     * @throws IOException 写入失败时抛出
+     */
+    void put(String name, byte[] key) throws IOException;
+
+    /**
+     * 批量保存密钥，只落盘一次。
+     * @param keys 文件名到密钥的映射
+     * @throws IOException 写入失败时抛出
+     */
+    void putAll(Map<String, byte[]> keys) throws IOException;
+
+    /**
+     * 批量删除密钥，只落盘一次。不存在的文件名被忽略。
+     * @param names 文件名
+     * @return 返回实际删除的密钥数
+     * @throws IOException 写入失败时抛出
+     */
+    int removeAll(Collection<String> names) throws IOException;
+
+    /**
+     * @param name 文件名
+     * @return 如果存在该文件名的密钥返回 true
+     */
+    boolean contains(String name);
+
+    /**
+     * @return 返回密钥数
+     */
+    int size();
+
+    /**
+     * @return 返回所有文件名的快照
+     */
+    Set<String> names();
+}
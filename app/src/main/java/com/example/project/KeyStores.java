@@ -0,0 +1,87 @@
+package com.example.project;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * KeyStores 类负责打开应用唯一的密钥存储引擎，并把旧版本保存在 SharedPreferences 中的密钥迁移过来。
+ * 迁移先把所有密钥一次写入新的存储并落盘，然后才清空旧的 SharedPreferences，
+ * 中途被杀死时下次打开会重新迁移，写入是幂等的。
+ */
+public final class KeyStores {
+
+    private static final String TAG = "KeyStores";
+
+    static final String LEGACY_PREFERENCES = "加密签名";  // 旧版本保存密钥的 SharedPreferences 名称
+    private static final String KEY_LOG_FILE = "signature_keys.log";  // 应用私有目录下的密钥日志
+
+    private static volatile KeyStoreEngine instance;
+
+    private KeyStores() {
+    }
+
+    /**
+     * 获取密钥存储引擎，第一次调用时打开日志并完成迁移。第一次调用会读文件，应当在后台线程中进行。
+     * @param context 任意上下文
+     * @return 返回密钥存储引擎
+     * @throws IOException 打开或迁移失败时抛出
+     */
+    public static KeyStoreEngine get(Context context) throws IOException {
+        if (instance == null) {
+            synchronized (KeyStores.class) {
+                if (instance == null) {
+                    Context appContext = context.getApplicationContext();
+                    KeyStoreEngine engine = new LogKeyStore(new File(appContext.getFilesDir(), KEY_LOG_FILE));
+                    migrateLegacyKeys(appContext, engine);
+                    instance = engine;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 在后台线程中提前打开密钥存储，避免界面第一次解密时等待。
+     * @param context 任意上下文
+     */
+    public static void prewarm(Context context) {
+        Context appContext = context.getApplicationContext();
+        new Thread(() -> {
+            try {
+                get(appContext);
+            } catch (IOException e) {
+                Log.w(TAG, "打开密钥存储失败", e);
+            }
+        }, "KeyStorePrewarm").start();
+    }
+
+    /**
+     * 把旧的 SharedPreferences 中的密钥迁移到新的存储。
+     */
+    private static void migrateLegacyKeys(Context context, KeyStoreEngine engine) throws IOException {
+        File legacyFile = new File(new File(context.getApplicationInfo().dataDir, "shared_prefs"), LEGACY_PREFERENCES + ".xml");
+        if (!legacyFile.exists()) {
+            return;  // 不需要为了判断是否为空而解析XML
+        }
+        SharedPreferences preferences = context.getSharedPreferences(LEGACY_PREFERENCES, Context.MODE_PRIVATE);
+        Map<String, byte[]> keys = new HashMap<>();
+        for (Map.Entry<String, ?> entry : preferences.getAll().entrySet()) {
+            if (entry.getValue() instanceof String) {
+                keys.put(entry.getKey(), Base64.decode((String) entry.getValue(), Base64.DEFAULT));
+            }
+        }
+        engine.putAll(keys);
+        if (!preferences.edit().clear().commit()) {
+            throw new IOException("清空旧的密钥失败");
+        }
+        context.deleteSharedPreferences(LEGACY_PREFERENCES);
+        Log.i(TAG, "已迁移旧的密钥: " + keys.size());
+    }
+}
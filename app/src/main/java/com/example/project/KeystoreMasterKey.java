@@ -0,0 +1,124 @@
+package com.example.project;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Log;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.Locale;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * KeystoreMasterKey 类是保存在 Android Keystore 中的主密钥，密钥材料不会离开安全硬件（或系统密钥服务）。
+ * 第一次使用时生成 AES-256 密钥，之后复用。
+ * <p>
+ * 主密钥不能导出，也不会被备份：应用被卸载重装、清除数据或从备份恢复到新设备后，原来的主密钥就不存在了，
+ * 用它包装数据密钥的信封格式文件再也无法解密（按文件名保存的旧格式密钥则会随应用数据一起备份和恢复）。
+ * 因为密钥材料无法读取，标识不能由密钥本身计算，而是在生成密钥时随机产生、作为别名的一部分保存在 Keystore 中，
+ * 写入每个文件的信封头。重新生成的主密钥一定有不同的标识，
+ * 打开旧文件时抛出 SignatureEnvelope.KeyMismatchException，而不是被当成损坏的文件。
+ */
+public final class KeystoreMasterKey implements MasterKey {
+
+    private static final String TAG = "KeystoreMasterKey";
+
+    private static final String KEYSTORE_PROVIDER = "AndroidKeyStore";
+    static final String LEGACY_ALIAS = "signature_master_key_v1";  // 早期版本使用的固定别名，它的标识就是别名
+    private static final String ALIAS_PREFIX = "signature_master_key_v2_";  // 之后是随机生成的密钥标识
+    private static final int ID_LENGTH = 8;  // 密钥标识的字节数
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_LENGTH_BITS = 128;
+
+    private static volatile KeystoreMasterKey instance;
+
+    private final String id;
+    private final SecretKey key;
+
+    private KeystoreMasterKey(String id, SecretKey key) {
+        this.id = id;
+        this.key = key;
+    }
+
+    /**
+     * 获取主密钥，不存在时生成。第一次调用会访问 Keystore，应当在后台线程中进行。
+     * @return 返回主密钥
+     * @throws GeneralSecurityException Keystore 不可用时抛出
+     */
+    public static KeystoreMasterKey get() throws GeneralSecurityException {
+        if (instance == null) {
+            synchronized (KeystoreMasterKey.class) {
+                if (instance == null) {
+                    instance = loadOrCreate();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private static KeystoreMasterKey loadOrCreate() throws GeneralSecurityException {
+        try {
+            KeyStore keyStore = KeyStore.getInstance(KEYSTORE_PROVIDER);
+            keyStore.load(null);
+            KeyStore.Entry legacy = keyStore.getEntry(LEGACY_ALIAS, null);
+            if (legacy instanceof KeyStore.SecretKeyEntry) {
+                return new KeystoreMasterKey(LEGACY_ALIAS, ((KeyStore.SecretKeyEntry) legacy).getSecretKey());
+            }
+            for (String alias : Collections.list(keyStore.aliases())) {
+                if (alias.startsWith(ALIAS_PREFIX)) {
+                    KeyStore.Entry entry = keyStore.getEntry(alias, null);
+                    if (entry instanceof KeyStore.SecretKeyEntry) {
+                        return new KeystoreMasterKey(alias.substring(ALIAS_PREFIX.length()),
+                                ((KeyStore.SecretKeyEntry) entry).getSecretKey());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new GeneralSecurityException("无法打开 Keystore", e);
+        }
+
+        byte[] idBytes = new byte[ID_LENGTH];
+        new SecureRandom().nextBytes(idBytes);
+        StringBuilder id = new StringBuilder(ID_LENGTH * 2);
+        for (byte b : idBytes) {
+            id.append(String.format(Locale.US, "%02x", b));
+        }
+        Log.i(TAG, "生成新的主密钥 " + id + "，之前的主密钥加密的文件（如果有）无法再解密");
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE_PROVIDER);
+        generator.init(new KeyGenParameterSpec.Builder(ALIAS_PREFIX + id, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return new KeystoreMasterKey(id.toString(), generator.generateKey());
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public Wrapped wrap(byte[] dataKey, byte[] aad) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.ENCRYPT_MODE, key);  // Keystore 要求由它生成随机IV
+        cipher.updateAAD(aad);
+        byte[] wrapped = cipher.doFinal(dataKey);
+        return new Wrapped(cipher.getIV(), wrapped);
+    }
+
+    @Override
+    public byte[] unwrap(byte[] iv, byte[] wrappedKey, byte[] aad) throws GeneralSecurityException {
+        Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LENGTH_BITS, iv));
+        cipher.updateAAD(aad);
+        return cipher.doFinal(wrappedKey);
+    }
+}
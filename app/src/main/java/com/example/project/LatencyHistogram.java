@@ -0,0 +1,147 @@
+package com.example.project;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram 类是一个无锁的对数分桶直方图，可以在多个线程中同时记录数值。
+ * 每个2的幂区间被均分为4个桶，相对误差不超过25%，占用固定的约2KB内存，记录操作只有几次原子加法。
+ * 直方图本身不关心单位，调用者自行约定记录的是毫秒、微秒还是个数。
+ */
+public final class LatencyHistogram {
+
+    // 每个2的幂区间划分的桶数为 2^SUB_BUCKET_BITS
+    private static final int SUB_BUCKET_BITS = 2;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = (63 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);  // 各个桶的计数
+    private final AtomicLong count = new AtomicLong();  // 记录的总次数
+    private final AtomicLong sum = new AtomicLong();    // 记录值的总和
+    private final AtomicLong max = new AtomicLong();    // 记录的最大值
+
+    /**
+     * 记录一个数值，负数按0处理。
+     * @param value 需要记录的数值
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return 返回记录的总次数
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return 返回记录值的总和
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * @return 返回记录的最大值
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return 返回记录值的平均数，没有记录时返回0
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * 估算指定百分位的数值，返回所在桶的上界（不超过记录的最大值）。
+     * @param percentile 百分位，取值范围0到100
+     * @return 返回估算的数值，没有记录时返回0
+     */
+    public long getPercentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * Math.max(0, Math.min(100, percentile)) / 100.0);
+        rank = Math.max(rank, 1);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * 清空所有记录。与并发的 {@link #record} 同时调用时，个别记录可能只被部分清除。
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * 生成直方图的摘要文本，包含次数、平均值和常用百分位。
+     * @return 返回摘要文本
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "count=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                getCount(), getMean(), getPercentile(50), getPercentile(90), getPercentile(99), getMax());
+    }
+
+    /**
+     * 计算数值所在的桶：小于 SUB_BUCKETS 的数值各占一个桶，其余按最高位所在的2的幂区间再均分。
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int msb = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (msb - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (msb - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * 计算桶所覆盖的最大数值。
+     */
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int msb = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int sub = index % SUB_BUCKETS;
+        long width = 1L << (msb - SUB_BUCKET_BITS);
+        long lower = (long) (SUB_BUCKETS + sub) << (msb - SUB_BUCKET_BITS);
+        long upper = lower + width - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+}
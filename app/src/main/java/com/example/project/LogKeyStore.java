@@ -0,0 +1,295 @@
+package com.example.project;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * LogKeyStore 类是基于只追加日志的密钥存储引擎。
+ * 每次写入都追加到日志末尾，内存中只保存“文件名 → 记录偏移”的哈希索引，
+ * 查找时按偏移直接读出一条记录，因此查找和插入都是 O(1)，而且不会把所有密钥常驻在内存中。
+ * 被覆盖或删除的记录成为垃圾，垃圾超过有效数据时重写日志进行压缩。
+ *
+ * 记录格式：
+ * <pre>
+ * 类型(1) | 文件名长度(2) | 文件名(UTF-8) | 密钥长度(2) | 密钥 | CRC32(4)
+ * </pre>
+ * 删除记录的密钥长度为0。进程在写入过程中被杀死时，末尾不完整的记录在打开时被截掉。
+ */
+public final class LogKeyStore implements KeyStoreEngine {
+
+    private static final int TYPE_PUT = 1;
+    private static final int TYPE_DELETE = 2;
+
+    // 文件名和密钥的长度上限
+    private static final int MAX_NAME_LENGTH = 0xFFFF;
+    private static final int MAX_KEY_LENGTH = 1024;
+
+    // 垃圾超过这个大小并且超过有效数据时才压缩，避免小日志频繁重写
+    private static final long MIN_COMPACT_GARBAGE = 64 * 1024;
+
+    private final File file;
+    private final Map<String, Long> index = new HashMap<>();  // 文件名到 PUT 记录偏移的索引
+    private RandomAccessFile log;
+    private long length;       // 日志的有效长度，也是下一条记录的偏移
+    private long liveBytes;    // 有效 PUT 记录占用的字节数
+    private final Map<String, Integer> recordSizes = new HashMap<>();  // 每条有效记录的长度，用于统计垃圾
+
+    /**
+     * 打开或创建密钥日志，并扫描一遍建立索引。
+     * @param file 日志文件
+     * @throws IOException 读取失败时抛出
+     */
+    public LogKeyStore(File file) throws IOException {
+        this.file = file;
+        load();
+    }
+
+    @Override
+    public synchronized byte[] get(String name) throws IOException {
+        Long offset = index.get(name);
+        if (offset == null) {
+            return null;
+        }
+        ensureOpen();
+        log.seek(offset);
+        int type = log.readUnsignedByte();
+        byte[] nameBytes = new byte[log.readUnsignedShort()];
+        log.readFully(nameBytes);
+        byte[] key = new byte[log.readUnsignedShort()];
+        log.readFully(key);
+        int checksum = log.readInt();
+        if (type != TYPE_PUT || checksum != checksum(type, nameBytes, key)) {
+            throw new IOException("密钥记录已损坏: " + name);
+        }
+        return key;
+    }
+
+    @Override
+    public void put(String name, byte[] key) throws IOException {
+        putAll(Collections.singletonMap(name, key));
+    }
+
+    @Override
+    public synchronized void putAll(Map<String, byte[]> keys) throws IOException {
+        if (keys.isEmpty()) {
+            return;
+        }
+        ensureOpen();
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        Map<String, Long> offsets = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (Map.Entry<String, byte[]> entry : keys.entrySet()) {
+            int before = batch.size();
+            writeRecord(batch, TYPE_PUT, entry.getKey(), entry.getValue());
+            offsets.put(entry.getKey(), length + before);
+            sizes.put(entry.getKey(), batch.size() - before);
+        }
+        append(batch.toByteArray());
+        // 落盘成功后才更新索引
+        for (Map.Entry<String, Long> entry : offsets.entrySet()) {
+            forget(entry.getKey());
+            int size = sizes.get(entry.getKey());
+            index.put(entry.getKey(), entry.getValue());
+            recordSizes.put(entry.getKey(), size);
+            liveBytes += size;
+        }
+        maybeCompact();
+    }
+
+    @Override
+    public synchronized int removeAll(Collection<String> names) throws IOException {
+        ensureOpen();
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        Set<String> removed = new HashSet<>();
+        for (String name : names) {
+            if (index.containsKey(name) && removed.add(name)) {
+                writeRecord(batch, TYPE_DELETE, name, new byte[0]);
+            }
+        }
+        if (removed.isEmpty()) {
+            return 0;
+        }
+        append(batch.toByteArray());
+        for (String name : removed) {
+            forget(name);
+        }
+        maybeCompact();
+        return removed.size();
+    }
+
+    @Override
+    public synchronized boolean contains(String name) {
+        return index.containsKey(name);
+    }
+
+    @Override
+    public synchronized int size() {
+        return index.size();
+    }
+
+    @Override
+    public synchronized Set<String> names() {
+        return new HashSet<>(index.keySet());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (log != null) {
+            log.close();
+            log = null;
+        }
+    }
+
+    /**
+     * @return 返回日志中垃圾记录占用的字节数
+     */
+    synchronized long getGarbageBytes() {
+        return length - liveBytes;
+    }
+
+    /**
+     * 立即压缩日志，只保留有效的记录。
+     * @throws IOException 写入失败时抛出
+     */
+    public synchronized void compact() throws IOException {
+        ensureOpen();
+        File temp = new File(file.getPath() + ".compact");
+        Map<String, Long> newIndex = new HashMap<>();
+        long offset = 0;
+        try (FileOutputStream stream = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))) {
+            for (String name : index.keySet()) {
+                byte[] key = get(name);
+                ByteArrayOutputStream record = new ByteArrayOutputStream();
+                writeRecord(record, TYPE_PUT, name, key);
+                out.write(record.toByteArray());
+                newIndex.put(name, offset);
+                offset += record.size();
+            }
+            out.flush();
+            stream.getFD().sync();  // 改名之前确保新日志已经落盘
+        }
+        close();
+        if (!temp.renameTo(file)) {
+            throw new IOException("无法替换密钥日志: " + file);
+        }
+        index.clear();
+        index.putAll(newIndex);
+        length = offset;
+        liveBytes = offset;
+    }
+
+    private void maybeCompact() throws IOException {
+        long garbage = length - liveBytes;
+        if (garbage >= MIN_COMPACT_GARBAGE && garbage > liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * 从索引中移除一个文件名，它之前的记录成为垃圾。
+     */
+    private void forget(String name) {
+        if (index.remove(name) != null) {
+            liveBytes -= recordSizes.remove(name);
+        }
+    }
+
+    /**
+     * 扫描日志建立索引，截掉末尾不完整或校验失败的记录。
+     */
+    private void load() throws IOException {
+        if (file.exists()) {
+            long offset = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+                while (true) {
+                    int type = in.read();
+                    if (type < 0) {
+                        break;
+                    }
+                    byte[] nameBytes = new byte[in.readUnsignedShort()];
+                    in.readFully(nameBytes);
+                    byte[] key = new byte[in.readUnsignedShort()];
+                    in.readFully(key);
+                    if (in.readInt() != checksum(type, nameBytes, key)) {
+                        break;
+                    }
+                    String name = new String(nameBytes, "UTF-8");
+                    int size = 1 + 2 + nameBytes.length + 2 + key.length + 4;
+                    forget(name);
+                    if (type == TYPE_PUT) {
+                        index.put(name, offset);
+                        recordSizes.put(name, size);
+                        liveBytes += size;
+                    }
+                    offset += size;
+                }
+            } catch (EOFException ignored) {
+                // 进程在写入最后一条记录时被杀死，忽略不完整的记录
+            }
+            length = offset;
+        }
+        ensureOpen();
+        if (log.length() > length) {
+            log.setLength(length);  // 截掉损坏的末尾，否则之后追加的记录在下次打开时会被跳过
+            log.getFD().sync();
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (log == null) {
+            log = new RandomAccessFile(file, "rw");
+        }
+    }
+
+    /**
+     * 在日志末尾追加一批记录并落盘。
+     */
+    private void append(byte[] records) throws IOException {
+        log.seek(length);
+        log.write(records);
+        log.getFD().sync();
+        length += records.length;
+    }
+
+    private static void writeRecord(ByteArrayOutputStream batch, int type, String name, byte[] key) throws IOException {
+        byte[] nameBytes = name.getBytes("UTF-8");
+        if (nameBytes.length > MAX_NAME_LENGTH) {
+            throw new IOException("文件名过长: " + name);
+        }
+        if (key.length > MAX_KEY_LENGTH) {
+            throw new IOException("密钥过长: " + key.length);
+        }
+        DataOutputStream out = new DataOutputStream(batch);
+        out.writeByte(type);
+        out.writeShort(nameBytes.length);
+        out.write(nameBytes);
+        out.writeShort(key.length);
+        out.write(key);
+        out.writeInt(checksum(type, nameBytes, key));
+    }
+
+    private static int checksum(int type, byte[] name, byte[] key) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(name, 0, name.length);
+        crc.update(key, 0, key.length);
+        return (int) crc.getValue();
+    }
+}
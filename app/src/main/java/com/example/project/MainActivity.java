@@ -1,6 +1,9 @@
 package com.example.project;
 
+import android.app.AlertDialog;
+import android.content.Context;
 import android.os.Bundle;
+import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 
@@ -18,6 +21,16 @@ public class MainActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main); // 设置Activity的布局
 
+        KeyStores.prewarm(this); // 在后台打开密钥存储，第一次解密时不必等待
+        Context appContext = getApplicationContext();
+        SaveQueue.open(this, e -> // 在后台打开保存队列，继续发布上次未完成的签名
+                Toast.makeText(appContext, "恢复未完成的签名失败: " + e.getMessage(), Toast.LENGTH_LONG).show());
+        ReencryptionJobService.schedule(this); // 用户同意后在后台把旧文件迁移到信封格式，中断后从检查点继续
+        if (!Reencryptor.isDecided(this)) {
+            offerReencryption(); // 有旧文件时询问用户是否迁移
+        }
+        IntegrityScanJobService.schedule(this); // 定期检查文件完整性并清理孤立的密钥
+
         // 获取定义在布局文件中的BottomNavigationView
         BottomNavigationView bottomNav = findViewById(R.id.bottom_navigation);
 
@@ -41,4 +54,33 @@ public class MainActivity extends AppCompatActivity {
             bottomNav.setSelectedItemId(R.id.navigation_files); // 设置底部导航当前选中项为"文件"
         }
     }
+
+    /**
+     * 在后台检查是否有旧格式的文件，有的话说明迁移的利弊并让用户决定。只询问一次，对话框被取消时下次启动再问。
+     */
+    private void offerReencryption() {
+        Context appContext = getApplicationContext();
+        new Thread(() -> {
+            int legacyCount = SignatureIndex.get(appContext).legacyRecords().size();
+            if (legacyCount == 0) {
+                return;
+            }
+            runOnUiThread(() -> {
+                if (isFinishing() || isDestroyed()) {
+                    return;
+                }
+                new AlertDialog.Builder(this)
+                        .setTitle("迁移旧签名文件")
+                        .setMessage("有 " + legacyCount + " 个签名文件使用旧的加密格式，密钥随应用数据一起备份。\n\n"
+                                + "迁移后文件由本机 Keystore 中的主密钥加密，旧密钥会被删除。主密钥无法备份，"
+                                + "重装应用、清除数据或恢复到新设备后，迁移过的文件将无法解密。")
+                        .setPositiveButton("迁移", (dialog, which) -> {
+                            Reencryptor.setEnabled(appContext, true);
+                            ReencryptionJobService.schedule(appContext);
+                        })
+                        .setNegativeButton("保持旧格式", (dialog, which) -> Reencryptor.setEnabled(appContext, false))
+                        .show();
+            });
+        }, "ReencryptionOffer").start();
+    }
 }
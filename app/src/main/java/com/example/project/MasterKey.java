@@ -0,0 +1,47 @@
+package com.example.project;
+
+import java.security.GeneralSecurityException;
+
+/**
+ * MasterKey 接口定义了用于包装（加密）每个文件数据密钥的主密钥。
+ * 包装使用带附加认证数据的加密，信封头中的元数据作为附加数据，被篡改时解包失败。
+ */
+public interface MasterKey {
+
+    /**
+     * @return 返回主密钥的标识，写入信封头，解密时用于确认使用的是同一个主密钥
+     */
+    String getId();
+
+    /**
+     * 包装数据密钥。
+     * @param dataKey 数据密钥的原始字节
+     * @param aad 附加认证数据
+     * @return 返回包装结果
+     * @throws GeneralSecurityException 加密失败时抛出
+     */
+    Wrapped wrap(byte[] dataKey, byte[] aad) throws GeneralSecurityException;
+
+    /**
+     * 解包数据密钥。
+     * @param iv 包装时使用的IV
+     * @param wrappedKey 包装后的数据密钥
+     * @param aad 附加认证数据，必须与包装时相同
+     * @return 返回数据密钥的原始字节
+     * @throws GeneralSecurityException 主密钥不匹配或数据被篡改时抛出
+     */
+    byte[] unwrap(byte[] iv, byte[] wrappedKey, byte[] aad) throws GeneralSecurityException;
+
+    /**
+     * 包装后的数据密钥及其IV。
+     */
+    final class Wrapped {
+        public final byte[] iv;          // 包装时使用的IV
+        public final byte[] wrappedKey;  // 包装后的数据密钥（含认证标签）
+
+        public Wrapped(byte[] iv, byte[] wrappedKey) {
+            this.iv = iv;
+            this.wrappedKey = wrappedKey;
+        }
+    }
+}
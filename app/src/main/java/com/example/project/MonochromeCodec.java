@@ -0,0 +1,136 @@
+package com.example.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * MonochromeCodec 类把单色签名图像编码为1位游程编码格式。
+ * 签名只有墨迹和背景两种像素，并且大部分是连续的背景，因此按行优先顺序记录交替出现的背景/墨迹的游程长度，
+ * 每个游程用一个变长整数表示，通常比PNG小一个数量级，编解码也只需要一次线性扫描。
+ *
+ * 格式：
+ * <pre>
+ * magic "SFMB"(4) | version(1) | 宽度 | 高度 | 游程长度...
+ * </pre>
+ * 第一个游程总是背景（长度可以为0），之后背景和墨迹交替出现，所有游程长度之和等于宽度乘高度。
+ */
+public final class MonochromeCodec {
+
+    // 单色格式的魔数和版本号
+    static final byte[] MAGIC = {'S', 'F', 'M', 'B'};
+    private static final int VERSION = 1;
+
+    // 解码时允许的最大像素数，防止损坏的数据耗尽内存
+    private static final long MAX_PIXELS = 64L * 1024 * 1024;
+
+    private MonochromeCodec() {
+    }
+
+    /**
+     * 编码一张按行优先排列的 alpha 图像，alpha 不小于阈值的像素视为墨迹。
+     * @param alpha alpha 数据，第 y 行从 y * stride 开始
+     * @param width 宽度
+     * @param height 高度
+     * @param stride 每行占用的字节数
+     * @param threshold 墨迹阈值，范围1到255
+     * @param out 输出流
+     * @throws IOException 写入失败时抛出
+     */
+    public static void encode(byte[] alpha, int width, int height, int stride, int threshold, OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        VectorSignatureCodec.writeVarint(out, width);
+        VectorSignatureCodec.writeVarint(out, height);
+
+        boolean ink = false;  // 第一个游程总是背景
+        long run = 0;
+        for (int y = 0; y < height; y++) {
+            int row = y * stride;
+            for (int x = 0; x < width; x++) {
+                boolean pixel = (alpha[row + x] & 0xFF) >= threshold;
+                if (pixel != ink) {
+                    VectorSignatureCodec.writeVarint(out, run);
+                    ink = pixel;
+                    run = 0;
+                }
+                run++;
+            }
+        }
+        VectorSignatureCodec.writeVarint(out, run);
+    }
+
+    /**
+     * 解码单色图像。
+     * @param in 输入流，必须位于魔数之前
+     * @return 返回解码得到的图像，墨迹像素的 alpha 为255，背景为0
+     * @throws IOException 数据无效或读取失败时抛出
+     */
+    public static Image decode(InputStream in) throws IOException {
+        for (byte b : MAGIC) {
+            if (in.read() != (b & 0xFF)) {
+                throw new IOException("不是单色签名数据");
+            }
+        }
+        int version = in.read();
+        if (version != VERSION) {
+            throw new IOException("不支持的单色签名版本: " + version);
+        }
+        long width = VectorSignatureCodec.readVarint(in);
+        long height = VectorSignatureCodec.readVarint(in);
+        // 先分别限制宽度和高度，否则很大的值相乘会溢出
+        if (width <= 0 || height <= 0 || width > MAX_PIXELS || height > MAX_PIXELS || width * height > MAX_PIXELS) {
+            throw new IOException("图像尺寸无效: " + width + "x" + height);
+        }
+        int total = (int) (width * height);
+        byte[] alpha = new byte[total];
+        boolean ink = false;
+        int position = 0;
+        while (position < total) {
+            long run = VectorSignatureCodec.readVarint(in);
+            if (run < 0 || run > total - position) {  // 超过63位的变长整数读出来是负数
+                throw new IOException("游程长度无效: " + run);
+            }
+            if (ink) {
+                Arrays.fill(alpha, position, position + (int) run, (byte) 0xFF);
+            }
+            position += (int) run;
+            ink = !ink;
+        }
+        return new Image((int) width, (int) height, alpha);
+    }
+
+    /**
+     * 判断数据开头是否为单色签名的魔数。
+     * @param header 数据开头的字节
+     * @param length 有效字节数
+     * @return 如果是单色签名返回 true
+     */
+    public static boolean isMonochromeSignature(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解码得到的单色图像。
+     */
+    public static final class Image {
+        public final int width;     // 宽度
+        public final int height;    // 高度
+        public final byte[] alpha;  // 按行优先排列的 alpha 数据，没有行填充
+
+        Image(int width, int height, byte[] alpha) {
+            this.width = width;
+            this.height = height;
+            this.alpha = alpha;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.project;
+
+import android.os.Build;
+import android.os.Trace;
+
+import java.util.Locale;
+
+/**
+ * PipelineMetrics 类为保存和读取签名的各个阶段计时，在发布版中也保持开启。
+ * 每个阶段用 begin/end 包围，同时输出 android.os.Trace 区段，可以在 Perfetto/systrace 中看到；
+ * 耗时记录到无锁的 LatencyHistogram 中，处理的字节数在跟踪开启时也作为 Trace 计数器输出。
+ * dump 返回各阶段的百分位摘要，可以在测试、日志或调试对话框中查看。
+ *
+ * 用法：
+ * <pre>
+ * long start = PipelineMetrics.begin(Stage.WRITE);
+ * long written = PipelineMetrics.FAILED;
+ * try {
+ *     ...
+ *     written = n;
+ * } finally {
+ *     PipelineMetrics.end(Stage.WRITE, start, written);
+ * }
+ * </pre>
+ * begin 和 end 必须在同一个线程中成对调用。
+ */
+public final class PipelineMetrics {
+
+    /**
+     * 流水线的阶段。
+     */
+    public enum Stage {
+        RENDER,           // 把笔画绘制为位图
+        ENCODE,           // 把矢量数据或位图编码为文件格式
+        ENCRYPT,          // 加密并写入暂存文件
+        PROVIDER_INSERT,  // 创建 MediaStore 条目
+        WRITE,            // 把暂存文件复制到 MediaStore
+        QUERY,            // 查询签名索引或 MediaStore
+        DECODE;           // 解密并解码签名
+
+        final String traceName = "Signature." + name().toLowerCase(Locale.ROOT);  // Trace 区段名称
+        final String counterName = traceName + ".bytes";                          // Trace 计数器名称
+    }
+
+    /** 传给 end 表示这一阶段失败。 */
+    public static final long FAILED = -1;
+
+    private static final StageStats[] STATS = new StageStats[Stage.values().length];
+
+    static {
+        for (int i = 0; i < STATS.length; i++) {
+            STATS[i] = new StageStats();
+        }
+    }
+
+    private PipelineMetrics() {
+    }
+
+    /**
+     * 开始一个阶段。
+     * @param stage 阶段
+     * @return 返回开始时间，传给 end
+     */
+    public static long begin(Stage stage) {
+        Trace.beginSection(stage.traceName);
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束一个阶段并记录耗时。
+     * @param stage 阶段
+     * @param startNanos begin 返回的开始时间
+     * @param bytes 处理的字节数，未知时为0，失败时为 FAILED
+     */
+    public static void end(Stage stage, long startNanos, long bytes) {
+        long duration = System.nanoTime() - startNanos;
+        Trace.endSection();
+        StageStats stats = STATS[stage.ordinal()];
+        if (bytes < 0) {
+            stats.recordFailure();
+            return;
+        }
+        long total = stats.record(duration, bytes);
+        if (bytes > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && Trace.isEnabled()) {
+            Trace.setCounter(stage.counterName, total);
+        }
+    }
+
+    /**
+     * @param stage 阶段
+     * @return 返回这一阶段的耗时分布（微秒）
+     */
+    public static LatencyHistogram getLatencyMicros(Stage stage) {
+        return STATS[stage.ordinal()].getMicros();
+    }
+
+    /**
+     * @param stage 阶段
+     * @return 返回这一阶段处理的字节总数
+     */
+    public static long getBytes(Stage stage) {
+        return STATS[stage.ordinal()].getBytes();
+    }
+
+    /**
+     * @param stage 阶段
+     * @return 返回这一阶段的失败次数
+     */
+    public static long getFailures(Stage stage) {
+        return STATS[stage.ordinal()].getFailures();
+    }
+
+    /**
+     * 生成所有阶段的摘要，每个阶段一行，没有记录的阶段省略。
+     * @return 返回摘要文本
+     */
+    public static String dump() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            StageStats stats = STATS[stage.ordinal()];
+            if (stats.getMicros().getCount() > 0 || stats.getFailures() > 0) {
+                builder.append(stage.traceName).append(": ").append(stats).append('\n');
+            }
+        }
+        return builder.length() == 0 ? "没有记录\n" : builder.toString();
+    }
+
+    /**
+     * 清空所有阶段的统计数据，例如在测试或基准测试开始之前。
+     */
+    public static void reset() {
+        for (StageStats stats : STATS) {
+            stats.reset();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.project;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.zip.CRC32;
+
+/**
+ * RecordLog 类是只追加写入的记录日志，SaveJournal 和 ReencryptionCheckpoint 都用它落盘。
+ * 每次追加可以包含多条记录，写入后调用 fsync，因此一批状态变化只需要一次落盘。
+ * 每条记录带有CRC32校验，进程在写入过程中被杀死时，末尾不完整的记录会在重放时被丢弃并截掉。
+ *
+ * 记录格式：
+ * <pre>
+ * 类型(1) | 负载长度(4) | 负载 | CRC32(4)
+ * </pre>
+ * 记录的类型和负载的含义由使用者决定。
+ */
+final class RecordLog {
+
+    // 单条记录负载的上限，超过时认为日志已损坏
+    private static final int MAX_PAYLOAD = 64 * 1024;
+
+    /**
+     * 重放时接收每条有效记录。
+     */
+    interface Reader {
+        /**
+         * @param type 记录类型
+         * @param payload 记录负载
+         * @throws IOException 负载无法解析时抛出
+         */
+        void apply(int type, byte[] payload) throws IOException;
+    }
+
+    private final File file;
+
+    /**
+     * @param file 日志文件，不存在时会在第一次追加时创建
+     */
+    RecordLog(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return 返回日志文件当前的大小
+     */
+    long length() {
+        return file.length();
+    }
+
+    /**
+     * 按顺序重放日志中的记录。末尾不完整或校验失败的记录及其后的内容被忽略并截掉，
+     * 否则之后追加的记录在下次重放时会被跳过。
+     * @param reader 接收每条有效记录
+     * @throws IOException 读取失败时抛出
+     */
+    void replay(Reader reader) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+        long validLength = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int type = in.read();
+                if (type < 0) {
+                    break;
+                }
+                int length = in.readInt();
+                if (length < 0 || length > MAX_PAYLOAD) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                int checksum = in.readInt();
+                if (checksum != checksum(type, payload)) {
+                    break;
+                }
+                reader.apply(type, payload);
+                validLength += 1 + 4 + length + 4;
+            }
+        } catch (EOFException ignored) {
+            // 进程在写入最后一条记录时被杀死，忽略不完整的记录
+        }
+        if (file.length() > validLength) {
+            try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+                raf.setLength(validLength);
+                raf.getFD().sync();
+            }
+        }
+    }
+
+    /**
+     * 把一条记录写入批次，批次写完后用 append 或 rewrite 一次落盘。
+     * @param batch 批次
+     * @param type 记录类型
+     * @param payload 记录负载
+     * @throws IOException 写入失败时抛出
+     */
+    static void writeRecord(ByteArrayOutputStream batch, int type, byte[] payload) throws IOException {
+        DataOutputStream out = new DataOutputStream(batch);
+        out.writeByte(type);
+        out.writeInt(payload.length);
+        out.write(payload);
+        out.writeInt(checksum(type, payload));
+    }
+
+    /**
+     * 追加一批记录并落盘。
+     * @param records writeRecord 写好的批次
+     * @throws IOException 写入失败时抛出
+     */
+    void append(byte[] records) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(records);
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * 清空日志并落盘。
+     * @throws IOException 写入失败时抛出
+     */
+    void truncate() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(file, false)) {
+            out.getFD().sync();
+        }
+    }
+
+    /**
+     * 用一批记录替换整个日志。先写临时文件再改名，任何时刻磁盘上都有完整的日志。
+     * @param records writeRecord 写好的批次
+     * @throws IOException 写入或改名失败时抛出
+     */
+    void rewrite(byte[] records) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp, false)) {
+            out.write(records);
+            out.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            throw new IOException("无法替换日志: " + file);
+        }
+    }
+
+    private static int checksum(int type, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+}
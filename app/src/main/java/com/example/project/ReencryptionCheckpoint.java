@@ -0,0 +1,188 @@
+package com.example.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * ReencryptionCheckpoint 类是重新加密任务的检查点日志，用 RecordLog 只追加写入，每批状态变化落盘一次，
+ * 末尾不完整的记录在重放时被丢弃。
+ *
+ * 一个文件的重新加密分为三步：新密文写入暂存文件并校验后记录 STAGED，然后用暂存文件覆盖原文件，
+ * 删除旧密钥后记录 DONE。进程在覆盖过程中被杀死时，原文件可能只写了一半，
+ * 恢复时对所有 STAGED 而没有 DONE 的文件从暂存文件重做覆盖，因此任何时刻都有一份可以解密的完整数据。
+ * 无法迁移的文件记录为 SKIPPED，之后的运行不再重新暂存；SKIPPED 不会去掉 STAGED 记录，只有 DONE 会。
+ */
+final class ReencryptionCheckpoint {
+
+    private static final int TYPE_STAGED = 1;   // 新密文已暂存：id、uri、文件名、旧密钥名
+    private static final int TYPE_DONE = 2;     // 已覆盖原文件并删除旧密钥：id
+    private static final int TYPE_SKIPPED = 3;  // 无法迁移，不再重试：id
+
+    // 日志超过这个大小时重写为紧凑日志
+    private static final long COMPACT_THRESHOLD = 256 * 1024;
+
+    /**
+     * 一个已暂存、尚未覆盖完成的文件。
+     */
+    static final class Entry {
+        final long id;          // MediaStore 中的ID，同时是暂存文件名
+        final String uri;       // 要覆盖的文件
+        final String fileName;  // 文件名
+        final String keyRef;    // 覆盖完成后要删除的旧密钥名，没有时为空字符串
+
+        Entry(long id, String uri, String fileName, String keyRef) {
+            this.id = id;
+            this.uri = uri;
+            this.fileName = fileName;
+            this.keyRef = keyRef == null ? "" : keyRef;
+        }
+    }
+
+    private final RecordLog log;
+    private final Map<Long, Entry> staged = new LinkedHashMap<>();  // 已暂存、尚未完成的文件
+    private final Set<Long> skipped = new HashSet<>();              // 不再重试的文件
+
+    /**
+     * 打开检查点并重放已有的记录。
+     * @param file 检查点文件，不存在时会在第一次追加时创建
+     * @throws IOException 读取失败时抛出
+     */
+    ReencryptionCheckpoint(File file) throws IOException {
+        this.log = new RecordLog(file);
+        log.replay(this::apply);
+    }
+
+    /**
+     * @return 返回上次运行中已暂存、但没有确认覆盖完成的文件
+     */
+    synchronized List<Entry> staged() {
+        return new ArrayList<>(staged.values());
+    }
+
+    /**
+     * 判断文件是否需要重新暂存。已暂存的文件只能从暂存文件重做覆盖：原文件可能已经被覆盖了一半，
+     * 重新暂存会覆盖唯一完整的副本。
+     * @param id 文件ID
+     * @return 如果文件既没有被跳过也没有 STAGED 记录返回 true
+     */
+    synchronized boolean needsStaging(long id) {
+        return !skipped.contains(id) && !staged.containsKey(id);
+    }
+
+    /**
+     * 记录一批文件的新密文已经暂存，只落盘一次。必须在覆盖原文件之前调用。
+     * @param entries 已暂存的文件
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void markStaged(Collection<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Entry entry : entries) {
+            RecordLog.writeRecord(batch, TYPE_STAGED, encodeStaged(entry));
+        }
+        log.append(batch.toByteArray());
+        for (Entry entry : entries) {
+            staged.put(entry.id, entry);
+        }
+    }
+
+    /**
+     * 记录一批文件已经覆盖完成，只落盘一次。
+     * @param ids 文件ID
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void markDone(Collection<Long> ids) throws IOException {
+        appendIds(TYPE_DONE, ids);
+        for (Long id : ids) {
+            staged.remove(id);
+        }
+        compactIfNeeded();
+    }
+
+    /**
+     * 记录一批文件无法迁移，只落盘一次。已暂存的文件保留 STAGED 记录，仍然会从暂存文件重做覆盖；
+     * 要放弃一个已暂存的文件，先用 markDone 去掉它的记录。
+     * @param ids 文件ID
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void markSkipped(Collection<Long> ids) throws IOException {
+        appendIds(TYPE_SKIPPED, ids);
+        skipped.addAll(ids);
+        compactIfNeeded();
+    }
+
+    private void appendIds(int type, Collection<Long> ids) throws IOException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Long id : ids) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(8);
+            new DataOutputStream(payload).writeLong(id);
+            RecordLog.writeRecord(batch, type, payload.toByteArray());
+        }
+        log.append(batch.toByteArray());
+    }
+
+    private void apply(int type, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (type) {
+            case TYPE_STAGED: {
+                long id = in.readLong();
+                staged.put(id, new Entry(id, in.readUTF(), in.readUTF(), in.readUTF()));
+                break;
+            }
+            case TYPE_DONE:
+                staged.remove(in.readLong());
+                break;
+            case TYPE_SKIPPED:
+                skipped.add(in.readLong());  // 不影响 STAGED 记录
+                break;
+            default:
+                // 未知的记录类型，跳过
+                break;
+        }
+    }
+
+    private static byte[] encodeStaged(Entry entry) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeLong(entry.id);
+        out.writeUTF(entry.uri);
+        out.writeUTF(entry.fileName);
+        out.writeUTF(entry.keyRef);
+        return payload.toByteArray();
+    }
+
+    /**
+     * 日志过大时重写为只包含未完成和不再重试的文件的紧凑日志。
+     */
+    private void compactIfNeeded() throws IOException {
+        if (log.length() < COMPACT_THRESHOLD) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Entry entry : staged.values()) {
+            RecordLog.writeRecord(batch, TYPE_STAGED, encodeStaged(entry));
+        }
+        for (Long id : skipped) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream(8);
+            new DataOutputStream(payload).writeLong(id);
+            RecordLog.writeRecord(batch, TYPE_SKIPPED, payload.toByteArray());
+        }
+        log.rewrite(batch.toByteArray());
+    }
+}
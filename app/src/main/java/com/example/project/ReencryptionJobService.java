@@ -0,0 +1,69 @@
+package com.example.project;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+/**
+ * ReencryptionJobService 在后台运行 Reencryptor，把旧文件迁移到信封格式。
+ * 系统要求停止时当前批次完成后退出并请求重新调度，下次从检查点继续。
+ */
+public class ReencryptionJobService extends JobService {
+
+    private static final String TAG = "ReencryptionJob";
+
+    static final int JOB_ID = 1001;
+
+    private volatile Reencryptor reencryptor;
+
+    /**
+     * 调度迁移任务。已经调度过或正在运行时保持不变，没有旧文件时任务很快结束。
+     * 用户没有同意迁移、也没有未完成的检查点时不调度。
+     * @param context 任意上下文
+     */
+    public static void schedule(Context context) {
+        if (!Reencryptor.isEnabled(context) && !Reencryptor.hasCheckpoint(context)) {
+            return;
+        }
+        JobScheduler scheduler = context.getSystemService(JobScheduler.class);
+        if (scheduler == null || scheduler.getPendingJob(JOB_ID) != null) {
+            return;  // 重新调度同一个ID会停止正在运行的任务
+        }
+        JobInfo job = new JobInfo.Builder(JOB_ID, new ComponentName(context, ReencryptionJobService.class))
+                .setRequiresBatteryNotLow(true)
+                .setRequiresStorageNotLow(true)  // 暂存文件需要额外的空间
+                .build();
+        scheduler.schedule(job);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        Reencryptor task = new Reencryptor(this);
+        reencryptor = task;
+        new Thread(() -> {
+            boolean reschedule;
+            try {
+                Reencryptor.Result result = task.run(null);
+                reschedule = result.remaining > 0;  // 暂时性错误或被停止，稍后继续
+            } catch (Exception e) {
+                Log.w(TAG, "迁移失败，稍后从检查点继续", e);
+                reschedule = true;
+            }
+            jobFinished(params, reschedule);
+        }, "Reencryption").start();
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        Reencryptor task = reencryptor;
+        if (task != null) {
+            task.cancel();
+        }
+        return true;  // 下次从检查点继续
+    }
+}
@@ -0,0 +1,519 @@
+package com.example.project;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Reencryptor 类把按文件名保存密钥的旧文件（128位密钥，包括最早的 ECB 文件）迁移到信封格式：
+ * 数据密钥为256位、由 Keystore 中的主密钥包装后写在文件头里，不再在密钥存储中保存明文密钥。
+ *
+ * 文件按批处理。每批先在线程池中并行解密、重新加密到临时文件并解密校验，校验通过后改名为暂存文件，
+ * 然后在检查点中一次记录整批已暂存，再并行用暂存文件覆盖原文件，最后一次删除整批的旧密钥并记录完成。
+ * 进程随时被杀死都可以从检查点继续：已暂存但没有完成的文件从暂存文件重做覆盖，
+ * 有 STAGED 记录的暂存文件在覆盖完成之前不会被重新生成或删除，旧密钥在原文件被完整覆盖之前也不会删除。
+ * 覆盖原文件不是原子的，覆盖失败后原文件可能只写了一半，直到下次运行重做覆盖；
+ * 在此期间 SignatureVault.openDecrypted 通过 stagedCopy 读取暂存文件，其他读取者不会看到不完整的文件。
+ * <p>
+ * 迁移后的文件依赖本机 Keystore 中无法备份的主密钥，旧密钥被删除后重装应用或从备份恢复就无法再解密，
+ * 因此只有用户通过 setEnabled 明确同意后才迁移新的文件；没有同意时 run 只完成检查点中已经开始的覆盖。
+ * run 会阻塞，必须在后台线程调用。
+ */
+public final class Reencryptor {
+
+    private static final String TAG = "Reencryptor";
+
+    private static final String DIRECTORY = "reencrypt";              // 暂存文件和检查点所在目录
+    private static final String CHECKPOINT_FILE = "checkpoint.log";
+    private static final String STAGED_SUFFIX = ".staged";
+    private static final String TEMP_SUFFIX = ".tmp";                 // 尚未校验的暂存文件
+
+    private static final String PREFERENCES = "reencryption";
+    private static final String KEY_ENABLED = "enabled";  // 用户是否同意迁移，没有这一项时说明还没有询问过
+
+    // MediaStore 的文档提供者，文件选择器返回的URI属于它
+    private static final String MEDIA_DOCUMENTS_AUTHORITY = "com.android.providers.media.documents";
+
+    // 每批的文件数：检查点和密钥存储每批只落盘一次
+    private static final int BATCH_SIZE = 64;
+
+    // 线程数的上限，解密和加密受 CPU 限制，覆盖文件受存储限制
+    private static final int MAX_WORKERS = 4;
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 迁移进度的回调，在调用 run 的线程中调用。
+     */
+    public interface Progress {
+        /**
+         * @param migrated 已迁移的文件数
+         * @param skipped 无法迁移、不再重试的文件数
+         * @param total 本次需要迁移的文件总数
+         */
+        void onProgress(int migrated, int skipped, int total);
+    }
+
+    /**
+     * 迁移的结果。
+     */
+    public static final class Result {
+        public final int migrated;    // 已迁移的文件数
+        public final int skipped;     // 无法迁移、不再重试的文件数
+        public final int remaining;   // 因为暂时性错误或取消而留到下次的文件数
+
+        Result(int migrated, int skipped, int remaining) {
+            this.migrated = migrated;
+            this.skipped = skipped;
+            this.remaining = remaining;
+        }
+    }
+
+    // 覆盖原文件的结果
+    private enum Swap {
+        SWAPPED,   // 已用新密文覆盖
+        GONE,      // 原文件已经不存在
+        REFUSED,   // 没有写入权限，原文件没有被这次覆盖改动
+        MISSING,   // 暂存文件丢失，无法覆盖
+        FAILED     // 写入过程中失败，留在检查点中下次重做
+    }
+
+    private final Context context;
+    private final File directory;
+    private volatile boolean cancelled;
+
+    /**
+     * 构造函数。
+     * @param context 任意上下文
+     */
+    public Reencryptor(Context context) {
+        this.context = context.getApplicationContext();
+        this.directory = new File(this.context.getFilesDir(), DIRECTORY);
+    }
+
+    /**
+     * @param context 任意上下文
+     * @return 用户已经同意或拒绝过迁移时返回 true
+     */
+    public static boolean isDecided(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).contains(KEY_ENABLED);
+    }
+
+    /**
+     * @param context 任意上下文
+     * @return 用户同意迁移时返回 true
+     */
+    public static boolean isEnabled(Context context) {
+        return context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).getBoolean(KEY_ENABLED, false);
+    }
+
+    /**
+     * 记录用户是否同意迁移。
+     * @param context 任意上下文
+     * @param enabled 是否同意
+     */
+    public static void setEnabled(Context context, boolean enabled) {
+        context.getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE).edit().putBoolean(KEY_ENABLED, enabled).apply();
+    }
+
+    /**
+     * @param context 任意上下文
+     * @return 之前开始过迁移、检查点中可能有需要完成的覆盖时返回 true
+     */
+    static boolean hasCheckpoint(Context context) {
+        return new File(new File(context.getFilesDir(), DIRECTORY), CHECKPOINT_FILE).exists();
+    }
+
+    /**
+     * 请求停止，当前批次完成后 run 返回，可以在任意线程调用。
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * 先完成上次中断时已暂存的文件，用户同意迁移时再迁移所有旧文件。
+     * @param progress 进度回调，可以为 null
+     * @return 返回迁移结果
+     * @throws Exception 主密钥不可用、检查点或密钥存储写入失败时抛出，已完成的部分不受影响
+     */
+    public Result run(Progress progress) throws Exception {
+        MasterKey masterKey = KeystoreMasterKey.get();  // 没有主密钥时迁移没有意义
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory);
+        }
+        ReencryptionCheckpoint checkpoint = new ReencryptionCheckpoint(new File(directory, CHECKPOINT_FILE));
+        int workerCount = Math.max(1, Math.min(MAX_WORKERS, Runtime.getRuntime().availableProcessors()));
+        ExecutorService workers = Executors.newFixedThreadPool(workerCount);
+        try {
+            int[] counts = new int[3];  // 已迁移、跳过、留到下次
+
+            // 1. 重做上次已暂存但没有确认完成的覆盖
+            List<ReencryptionCheckpoint.Entry> interrupted = checkpoint.staged();
+            if (!interrupted.isEmpty()) {
+                Log.i(TAG, "从检查点恢复 " + interrupted.size() + " 个未完成的文件");
+                finish(workers, checkpoint, interrupted, false, counts);
+            }
+            if (!isEnabled(context)) {
+                return new Result(counts[0], counts[1], counts[2]);  // 已暂存的文件必须完成，其余保持旧格式
+            }
+
+            // 2. 迁移所有仍然引用按文件名保存的密钥的文件，重做失败、仍在检查点中的文件只能从暂存文件继续
+            SignatureIndex index = SignatureIndex.get(context);
+            index.reconcile(null);
+            List<SignatureRecord> pending = new ArrayList<>();
+            for (SignatureRecord record : index.legacyRecords()) {
+                if (checkpoint.needsStaging(record.id)) {
+                    pending.add(record);
+                }
+            }
+            int total = pending.size();
+            int processed = 0;
+            while (processed < total && !cancelled) {
+                List<SignatureRecord> batch = pending.subList(processed, Math.min(total, processed + BATCH_SIZE));
+                stageAndFinish(workers, checkpoint, masterKey, batch, counts);
+                processed += batch.size();
+                if (progress != null) {
+                    progress.onProgress(counts[0], counts[1], total);
+                }
+            }
+            int remaining = counts[2] + total - processed;
+            Log.i(TAG, "迁移结束：完成 " + counts[0] + "，跳过 " + counts[1] + "，剩余 " + remaining);
+            return new Result(counts[0], counts[1], remaining);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * 并行暂存一批文件，记录检查点后覆盖原文件。
+     */
+    private void stageAndFinish(ExecutorService workers, ReencryptionCheckpoint checkpoint, MasterKey masterKey,
+                                List<SignatureRecord> batch, int[] counts) throws Exception {
+        List<Future<ReencryptionCheckpoint.Entry>> futures = new ArrayList<>(batch.size());
+        for (SignatureRecord record : batch) {
+            futures.add(workers.submit(() -> stage(record, masterKey)));
+        }
+        List<ReencryptionCheckpoint.Entry> staged = new ArrayList<>(batch.size());
+        List<Long> unreadable = new ArrayList<>();
+        Exception fatal = null;
+        for (int i = 0; i < futures.size(); i++) {
+            SignatureRecord record = batch.get(i);
+            try {
+                staged.add(futures.get(i).get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                tempFile(record.id).delete();  // 这些文件没有 STAGED 记录，原文件没有被改动
+                if (cause instanceof MasterKeyUnavailableException) {
+                    fatal = (Exception) cause.getCause();
+                } else if (cause instanceof GeneralSecurityException || cause instanceof IllegalArgumentException) {
+                    Log.w(TAG, "无法解密，跳过: " + record.uri, cause);  // 密钥丢失或文件损坏，重试也不会成功
+                    unreadable.add(record.id);
+                } else {
+                    Log.w(TAG, "暂存失败，下次重试: " + record.uri, cause);
+                    counts[2]++;
+                }
+            }
+        }
+        checkpoint.markSkipped(unreadable);
+        counts[1] += unreadable.size();
+        if (!staged.isEmpty()) {
+            checkpoint.markStaged(staged);  // 覆盖原文件之前落盘
+            finish(workers, checkpoint, staged, true, counts);
+        }
+        if (fatal != null) {
+            throw fatal;
+        }
+    }
+
+    /**
+     * 并行用暂存文件覆盖原文件，然后一次删除旧密钥、更新索引并记录完成。
+     * @param fresh 这一批是否刚刚暂存，原文件还没有被覆盖过；重做检查点中的文件时为 false
+     */
+    private void finish(ExecutorService workers, ReencryptionCheckpoint checkpoint,
+                        List<ReencryptionCheckpoint.Entry> staged, boolean fresh, int[] counts) throws Exception {
+        List<Future<Swap>> futures = new ArrayList<>(staged.size());
+        for (ReencryptionCheckpoint.Entry entry : staged) {
+            futures.add(workers.submit(() -> swap(entry)));
+        }
+        List<Long> done = new ArrayList<>();
+        List<Long> swapped = new ArrayList<>();
+        List<Long> gone = new ArrayList<>();
+        List<Long> abandoned = new ArrayList<>();
+        List<String> oldKeys = new ArrayList<>();
+        for (int i = 0; i < futures.size(); i++) {
+            ReencryptionCheckpoint.Entry entry = staged.get(i);
+            switch (futures.get(i).get()) {
+                case SWAPPED:
+                    swapped.add(entry.id);
+                    break;
+                case GONE:
+                    gone.add(entry.id);
+                    break;
+                case REFUSED:
+                    if (fresh) {
+                        abandoned.add(entry.id);  // 原文件没有被改动，旧密钥仍然需要
+                    } else {
+                        counts[2]++;  // 原文件可能已经被之前的覆盖改动，暂存文件是唯一完整的副本
+                    }
+                    continue;
+                case MISSING:
+                    abandoned.add(entry.id);
+                    continue;
+                case FAILED:
+                default:
+                    counts[2]++;
+                    continue;  // 保留暂存文件和检查点，下次重做
+            }
+            done.add(entry.id);
+            if (!entry.keyRef.isEmpty()) {
+                oldKeys.add(entry.keyRef);
+            }
+        }
+
+        KeyStores.get(context).removeAll(oldKeys);  // 原文件已经完整覆盖，一次落盘删除整批旧密钥
+        SignatureIndex index = SignatureIndex.get(context);
+        index.importById(swapped);  // 更新大小、修改时间，旧密钥已删除
+        index.delete(gone);
+        checkpoint.markDone(done);
+        checkpoint.markDone(abandoned);  // 先去掉 STAGED 记录，再标记为不再重试
+        checkpoint.markSkipped(abandoned);
+        for (Long id : done) {
+            stagedFile(id).delete();
+        }
+        for (Long id : abandoned) {
+            stagedFile(id).delete();
+        }
+        counts[0] += swapped.size();
+        counts[1] += abandoned.size();
+    }
+
+    /**
+     * 解密一个旧文件，用新的数据密钥写入临时文件，落盘后解密校验摘要，校验通过后改名为暂存文件。
+     * 只对没有 STAGED 记录的文件调用，此时的暂存文件是上次在记录之前中断留下的，可以丢弃。
+     * @return 返回检查点记录
+     */
+    private ReencryptionCheckpoint.Entry stage(SignatureRecord record, MasterKey masterKey) throws Exception {
+        stagedFile(record.id).delete();  // 否则读取原文件时会读到它
+        File temp = tempFile(record.id);
+        MessageDigest written = MessageDigest.getInstance("SHA-256");
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        try (InputStream decrypted = SignatureVault.openDecrypted(context, record.uri)) {
+            PushbackInputStream in = new PushbackInputStream(decrypted, 12);
+            byte[] header = new byte[12];
+            int headerLength = readFully(in, header);
+            in.unread(header, 0, headerLength);
+
+            FileOutputStream file = new FileOutputStream(temp);
+            SignatureVault.Encryption encryption;
+            try {
+                encryption = SignatureVault.beginEncryption(new SyncOnCloseOutputStream(file), record.name,
+                        formatOf(Arrays.copyOf(header, headerLength)));
+            } catch (Exception e) {
+                file.close();
+                throw e;
+            }
+            if (encryption.nameKey.length != 0) {
+                encryption.stream.close();
+                throw new MasterKeyUnavailableException(new GeneralSecurityException("主密钥不可用"));
+            }
+            try (OutputStream out = encryption.stream) {
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    written.update(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                }
+            }  // 关闭时写出最后一个分块并落盘
+        } finally {
+            AESUtil.wipe(buffer);
+        }
+
+        // 校验：用主密钥解密暂存文件，明文摘要必须与原文件一致
+        MessageDigest verified = MessageDigest.getInstance("SHA-256");
+        try (InputStream in = new FileInputStream(temp);
+             InputStream plain = SignatureEnvelope.open(in, masterKey).plaintext) {
+            byte[] check = new byte[COPY_BUFFER_SIZE];
+            int n;
+            while ((n = plain.read(check)) != -1) {
+                verified.update(check, 0, n);
+            }
+            AESUtil.wipe(check);
+        }
+        if (!MessageDigest.isEqual(written.digest(), verified.digest())) {
+            throw new IOException("暂存文件校验失败: " + record.uri);
+        }
+        if (!temp.renameTo(stagedFile(record.id))) {
+            throw new IOException("无法保存暂存文件: " + record.uri);
+        }
+        return new ReencryptionCheckpoint.Entry(record.id, record.uri.toString(), record.name, record.keyRef);
+    }
+
+    /**
+     * 用暂存文件覆盖原文件并落盘。重复执行的结果相同，恢复时可以直接重做。
+     */
+    private Swap swap(ReencryptionCheckpoint.Entry entry) {
+        File temp = stagedFile(entry.id);
+        if (!temp.isFile()) {
+            Log.e(TAG, "暂存文件丢失，无法完成覆盖: " + entry.uri);
+            return Swap.MISSING;
+        }
+        ContentResolver resolver = context.getContentResolver();
+        ParcelFileDescriptor descriptor;
+        try {
+            descriptor = resolver.openFileDescriptor(Uri.parse(entry.uri), "wt");
+        } catch (FileNotFoundException e) {
+            return Swap.GONE;
+        } catch (SecurityException e) {
+            Log.w(TAG, "没有写入权限，跳过: " + entry.uri, e);
+            return Swap.REFUSED;
+        }
+        if (descriptor == null) {
+            return Swap.REFUSED;
+        }
+        try (ParcelFileDescriptor pfd = descriptor;
+             FileInputStream in = new FileInputStream(temp);
+             FileOutputStream out = new FileOutputStream(pfd.getFileDescriptor())) {
+            byte[] buffer = new byte[COPY_BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            out.getFD().sync();  // 删除旧密钥之前确保新密文已经落盘
+            return Swap.SWAPPED;
+        } catch (IOException e) {
+            Log.w(TAG, "覆盖失败，下次从暂存文件重做: " + entry.uri, e);
+            return Swap.FAILED;
+        }
+    }
+
+    private File stagedFile(long id) {
+        return new File(directory, id + STAGED_SUFFIX);
+    }
+
+    private File tempFile(long id) {
+        return new File(directory, id + TEMP_SUFFIX);
+    }
+
+    /**
+     * 查找签名文件已经校验过的新密文。暂存文件只在校验通过后出现，在原文件被完整覆盖并记录完成之后才删除，
+     * 存在时它与原文件的明文相同，而原文件可能正在被覆盖或上次覆盖失败只写了一半。
+     * @param context 任意上下文
+     * @param uri MediaStore 或其文档提供者中的签名文件
+     * @return 返回暂存文件，没有时返回 null
+     */
+    static File stagedCopy(Context context, Uri uri) {
+        long id = mediaId(uri);
+        if (id < 0) {
+            return null;
+        }
+        File staged = new File(new File(context.getFilesDir(), DIRECTORY), id + STAGED_SUFFIX);
+        return staged.isFile() ? staged : null;
+    }
+
+    /**
+     * @return 返回 MediaStore 中的ID，不是 MediaStore 的URI时返回 -1
+     */
+    private static long mediaId(Uri uri) {
+        try {
+            if (MediaStore.AUTHORITY.equals(uri.getAuthority())) {
+                return ContentUris.parseId(uri);
+            }
+            if (MEDIA_DOCUMENTS_AUTHORITY.equals(uri.getAuthority())) {
+                String documentId = DocumentsContract.getDocumentId(uri);  // 形如 image:123
+                int colon = documentId.indexOf(':');
+                return colon >= 0 ? Long.parseLong(documentId.substring(colon + 1)) : -1;
+            }
+        } catch (RuntimeException ignored) {
+            // 集合URI或无法解析的文档ID
+        }
+        return -1;
+    }
+
+    private static int readFully(InputStream in, byte[] buffer) throws IOException {
+        int read = 0;
+        while (read < buffer.length) {
+            int n = in.read(buffer, read, buffer.length - read);
+            if (n < 0) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    /**
+     * 按明文的文件头判断格式，写入信封的元数据。
+     */
+    private static String formatOf(byte[] header) {
+        if (VectorSignatureCodec.isVectorSignature(header, header.length)) {
+            return SignatureExporter.Format.VECTOR.name();
+        }
+        if (MonochromeCodec.isMonochromeSignature(header, header.length)) {
+            return SignatureExporter.Format.MONOCHROME_RLE.name();
+        }
+        if (".webp".equals(ZipExportEngine.imageExtension(header))) {
+            return SignatureExporter.Format.WEBP_LOSSLESS.name();
+        }
+        return SignatureExporter.Format.PNG_FULL.name();  // 旧版本保存的是整个视图大小的PNG
+    }
+
+    /**
+     * 关闭前先落盘的文件输出流，加密流关闭时会关闭底层流，之后已经无法再调用 sync。
+     */
+    private static final class SyncOnCloseOutputStream extends FilterOutputStream {
+        private final FileOutputStream file;
+
+        SyncOnCloseOutputStream(FileOutputStream file) {
+            super(file);
+            this.file = file;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            file.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                file.flush();
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+        }
+    }
+
+    /**
+     * 主密钥在迁移过程中变得不可用，整个任务需要停止。
+     */
+    private static final class MasterKeyUnavailableException extends Exception {
+        MasterKeyUnavailableException(GeneralSecurityException cause) {
+            super(cause);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.project;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SaveJournal 类是保存队列的预写日志，记录每个保存任务的状态变化。
+ * 日志用 RecordLog 只追加写入，每次追加可以包含多条记录，因此一批任务的状态只需要一次落盘；
+ * 进程在写入过程中被杀死时，末尾不完整的记录会在重放时被丢弃。
+ * 所有任务都完成后日志会被截断，未完成的任务较多时按需重写为只包含这些任务的紧凑日志。
+ */
+final class SaveJournal {
+
+    private static final int TYPE_ENQUEUED = 1;   // 任务入队：id、文件名、密钥、创建时间
+    private static final int TYPE_INSERTED = 2;   // 已创建 MediaStore 条目：id、uri
+    private static final int TYPE_DONE = 3;       // 任务完成或放弃：id
+
+    // 日志超过这个大小时重写为紧凑日志
+    private static final long COMPACT_THRESHOLD = 256 * 1024;
+
+    /**
+     * 日志中记录的一个保存任务。
+     */
+    static final class Entry {
+        final String id;          // 任务ID，同时是暂存文件名
+        final String fileName;    // 保存到 MediaStore 的文件名，也是密钥的键
+        final byte[] key;         // 需要按文件名保存的密钥，信封格式的文件为空数组
+        final long createdAt;     // 入队时间
+        String uri;               // 已创建的 MediaStore 条目，尚未创建时为 null
+
+        Entry(String id, String fileName, byte[] key, long createdAt) {
+            this.id = id;
+            this.fileName = fileName;
+            this.key = key;
+            this.createdAt = createdAt;
+        }
+    }
+
+    private final RecordLog log;
+    private final Map<String, Entry> pending = new LinkedHashMap<>();  // 按入队顺序排列的未完成任务
+
+    /**
+     * 打开日志并重放已有的记录。
+     * @param file 日志文件，不存在时会在第一次追加时创建
+     * @throws IOException 读取失败时抛出
+     */
+    SaveJournal(File file) throws IOException {
+        this.log = new RecordLog(file);
+        log.replay(this::apply);
+    }
+
+    /**
+     * @return 返回按入队顺序排列的未完成任务
+     */
+    synchronized List<Entry> getPending() {
+        return new ArrayList<>(pending.values());
+    }
+
+    synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 记录一个新入队的任务并落盘。
+     * @param entry 任务
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void enqueue(Entry entry) throws IOException {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        RecordLog.writeRecord(batch, TYPE_ENQUEUED, encodeEnqueued(entry));
+        log.append(batch.toByteArray());
+        pending.put(entry.id, entry);
+    }
+
+    /**
+     * 记录一批任务已经创建了 MediaStore 条目，只落盘一次。
+     * @param entries 已经设置了 uri 的任务
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void markInserted(Collection<Entry> entries) throws IOException {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (Entry entry : entries) {
+            RecordLog.writeRecord(batch, TYPE_INSERTED, encodeInserted(entry));
+        }
+        log.append(batch.toByteArray());
+    }
+
+    /**
+     * 记录一批任务已经完成（或被放弃），只落盘一次。所有任务都完成时截断日志。
+     * @param ids 任务ID
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void markDone(Collection<String> ids) throws IOException {
+        if (ids.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        for (String id : ids) {
+            ByteArrayOutputStream payload = new ByteArrayOutputStream();
+            new DataOutputStream(payload).writeUTF(id);
+            RecordLog.writeRecord(batch, TYPE_DONE, payload.toByteArray());
+        }
+        log.append(batch.toByteArray());
+        for (String id : ids) {
+            pending.remove(id);
+        }
+        if (pending.isEmpty()) {
+            log.truncate();
+        } else if (log.length() > COMPACT_THRESHOLD) {
+            compact();
+        }
+    }
+
+    private void apply(int type, byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        switch (type) {
+            case TYPE_ENQUEUED: {
+                String id = in.readUTF();
+                String fileName = in.readUTF();
+                byte[] key = new byte[in.readUnsignedShort()];
+                in.readFully(key);
+                long createdAt = in.readLong();
+                pending.put(id, new Entry(id, fileName, key, createdAt));
+                break;
+            }
+            case TYPE_INSERTED: {
+                Entry entry = pending.get(in.readUTF());
+                String uri = in.readUTF();
+                if (entry != null) {
+                    entry.uri = uri;
+                }
+                break;
+            }
+            case TYPE_DONE:
+                pending.remove(in.readUTF());
+                break;
+            default:
+                // 未知的记录类型，跳过
+                break;
+        }
+    }
+
+    private static byte[] encodeEnqueued(Entry entry) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeUTF(entry.id);
+        out.writeUTF(entry.fileName);
+        out.writeShort(entry.key.length);
+        out.write(entry.key);
+        out.writeLong(entry.createdAt);
+        return payload.toByteArray();
+    }
+
+    private static byte[] encodeInserted(Entry entry) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(payload);
+        out.writeUTF(entry.id);
+        out.writeUTF(entry.uri);
+        return payload.toByteArray();
+    }
+
+    /**
+     * 把日志重写为只包含未完成任务的紧凑日志。
+     */
+    private void compact() throws IOException {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        List<Entry> inserted = new ArrayList<>();
+        for (Entry entry : pending.values()) {
+            RecordLog.writeRecord(batch, TYPE_ENQUEUED, encodeEnqueued(entry));
+            if (entry.uri != null) {
+                inserted.add(entry);
+            }
+        }
+        for (Entry entry : inserted) {
+            RecordLog.writeRecord(batch, TYPE_INSERTED, encodeInserted(entry));
+        }
+        log.rewrite(batch.toByteArray());
+    }
+}
@@ -0,0 +1,239 @@
+package com.example.project;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * SavePipeline 类在后台线程中保存签名，避免在UI线程上编码、加密和写文件。
+ * 保存分为两个并行的阶段：编码阶段把签名绘制并编码后写入有界管道，
+ * 加密阶段生成密钥，并从管道中读取数据按 SignatureVault 的格式加密写入暂存文件，因此编码下一个块的同时可以加密上一个块。
+ * 暂存文件写完后交给 SaveQueue，由它持久化并发布到 MediaStore。
+ * 完成、失败或取消时在主线程回调，失败或取消时会删除暂存文件。
+ */
+public final class SavePipeline {
+
+    /**
+     * 保存结果的回调，总是在主线程中调用。
+     */
+    public interface Callback {
+        /**
+         * 保存成功。签名已经持久化到保存队列，稍后由队列发布到 MediaStore。
+         */
+        void onSaved();
+
+        /**
+         * 保存失败，已经清理了暂存文件。
+         * @param error 失败的原因
+         */
+        void onFailed(Exception error);
+
+        /**
+         * 保存被取消，已经清理了暂存文件。
+         */
+        void onCancelled();
+    }
+
+    // 每次保存占用两个线程（编码和加密），最多同时进行两次保存，再多的请求排队等待
+    private static final int THREADS = 4;
+    private static final int QUEUE_CAPACITY = 8;
+
+    // 管道的块大小与加密分块大小一致，最多缓冲4个块
+    private static final int PIPE_BLOCK_SIZE = AESUtil.DEFAULT_CHUNK_SIZE;
+    private static final int PIPE_CAPACITY = 4;
+
+    private static volatile SavePipeline instance;
+
+    private final Context context;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private SavePipeline(Context context) {
+        this.context = context.getApplicationContext();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                r -> new Thread(() -> {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);  // 低于UI线程，避免和绘制争抢CPU
+                    r.run();
+                }, "SavePipeline-" + threadCount.incrementAndGet()));
+        this.executor.allowCoreThreadTimeOut(true);  // 空闲时释放线程
+    }
+
+    /**
+     * 获取全局唯一的保存流水线。它不依赖某个活动，屏幕旋转等情况下保存会继续进行。
+     * @param context 任意上下文
+     * @return 返回保存流水线
+     */
+    public static SavePipeline get(Context context) {
+        if (instance == null) {
+            synchronized (SavePipeline.class) {
+                if (instance == null) {
+                    instance = new SavePipeline(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 在后台保存签名。
+     * @param signature 签名的矢量数据，调用后不应再修改
+     * @param format 导出格式
+     * @param callback 结果回调
+     * @return 返回可以取消的保存任务
+     * @throws java.util.concurrent.RejectedExecutionException 排队的保存过多时抛出
+     */
+    public Task save(StrokeBuffer signature, SignatureExporter.Format format, Callback callback) {
+        Task task = new Task(signature, format, callback);
+        task.start();
+        return task;
+    }
+
+    /**
+     * 一次保存任务。
+     */
+    public final class Task {
+        private final StrokeBuffer signature;
+        private final SignatureExporter.Format format;
+        private final BlockPipe pipe = new BlockPipe(PIPE_BLOCK_SIZE, PIPE_CAPACITY);
+        private volatile Callback callback;
+        private volatile boolean cancelled;
+        private Future<?> encodeStage;
+
+        private Task(StrokeBuffer signature, SignatureExporter.Format format, Callback callback) {
+            this.signature = signature;
+            this.format = format;
+            this.callback = callback;
+        }
+
+        /**
+         * 提交两个阶段。队列是先进先出的，同一次保存的两个阶段总是相邻出队，不会出现所有线程都在等待尚未开始的另一阶段。
+         */
+        private synchronized void start() {
+            executor.execute(this::encryptAndWrite);
+            try {
+                encodeStage = executor.submit(this::encode);
+            } catch (RuntimeException e) {
+                callback = null;  // 调用者会收到异常，不再回调
+                pipe.abort(e);    // 已提交的加密阶段会自行清理
+                throw e;
+            }
+        }
+
+        /**
+         * 取消保存。已经写入的部分会被删除，之后会回调 onCancelled。
+         */
+        public synchronized void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            pipe.abort(new CancellationException("保存已取消"));
+            if (encodeStage != null) {
+                encodeStage.cancel(true);
+            }
+            // 加密阶段不中断，它会从管道收到异常并清理创建的文件
+        }
+
+        /**
+         * 替换回调，例如活动被销毁时传入 null，不再接收结果。
+         * @param callback 新的回调
+         */
+        public void setCallback(Callback callback) {
+            this.callback = callback;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * 编码阶段：绘制并编码签名，写入管道。
+         */
+        private void encode() {
+            try (OutputStream out = pipe.sink()) {
+                SignatureExporter.write(signature, format, out);
+            } catch (Throwable e) {
+                pipe.abort(e);  // 通知加密阶段失败
+            }
+        }
+
+        /**
+         * 加密阶段：生成密钥，从管道读取数据加密写入暂存文件，然后交给保存队列。
+         * 信封格式的文件自带包装后的密钥，只有退回到旧格式时才需要按文件名保存密钥。
+         * 文件和密钥由保存队列成批发布，这里只需要一次顺序写本地文件和一次日志落盘。
+         */
+        private void encryptAndWrite() {
+            File spool = null;
+            try {
+                SaveQueue queue = SaveQueue.get(context);
+                spool = queue.newSpoolFile();
+                String fileName = "加密签名_" + System.currentTimeMillis() + ".png";  // 生成文件名
+
+                byte[] buffer = new byte[PIPE_BLOCK_SIZE];
+                byte[] nameKey;
+                long start = PipelineMetrics.begin(PipelineMetrics.Stage.ENCRYPT);
+                long encrypted = PipelineMetrics.FAILED;
+                try (InputStream in = pipe.source();
+                     FileOutputStream outputStream = new FileOutputStream(spool)) {
+                    SignatureVault.Encryption encryption = SignatureVault.beginEncryption(outputStream, fileName, format.name());
+                    nameKey = encryption.nameKey;
+                    long plainBytes = 0;
+                    try (OutputStream encryptingStream = encryption.stream) {
+                        int n;
+                        while ((n = in.read(buffer)) != -1) {
+                            encryptingStream.write(buffer, 0, n);
+                            plainBytes += n;
+                        }
+                        if (cancelled) {
+                            throw new CancellationException("保存已取消");
+                        }
+                    }  // 关闭时写出最后一个分块
+                    outputStream.getFD().sync();  // 入队之前确保暂存文件已经落盘
+                    encrypted = plainBytes;
+                } finally {
+                    PipelineMetrics.end(PipelineMetrics.Stage.ENCRYPT, start, encrypted);
+                }
+
+                queue.enqueue(spool, fileName, nameKey);
+                deliver(Callback::onSaved);
+            } catch (Exception e) {
+                pipe.abort(e);  // 让编码阶段尽快停止
+                if (spool != null) {
+                    spool.delete();  // 还没有入队，删除暂存文件即可
+                }
+                if (cancelled) {
+                    deliver(Callback::onCancelled);
+                } else {
+                    deliver(target -> target.onFailed(e));
+                }
+            }
+        }
+
+        private void deliver(Delivery delivery) {
+            mainHandler.post(() -> {
+                Callback current = callback;
+                if (current != null) {
+                    delivery.deliver(current);
+                }
+            });
+        }
+    }
+
+    private interface Delivery {
+        void deliver(Callback callback);
+    }
+}
@@ -0,0 +1,372 @@
+package com.example.project;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * SaveQueue 类是持久化的签名保存队列，保证进程在保存过程中被杀死时不会留下没有文件的密钥或没有密钥的文件。
+ * 保存流水线先把加密后的签名写入应用私有目录中的暂存文件，再在日志中记录任务（此时签名已经安全落盘），
+ * 之后由后台线程把任务发布到 MediaStore。应用重启后未完成的任务会从日志中恢复并继续发布。
+ *
+ * 发布时把积压的任务作为一批处理：所有密钥一次写入密钥存储，
+ * 所有 MediaStore 条目通过一次 applyBatch 创建和发布，日志的状态变化也只落盘一次，
+ * 因此连续快速签名时每次保存的开销随批次摊薄。
+ * 发布遇到暂时性错误（例如存储未挂载）时按指数退避重试几次，仍然失败时等下次入队或重启再试。
+ */
+public final class SaveQueue {
+
+    private static final String TAG = "SaveQueue";
+
+    static final String RELATIVE_PATH = "Pictures/EncryptedSignatures";   // 保存目录
+
+    private static final String QUEUE_DIRECTORY = "save_queue";   // 应用私有目录下的队列目录
+    private static final String JOURNAL_FILE = "journal";         // 日志文件名
+    private static final String SPOOL_SUFFIX = ".enc";            // 暂存文件后缀
+
+    // 每批最多发布的任务数，避免单个 applyBatch 过大
+    private static final int MAX_BATCH = 32;
+
+    // 发布失败后第一次重试的延迟，之后每次加倍
+    private static final long RETRY_DELAY_MS = 2000;
+
+    // 连续失败时最多重试的次数
+    private static final int MAX_RETRIES = 5;
+
+    private static volatile SaveQueue instance;
+
+    // 打开队列和发布任务的后台线程，打开队列需要重放日志，不能在主线程进行
+    private static final ScheduledExecutorService WORKER = Executors.newSingleThreadScheduledExecutor(r -> new Thread(() -> {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        r.run();
+    }, "SaveQueue"));
+
+    /**
+     * 在后台打开保存队列的回调，在主线程调用。
+     */
+    public interface OpenCallback {
+        /**
+         * 无法打开保存队列。
+         * @param e 失败的原因
+         */
+        void onOpenFailed(IOException e);
+    }
+
+    private final Context context;
+    private final File directory;
+    private final SaveJournal journal;
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();  // 是否已经有一次发布在排队，用于合并请求
+    private int failedDrains;  // 连续失败的发布次数，只在后台线程访问
+
+    private SaveQueue(Context context) throws IOException {
+        this.context = context.getApplicationContext();
+        this.directory = new File(this.context.getFilesDir(), QUEUE_DIRECTORY);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建保存队列目录: " + directory);
+        }
+        this.journal = new SaveJournal(new File(directory, JOURNAL_FILE));
+        deleteOrphanedSpools();
+    }
+
+    /**
+     * 删除没有进入日志的暂存文件，它们来自入队之前就被杀死的进程。
+     */
+    private void deleteOrphanedSpools() {
+        Set<String> pendingIds = new HashSet<>();
+        for (SaveJournal.Entry entry : journal.getPending()) {
+            pendingIds.add(entry.id + SPOOL_SUFFIX);
+        }
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(SPOOL_SUFFIX));
+        if (files != null) {
+            for (File file : files) {
+                if (!pendingIds.contains(file.getName())) {
+                    file.delete();
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取全局唯一的保存队列。第一次获取时重放日志，并在后台继续发布上次未完成的任务。
+     * @param context 任意上下文
+     * @return 返回保存队列
+     * @throws IOException 无法打开日志时抛出
+     */
+    public static SaveQueue get(Context context) throws IOException {
+        if (instance == null) {
+            synchronized (SaveQueue.class) {
+                if (instance == null) {
+                    SaveQueue queue = new SaveQueue(context);
+                    instance = queue;
+                    if (queue.journal.getPendingCount() > 0) {
+                        queue.scheduleDrain();  // 恢复上次未完成的任务
+                    }
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 在后台线程打开保存队列，重放日志并继续发布上次未完成的任务。
+     * @param context 任意上下文
+     * @param callback 打开失败时在主线程调用
+     */
+    public static void open(Context context, OpenCallback callback) {
+        Context appContext = context.getApplicationContext();
+        WORKER.execute(() -> {
+            try {
+                get(appContext);
+            } catch (IOException e) {
+                Log.w(TAG, "无法打开保存队列", e);
+                new Handler(Looper.getMainLooper()).post(() -> callback.onOpenFailed(e));
+            }
+        });
+    }
+
+    /**
+     * @return 返回尚未发布到 MediaStore 的任务数
+     */
+    public int getPendingCount() {
+        return journal.getPendingCount();
+    }
+
+    /**
+     * @return 返回尚未发布到 MediaStore 的任务的文件名，它们的密钥可能已经写入密钥存储
+     */
+    public Set<String> getPendingFileNames() {
+        Set<String> names = new HashSet<>();
+        for (SaveJournal.Entry entry : journal.getPending()) {
+            names.add(entry.fileName);
+        }
+        return names;
+    }
+
+    /**
+     * 为一次新的保存分配暂存文件。调用者把加密后的数据写入其中，然后调用 enqueue。
+     * @return 返回暂存文件，尚未创建
+     */
+    public File newSpoolFile() {
+        return new File(directory, UUID.randomUUID().toString() + SPOOL_SUFFIX);
+    }
+
+    /**
+     * 把写好的暂存文件加入队列。返回时任务已经落盘，即使进程随后被杀死也会在重启后发布。
+     * @param spool newSpoolFile 分配的暂存文件，内容必须已经同步到磁盘
+     * @param fileName 发布到 MediaStore 的文件名，也是密钥的键
+     * @param key 需要按文件名保存的密钥，信封格式的文件传入空数组
+     * @throws IOException 写入日志失败时抛出
+     */
+    public void enqueue(File spool, String fileName, byte[] key) throws IOException {
+        String id = spool.getName().substring(0, spool.getName().length() - SPOOL_SUFFIX.length());
+        journal.enqueue(new SaveJournal.Entry(id, fileName, key, System.currentTimeMillis()));
+        scheduleDrain();
+    }
+
+    /**
+     * 安排一次发布。已经有一次在排队时直接返回，这一次的任务会被那一次一起处理。
+     */
+    private void scheduleDrain() {
+        if (drainScheduled.compareAndSet(false, true)) {
+            WORKER.execute(this::drain);
+        }
+    }
+
+    /**
+     * 分批发布所有积压的任务。遇到暂时性错误的任务留在队列中，按指数退避重试，
+     * 超过 MAX_RETRIES 次之后等下次入队或重启时再试。
+     */
+    private void drain() {
+        drainScheduled.set(false);  // 在读取积压任务之前清除，之后入队的任务会触发新的一次发布
+        List<SaveJournal.Entry> pending = journal.getPending();
+        for (int start = 0; start < pending.size(); start += MAX_BATCH) {
+            try {
+                publish(pending.subList(start, Math.min(pending.size(), start + MAX_BATCH)));
+            } catch (Exception e) {
+                scheduleRetry(e);
+                return;
+            }
+        }
+        failedDrains = 0;
+    }
+
+    /**
+     * 发布失败后安排一次延迟的重试，等待期间入队的任务由这次重试一起处理。
+     */
+    private void scheduleRetry(Exception e) {
+        failedDrains++;
+        if (failedDrains > MAX_RETRIES) {
+            Log.w(TAG, "发布签名失败，下次保存或重启时再试", e);
+            failedDrains = 0;
+            return;
+        }
+        long delay = RETRY_DELAY_MS << (failedDrains - 1);
+        Log.w(TAG, "发布签名失败，" + delay + " 毫秒后重试", e);
+        if (drainScheduled.compareAndSet(false, true)) {
+            WORKER.schedule(this::drain, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 发布一批任务。
+     */
+    private void publish(List<SaveJournal.Entry> batch) throws Exception {
+        ContentResolver resolver = context.getContentResolver();
+
+        // 1. 密钥一次性写入并落盘，在文件出现之前就已经持久化
+        KeyStoreEngine keyStore = KeyStores.get(context);
+        Map<String, byte[]> keys = new HashMap<>();
+        for (SaveJournal.Entry entry : batch) {
+            if (entry.key.length > 0) {  // 信封格式的文件自带密钥，不需要按文件名保存
+                keys.put(entry.fileName, entry.key);
+            }
+        }
+        keyStore.putAll(keys);
+
+        // 2. 为还没有条目的任务一次性创建 MediaStore 条目，并在日志中记录，重启后不会重复创建
+        // 3. 把暂存文件复制到各自的条目中。条目在重启之前被删除的任务重新创建条目后再写一次
+        List<String> done = new ArrayList<>();
+        List<Long> published = new ArrayList<>();
+        ArrayList<ContentProviderOperation> publishes = new ArrayList<>();
+        List<String> abandoned = new ArrayList<>();
+        byte[] buffer = new byte[AESUtil.DEFAULT_CHUNK_SIZE];
+        List<SaveJournal.Entry> toWrite = batch;
+        List<SaveJournal.Entry> lost = new ArrayList<>();
+        for (int pass = 0; pass < 2 && !toWrite.isEmpty(); pass++) {
+            insertRows(resolver, toWrite);
+            lost = new ArrayList<>();
+            for (SaveJournal.Entry entry : toWrite) {
+                File spool = new File(directory, entry.id + SPOOL_SUFFIX);
+                Uri uri = Uri.parse(entry.uri);
+                if (!spool.isFile()) {
+                    // 暂存文件丢失，任务无法完成，放弃并清理条目和密钥
+                    Log.w(TAG, "暂存文件丢失，放弃保存: " + entry.fileName);
+                    resolver.delete(uri, null, null);
+                    abandoned.add(entry.fileName);
+                    done.add(entry.id);
+                    continue;
+                }
+                long start = PipelineMetrics.begin(PipelineMetrics.Stage.WRITE);
+                long written = PipelineMetrics.FAILED;
+                try (InputStream in = new FileInputStream(spool);
+                     OutputStream out = resolver.openOutputStream(uri, "wt")) {
+                    if (out == null) {
+                        throw new FileNotFoundException(entry.uri);
+                    }
+                    long copied = 0;
+                    int n;
+                    while ((n = in.read(buffer)) != -1) {
+                        out.write(buffer, 0, n);
+                        copied += n;
+                    }
+                    written = copied;
+                } catch (FileNotFoundException e) {
+                    entry.uri = null;  // 条目已经被删除，重新创建
+                    lost.add(entry);
+                    continue;
+                } finally {
+                    PipelineMetrics.end(PipelineMetrics.Stage.WRITE, start, written);
+                }
+                done.add(entry.id);
+                published.add(ContentUris.parseId(uri));
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                    publishes.add(ContentProviderOperation.newUpdate(uri)
+                            .withValue(MediaStore.Images.Media.IS_PENDING, 0)
+                            .build());
+                }
+            }
+            toWrite = lost;
+        }
+
+        // 4. 一次性发布写完的文件，然后在日志中标记完成并删除暂存文件
+        if (!publishes.isEmpty()) {
+            resolver.applyBatch(MediaStore.AUTHORITY, publishes);
+        }
+        keyStore.removeAll(abandoned);
+        journal.markDone(done);
+        for (String id : done) {
+            new File(directory, id + SPOOL_SUFFIX).delete();
+        }
+
+        // 5. 把发布的文件写入签名索引，失败时由后台对账补上
+        try {
+            SignatureIndex.get(context).importById(published);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "无法更新签名索引", e);
+        }
+
+        if (!lost.isEmpty()) {
+            // 新建的条目又被删除了，留在队列中按退避重试
+            throw new FileNotFoundException("无法写入 " + lost.size() + " 个 MediaStore 条目");
+        }
+    }
+
+    /**
+     * 为还没有条目的任务一次性创建 MediaStore 条目，并在日志中记录，重启后不会重复创建。
+     */
+    private void insertRows(ContentResolver resolver, List<SaveJournal.Entry> entries) throws Exception {
+        List<SaveJournal.Entry> toInsert = new ArrayList<>();
+        ArrayList<ContentProviderOperation> inserts = new ArrayList<>();
+        for (SaveJournal.Entry entry : entries) {
+            if (entry.uri == null) {
+                toInsert.add(entry);
+                inserts.add(ContentProviderOperation.newInsert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI)
+                        .withValues(newRowValues(entry.fileName))
+                        .build());
+            }
+        }
+        if (inserts.isEmpty()) {
+            return;
+        }
+        long start = PipelineMetrics.begin(PipelineMetrics.Stage.PROVIDER_INSERT);
+        ContentProviderResult[] results = null;
+        try {
+            results = resolver.applyBatch(MediaStore.AUTHORITY, inserts);
+        } finally {
+            PipelineMetrics.end(PipelineMetrics.Stage.PROVIDER_INSERT, start, results != null ? 0 : PipelineMetrics.FAILED);
+        }
+        for (int i = 0; i < results.length; i++) {
+            toInsert.get(i).uri = results[i].uri.toString();
+        }
+        journal.markInserted(toInsert);
+    }
+
+    private static ContentValues newRowValues(String fileName) {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);  // 设置文件名
+        values.put(MediaStore.Images.Media.MIME_TYPE, "image/png");  // 设置MIME类型
+        values.put(MediaStore.Images.Media.RELATIVE_PATH, RELATIVE_PATH);  // 设置保存目录
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            values.put(MediaStore.Images.Media.IS_PENDING, 1);  // 写完之前对其他应用不可见
+        }
+        return values;
+    }
+}
@@ -1,26 +1,67 @@
 package com.example.project;
 
+import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
+import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
-import android.widget.ListView;
+import android.widget.EditText;
 import android.widget.Toast;
+import androidx.activity.result.ActivityResult;
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.IntentSenderRequest;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 // SignFragment类用于展示和管理签名文件，提供创建新签名、查看、删除签名等功能。
-public class SignFragment extends Fragment {
-    // 定义用于存储签名信息的ArrayList
-    private ArrayList<String> signatureInfo = new ArrayList<>();
-    // 定义ListView，用于在界面上显示签名列表
-    private ListView listView;
+public class SignFragment extends Fragment implements SignatureAdapter.Listener, SignaturePager.Listener {
+    // 距离列表末尾还剩这么多项时预取下一页
+    private static final int PREFETCH_DISTANCE = 20;
+    // 签名列表的适配器，在视图创建时创建一次，之后只提交新的列表
+    private SignatureAdapter adapter;
+    // 按页在后台查询签名文件
+    private SignaturePager pager;
+    // 删除文件的后台线程
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    // 把删除结果发送到主线程
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 等待用户在系统对话框中确认删除的签名
+    private List<SignatureRecord> pendingConsent;
+    // 启动系统的删除确认对话框
+    private final ActivityResultLauncher<IntentSenderRequest> consentLauncher =
+            registerForActivityResult(new ActivityResultContracts.StartIntentSenderForResult(), this::onDeleteConsentResult);
+    // 让用户选择导出的 ZIP 文件
+    private final ActivityResultLauncher<String> exportLauncher =
+            registerForActivityResult(new ActivityResultContracts.CreateDocument("application/zip"), this::exportTo);
+    // 等待用户选择导出位置的签名
+    private List<SignatureRecord> pendingExport;
+    // 正在进行的导出
+    private BulkExporter.Task exportTask;
+    // 显示导出进度的对话框
+    private AlertDialog exportDialog;
+    // 定义导出按钮
+    private Button exportButton;
     // 定义删除按钮
     private Button deleteButton;
     // 定义取消按钮
@@ -32,108 +73,276 @@ public class SignFragment extends Fragment {
                              Bundle savedInstanceState) {
         // 通过布局填充器加载fragment_sign布局
         View view = inflater.inflate(R.layout.fragment_sign, container, false);
-        // 从布局中找到ListView控件
-        listView = view.findViewById(R.id.signaturesListView);
+        // 从布局中找到RecyclerView控件，并设置布局管理器和适配器
+        RecyclerView recyclerView = view.findViewById(R.id.signaturesListView);
+        recyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
+        adapter = new SignatureAdapter(this);
+        recyclerView.setAdapter(adapter);
+        pager = new SignaturePager(requireContext(), this);
+        // 滚动到接近末尾时加载下一页
+        recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) view.getLayoutManager();
+                if (layoutManager != null && pager != null && adapter != null && pager.hasMore()
+                        && layoutManager.findLastVisibleItemPosition() >= adapter.getItemCount() - PREFETCH_DISTANCE) {
+                    pager.loadMore();
+                }
+            }
+        });
+        // 输入文件名前缀时按前缀查询索引
+        EditText searchEditText = view.findViewById(R.id.searchEditText);
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                if (pager != null) {
+                    pager.setQuery(pager.getQuery().withNamePrefix(s.toString().trim()));
+                }
+            }
+        });
         // 从布局中找到删除按钮
         deleteButton = view.findViewById(R.id.delete_button);
         // 从布局中找到取消按钮
         cancelButton = view.findViewById(R.id.cancel_button);
+        // 从布局中找到导出按钮
+        exportButton = view.findViewById(R.id.export_button);
         // 从布局中找到新建签名按钮，并设置其点击事件，点击时启动SignatureActivity
         Button newSignatureButton = view.findViewById(R.id.newSignatureButton);
         newSignatureButton.setOnClickListener(v -> startActivity(new Intent(getActivity(), SignatureActivity.class)));
 
         // 设置删除按钮的点击事件，用于确认删除操作
         deleteButton.setOnClickListener(v -> confirmDelete());
+        // 设置导出按钮的点击事件，先让用户选择ZIP文件的保存位置
+        exportButton.setOnClickListener(v -> chooseExportDestination());
         // 设置取消按钮的点击事件，用于取消当前选择的签名
         cancelButton.setOnClickListener(v -> clearSelections());
 
-        // 调用方法加载并显示签名信息
-        loadAndDisplaySignatures();
+        // 签名信息在第一次 onResume 时加载，第一页查到后立即显示
         return view;
     }
 
-    // 当Fragment恢复时调用，重新加载签名信息
+    // 当Fragment恢复时调用，只应用离开期间 MediaStore 的变化，没有变化时不查询
     @Override
     public void onResume() {
         super.onResume();
-        loadAndDisplaySignatures();
+        if (pager != null) {
+            pager.setActive(true);
+        }
+    }
+
+    // 离开界面时只记录变化，回来时一起同步
+    @Override
+    public void onPause() {
+        super.onPause();
+        if (pager != null) {
+            pager.setActive(false);
+        }
     }
 
     // 显示删除确认对话框
     private void confirmDelete() {
+        int count = adapter == null ? 0 : adapter.getSelectedRecords().size();
+        if (count == 0) return;
         new AlertDialog.Builder(getContext())
                 .setTitle("删除签名")
-                .setMessage("确定要删除选中的签名吗？")
+                .setMessage("确定要删除选中的 " + count + " 项签名吗？")
                 .setPositiveButton("是", (dialog, which) -> deleteSelectedSignatures()) // 用户确认后删除签名
                 .setNegativeButton("否", null) // 用户取消后不做任何操作
                 .show();
     }
 
-    // 执行删除选中的签名操作
+    // 执行删除选中的签名操作，所有选中的签名一次批量删除
     private void deleteSelectedSignatures() {
-        // TODO: 实现删除选中签名的具体逻辑
-        Toast.makeText(getContext(), "签名已删除", Toast.LENGTH_SHORT).show();
-        // 清除ListView的选择状态
+        if (adapter == null) return;
+        deleteSignatures(adapter.getSelectedRecords());
+        // 清除列表的选择状态
         clearSelections();
     }
 
-    // 加载并显示签名信息，从设备存储查询签名文件信息
-    private void loadAndDisplaySignatures() {
-        // 清空旧数据
-        signatureInfo.clear();
-        // 如果上下文为空，不进行操作
-        if (getContext() == null) return;
-
-        // 设置查询条件，查找特定路径下的图片
-        String[] projection = {
-                MediaStore.Images.Media._ID,
-                MediaStore.Images.Media.DISPLAY_NAME,
-                MediaStore.Images.Media.DATE_ADDED
-        };
-        String selection = MediaStore.Images.Media.RELATIVE_PATH + " LIKE ?";
-        String[] selectionArgs = new String[]{"%Encryptedsignatures%"};
-
-        // 执行查询操作
-        try (Cursor cursor = getContext().getContentResolver().query(
-                MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
-                projection,
-                selection,
-                selectionArgs,
-                null)) {
-            int idColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media._ID);
-            int displayNameColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DISPLAY_NAME);
-            int dateAddedColumn = cursor.getColumnIndexOrThrow(MediaStore.Images.Media.DATE_ADDED);
-            // 遍历查询结果
-            while (cursor.moveToNext()) {
-                long id = cursor.getLong(idColumn);
-                String displayName = cursor.getString(displayNameColumn);
-                long dateAdded = cursor.getLong(dateAddedColumn);
-                // 格式化显示信息并加入列表
-                String displayInfo = id + "\n" + displayName + "\nSaved on: " + convertTimestampToDate(dateAdded);
-                signatureInfo.add(displayInfo);
+    // 让用户通过系统文件选择器创建导出的ZIP文件
+    private void chooseExportDestination() {
+        if (adapter == null || exportTask != null) return;
+        List<SignatureRecord> selected = adapter.getSelectedRecords();
+        if (selected.isEmpty()) return;
+        pendingExport = selected;
+        String stamp = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.getDefault()).format(new Date());
+        exportLauncher.launch("signatures_" + stamp + ".zip");
+    }
+
+    // 在后台并行解密选中的签名并写入ZIP，显示可以取消的进度对话框
+    private void exportTo(Uri destination) {
+        List<SignatureRecord> records = pendingExport;
+        pendingExport = null;
+        if (destination == null || records == null || getContext() == null) return;
+        List<Uri> uris = new ArrayList<>(records.size());
+        for (SignatureRecord record : records) {
+            uris.add(record.uri);
+        }
+        Context context = getContext().getApplicationContext();
+        exportDialog = new AlertDialog.Builder(getContext())
+                .setTitle("导出签名")
+                .setMessage("已导出 0/" + uris.size())
+                .setCancelable(false)
+                .setNegativeButton("取消", (dialog, which) -> {
+                    if (exportTask != null) exportTask.cancel();
+                })
+                .show();
+        exportTask = BulkExporter.start(context, uris, destination, new BulkExporter.Listener() {
+            @Override
+            public void onProgress(int completed, int total) {
+                if (exportDialog != null) {
+                    exportDialog.setMessage("已导出 " + completed + "/" + total);
+                }
+            }
+
+            @Override
+            public void onFinished(int exported, int failed) {
+                finishExport();
+                String message = "已导出 " + exported + " 个签名" + (failed > 0 ? "，" + failed + " 个无法解密" : "");
+                Toast.makeText(context, message, Toast.LENGTH_LONG).show();
+                clearSelections();
+            }
+
+            @Override
+            public void onFailed(Exception error) {
+                finishExport();
+                Toast.makeText(context, error == null ? "导出已取消" : "导出失败: " + error.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+
+    // 导出结束后关闭进度对话框
+    private void finishExport() {
+        exportTask = null;
+        if (exportDialog != null) {
+            exportDialog.dismiss();
+            exportDialog = null;
+        }
+    }
+
+    // 分页器加载了新的签名，提交给适配器
+    @Override
+    public void onSignaturesLoaded(List<SignatureRecord> records) {
+        if (adapter != null) {
+            adapter.submitList(records);
+        }
+    }
+
+    // 用户点击某一行的删除按钮时显示确认对话框
+    @Override
+    public void onDeleteRequested(SignatureRecord record) {
+        new AlertDialog.Builder(getContext())
+                .setTitle("确认删除")
+                .setMessage("是否要删除这项签名？")
+                .setPositiveButton("删除", (dialog, which) -> deleteSignatures(Collections.singletonList(record)))
+                .setNegativeButton("取消", null)
+                .show();
+    }
+
+    // 在后台线程批量删除文件和它们的密钥，完成后提示用户并从列表中移除
+    private void deleteSignatures(List<SignatureRecord> records) {
+        if (getContext() == null || records.isEmpty()) return;
+        Context context = getContext().getApplicationContext();
+        ioExecutor.execute(() -> {
+            SignatureDeleter.Result result = null;
+            Exception failure = null;
+            try {
+                result = SignatureDeleter.delete(context, records);
+            } catch (Exception e) {
+                failure = e;
+            }
+            SignatureDeleter.Result deleted = result;
+            Exception error = failure;
+            mainHandler.post(() -> {
+                if (error != null) {
+                    Toast.makeText(context, "文件删除失败: " + error.getMessage(), Toast.LENGTH_LONG).show();  // 提示用户删除失败
+                    return;
+                }
+                onSignaturesDeleted(context, deleted.deleted);
+                if (deleted.consentRequest != null && isAdded()) {
+                    // 不是本应用创建的文件需要用户在系统对话框中确认，所有文件只确认一次
+                    pendingConsent = deleted.needsConsent;
+                    consentLauncher.launch(new IntentSenderRequest.Builder(deleted.consentRequest.getIntentSender()).build());
+                } else if (!deleted.needsConsent.isEmpty()) {
+                    Toast.makeText(context, deleted.needsConsent.size() + " 个文件无法删除", Toast.LENGTH_LONG).show();
+                }
+            });
+        });
+    }
+
+    // 用户在系统对话框中确认删除后，清理确实被删除的文件的密钥和索引
+    private void onDeleteConsentResult(ActivityResult result) {
+        List<SignatureRecord> records = pendingConsent;
+        pendingConsent = null;
+        if (records == null || result.getResultCode() != Activity.RESULT_OK || getContext() == null) return;
+        Context context = getContext().getApplicationContext();
+        ioExecutor.execute(() -> {
+            try {
+                List<SignatureRecord> deleted = SignatureDeleter.forgetDeleted(context, records);
+                mainHandler.post(() -> onSignaturesDeleted(context, deleted));
+            } catch (IOException e) {
+                mainHandler.post(() -> Toast.makeText(context, "无法确认删除结果: " + e.getMessage(), Toast.LENGTH_LONG).show());
             }
-        } catch (Exception e) {
-            // 查询过程出错，打印堆栈信息
-            e.printStackTrace();
+        });
+    }
+
+    // 提示用户并直接从列表中移除被删除的签名，不重新查询
+    private void onSignaturesDeleted(Context context, List<SignatureRecord> deleted) {
+        if (deleted.isEmpty()) return;
+        Toast.makeText(context, deleted.size() == 1 ? "文件已删除" : "已删除 " + deleted.size() + " 个文件", Toast.LENGTH_SHORT).show();
+        if (pager != null) {
+            pager.remove(SignatureDeleter.idsOf(deleted));
+        }
+    }
+
+    // 视图销毁时取消正在进行的查询并释放适配器
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        pager.close();
+        pager = null;
+        adapter = null;
+        exportButton = null;
+        deleteButton = null;
+        cancelButton = null;
+        if (exportDialog != null) {
+            exportDialog.dismiss();
+            exportDialog = null;
         }
+    }
 
-        // 创建SignatureAdapter适配器，并设置给ListView
-        SignatureAdapter adapter = new SignatureAdapter(getContext(), signatureInfo);
-        listView.setAdapter(adapter);
+    // 片段销毁时关闭后台线程
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        ioExecutor.shutdownNow();
+        if (exportTask != null) {
+            exportTask.cancel();  // 界面不在了，取消导出并删除不完整的文件
+        }
     }
 
-    // 将时间戳转换为日期字符串
-    private String convertTimestampToDate(long timestamp) {
-        java.text.SimpleDateFormat formatter = new java.text.SimpleDateFormat("dd/MM/yyyy HH:mm:ss");
-        // 格式化时间戳为日期字符串并返回
-        return formatter.format(new java.util.Date(timestamp * 1000L));
+    // 选中数量变化时显示或隐藏导出、删除和取消按钮
+    @Override
+    public void onSelectionChanged(int count) {
+        if (deleteButton == null) return;
+        int visibility = count > 0 ? View.VISIBLE : View.GONE;
+        exportButton.setVisibility(visibility);
+        deleteButton.setVisibility(visibility);
+        cancelButton.setVisibility(visibility);
     }
 
-    // 清除ListView的选择状态
+    // 清除列表的选择状态
     private void clearSelections() {
-        // 隐藏删除按钮和取消按钮
-        deleteButton.setVisibility(View.GONE);
-        cancelButton.setVisibility(View.GONE);
-        // 如果使用适配器管理签名列表项的选择状态，则需要在适配器中清除选择标记
+        if (adapter != null) {
+            adapter.clearSelection();
+        }
     }
 }
@@ -1,22 +1,14 @@
 package com.example.project;
 
-import android.content.ContentValues;
-import android.content.SharedPreferences;
-import android.graphics.Bitmap;
-import android.net.Uri;
 import android.os.Bundle;
-import android.provider.MediaStore;
-import android.util.Base64;
+import android.util.Log;
 import android.widget.Button;
 import android.widget.Toast;
 
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
 
-import java.io.ByteArrayOutputStream;
-import java.io.OutputStream;
-
-import javax.crypto.SecretKey;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * SignatureActivity 类是用于处理签名的活动，包括签名的创建、加密和保存。
@@ -24,10 +16,16 @@ import javax.crypto.SecretKey;
  */
 public class SignatureActivity extends AppCompatActivity {
 
+    private static final String TAG = "SignatureActivity";
+
+    // 保存签名使用的格式，矢量格式最小且可以按任意分辨率重新绘制
+    private static final SignatureExporter.Format SAVE_FORMAT = SignatureExporter.Format.VECTOR;
+
     private SignatureView signatureView;  // 签名视图组件，用于用户签名
+    private Button clearButton;           // 清除按钮
+    private Button saveButton;            // 保存按钮
     private Button cancelButton;          // 取消按钮
-    private AESUtil aesUtil;             // 加密工具类，虽然在代码中未直接使用
-    private SecretKey secretKey;         // 用于加密的密钥
+    private SavePipeline.Task saveTask;   // 正在进行的保存任务
 
     /**
      * 在活动创建时调用，设置界面并初始化相关组件和事件。
@@ -39,75 +37,97 @@ public class SignatureActivity extends AppCompatActivity {
         setContentView(R.layout.activity_signature);  // 设置使用的布局文件
 
         signatureView = findViewById(R.id.signature_view);  // 获取签名视图
-        Button clearButton = findViewById(R.id.clear_button);  // 获取清除按钮
-        Button saveButton = findViewById(R.id.save_button);  // 获取保存按钮
+        clearButton = findViewById(R.id.clear_button);  // 获取清除按钮
+        saveButton = findViewById(R.id.save_button);  // 获取保存按钮
         cancelButton = findViewById(R.id.cancel_button);  // 获取取消按钮
 
-        try {
-            aesUtil = new AESUtil();  // 实例化AES工具类
-            secretKey = AESUtil.generateKey();  // 生成加密用的密钥
-        } catch (Exception e) {
-            Toast.makeText(this, "密钥生成错误: " + e.getMessage(), Toast.LENGTH_LONG).show();  // 显示密钥生成错误信息
-            finish();  // 密钥生成失败时结束活动
-        }
-
         clearButton.setOnClickListener(v -> signatureView.clear());  // 设置清除按钮的点击事件，清除签名视图中的签名
 
         saveButton.setOnClickListener(v -> {
             if (signatureView.isEmpty()) {  // 检查签名视图是否为空
                 Toast.makeText(SignatureActivity.this, "您尚未签名", Toast.LENGTH_SHORT).show();  // 提示用户尚未签名
             } else {
-                Bitmap signatureBitmap = signatureView.getSignatureBitmap();  // 获取签名的位图
-                saveSignature(signatureBitmap);  // 保存签名
-                finish();  // 完成签名后结束活动
+                saveSignature(signatureView.getStrokes());  // 在后台保存签名的矢量数据，完成后结束活动
             }
         });
 
-        cancelButton.setOnClickListener(v -> finish());  // 设置取消按钮的点击事件，点击后结束活动
+        cancelButton.setOnClickListener(v -> {
+            if (saveTask != null) {
+                saveTask.cancel();  // 取消正在进行的保存，清理完成后结束活动
+            } else {
+                finish();  // 设置取消按钮的点击事件，点击后结束活动
+            }
+        });
     }
 
     /**
-     * 保存密钥到SharedPreferences。
-     * @param fileName 文件名，作为键使用
-     * @param secretKey 密钥，将被保存
+     * 在活动销毁时调用。保存在后台继续进行，只是不再回调这个活动。
      */
-    private void saveKey(String fileName, SecretKey secretKey) {
-        SharedPreferences preferences = getSharedPreferences("加密签名", MODE_PRIVATE);  // 获取SharedPreferences实例
-        SharedPreferences.Editor editor = preferences.edit();  // 获取编辑器
-        editor.putString(fileName, Base64.encodeToString(secretKey.getEncoded(), Base64.DEFAULT));  // 将密钥编码后保存
-        editor.apply();  // 提交修改
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (saveTask != null) {
+            saveTask.setCallback(null);
+        }
     }
 
     /**
-     * 将签名保存到设备存储。
-     * @param signature 签名的位图
+     * 在后台把签名按 SAVE_FORMAT 编码并加密后保存到设备存储，完成后结束活动。
+     * 文件名和MIME类型保持不变，以便文件选择器和解密中心照常使用。
+     * @param signature 签名的矢量数据
      */
-    private void saveSignature(Bitmap signature) {
+    private void saveSignature(StrokeBuffer signature) {
+        setSaving(true);
         try {
-            SecretKey secretKey = AESUtil.generateKey();  // 再次生成一个新的密钥
-            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();  // 创建字节输出流
-            signature.compress(Bitmap.CompressFormat.PNG, 100, byteArrayOutputStream);  // 将签名位图压缩为PNG格式
-            byte[] signatureBytes = byteArrayOutputStream.toByteArray();  // 将压缩后的数据转换为字节数组
-            byte[] encryptedBytes = AESUtil.encrypt(signatureBytes, secretKey);  // 使用密钥对签名数据进行加密
-
-            String fileName = "加密签名_" + System.currentTimeMillis() + ".png";  // 生成文件名
-            saveKey(fileName, secretKey);  // 保存密钥
-
-            ContentValues values = new ContentValues();
-            values.put(MediaStore.Images.Media.DISPLAY_NAME, fileName);  // 设置文件名
-            values.put(MediaStore.Images.Media.MIME_TYPE, "image/png");  // 设置MIME类型
-            values.put(MediaStore.Images.Media.RELATIVE_PATH, "Pictures/EncryptedSignatures");  // 设置保存目录
-            Uri uri = getContentResolver().insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);  // 插入内容提供者，创建文件
-
-            try (OutputStream outputStream = getContentResolver().openOutputStream(uri)) {
-                outputStream.write(encryptedBytes);  // 写入加密数据到文件
-                Toast.makeText(this, "加密签名已保存", Toast.LENGTH_LONG).show();  // 提示用户加密签名已保存
+            saveTask = SavePipeline.get(this).save(signature, SAVE_FORMAT, new SavePipeline.Callback() {
+                @Override
+                public void onSaved() {
+                    saveTask = null;
+                    Toast.makeText(SignatureActivity.this, "加密签名已保存", Toast.LENGTH_LONG).show();  // 提示用户加密签名已保存
+                    logFormatReport(signature);
+                    finish();  // 完成签名后结束活动
+                }
+
+                @Override
+                public void onFailed(Exception error) {
+                    saveTask = null;
+                    setSaving(false);  // 允许用户重试
+                    Toast.makeText(SignatureActivity.this, "保存加密签名失败: " + error.getMessage(), Toast.LENGTH_LONG).show();  // 保存失败时提示用户
+                }
+
+                @Override
+                public void onCancelled() {
+                    saveTask = null;
+                    finish();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            setSaving(false);
+            Toast.makeText(this, "正在保存的签名过多，请稍后再试", Toast.LENGTH_LONG).show();
+        }
+    }
+
+    /**
+     * 保存期间禁用清除和保存按钮，防止重复保存。
+     */
+    private void setSaving(boolean saving) {
+        clearButton.setEnabled(!saving);
+        saveButton.setEnabled(!saving);
+    }
+
+    /**
+     * 调试时在后台统计各导出格式的大小和耗时。
+     */
+    private static void logFormatReport(StrokeBuffer signature) {
+        if (!Log.isLoggable(TAG, Log.DEBUG)) {
+            return;
+        }
+        new Thread(() -> {
+            try {
+                Log.d(TAG, "各导出格式与整视图PNG的对比:\n" + SignatureExporter.compareFormats(signature));
             } catch (Exception e) {
-                Toast.makeText(this, "保存加密签名失败: " + e.getMessage(), Toast.LENGTH_LONG).show();  // 保存失败时提示用户
-                getContentResolver().delete(uri, null, null);  // 删除创建的文件
+                Log.d(TAG, "统计导出格式失败", e);
             }
-        } catch (Exception e) {
-            Toast.makeText(this, "加密失败: " + e.getMessage(), Toast.LENGTH_LONG).show();  // 加密失败时提示用户
-        }
+        }, "SignatureFormatReport").start();
     }
-}
\ No newline at end of file
+}
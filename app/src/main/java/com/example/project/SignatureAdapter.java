@@ -1,118 +1,228 @@
 package com.example.project;
 
-import android.content.ContentUris;
-import android.content.Context;
-import android.content.DialogInterface;
-import android.net.Uri;
-import android.provider.MediaStore;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
 import android.widget.Button;
+import android.widget.ImageView;
 import android.widget.TextView;
-import android.widget.Toast;
 
 import androidx.annotation.NonNull;
-import androidx.annotation.Nullable;
-import androidx.appcompat.app.AlertDialog;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
- * SignatureAdapter 类是一个适配器，用于在列表中显示签名文件的文件名和日期，并提供删除文件的功能。
- * 这个适配器可以将签名文件的信息显示在列表中，用户可以通过点击按钮来删除特定的签名文件。
+ * SignatureAdapter 类是签名列表的 RecyclerView 适配器，显示签名文件的缩略图、文件名和日期，并提供删除按钮。
+ * 列表更新由 DiffUtil 在后台线程计算差异后增量应用，重新加载时只刷新变化的行。
+ * 每一行的视图和点击事件在创建 ViewHolder 时查找和设置一次，绑定时不再分配对象；
+ * 缩略图由 ThumbnailLoader 在后台加载，行被回收时取消旧的请求。
+ * 长按一行进入多选模式，之后点击切换选中状态；选中状态按文件ID保存，只局部刷新行的高亮。
  */
-public class SignatureAdapter extends ArrayAdapter<String> {
+public class SignatureAdapter extends ListAdapter<SignatureRecord, SignatureAdapter.ViewHolder> {
 
     /**
-     * 构造函数，创建一个新的 SignatureAdapter 实例。
-     * @param context 上下文对象
-     * @param objects 数据列表
+     * 列表项事件的回调。
      */
-    public SignatureAdapter(@NonNull Context context, @NonNull List<String> objects) {
-        super(context, 0, objects);
+    public interface Listener {
+        /**
+         * 用户点击了某一行的删除按钮。
+         * @param record 要删除的签名
+         */
+        void onDeleteRequested(SignatureRecord record);
+
+        /**
+         * 选中的签名数量变化了。
+         * @param count 当前选中的数量
+         */
+        void onSelectionChanged(int count);
     }
 
+    // 只刷新选中状态的局部绑定标记
+    private static final Object PAYLOAD_SELECTION = new Object();
+
+    // 按文件ID判断是否同一项，按内容判断是否需要重新绑定
+    private static final DiffUtil.ItemCallback<SignatureRecord> DIFF_CALLBACK = new DiffUtil.ItemCallback<SignatureRecord>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull SignatureRecord oldItem, @NonNull SignatureRecord newItem) {
+            return oldItem.isSameFile(newItem);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull SignatureRecord oldItem, @NonNull SignatureRecord newItem) {
+            return oldItem.equals(newItem);
+        }
+    };
+
+    private final Listener listener;
+    private final Set<Long> selectedIds = new HashSet<>();  // 选中的签名的ID
+
     /**
-     * 获取列表项的视图，并设置相应的数据和事件。
-     * @param position 列表项的位置
-     * @param convertView 可重用的视图
-     * @param parent 父视图
-     * @return 设置好数据和事件的视图
+     * 构造函数，创建一个新的 SignatureAdapter 实例。
+     * @param listener 列表项事件的回调
      */
+    public SignatureAdapter(@NonNull Listener listener) {
+        super(DIFF_CALLBACK);
+        this.listener = listener;
+        setHasStableIds(true);
+    }
+
     @Override
-    public View getView(int position, @Nullable View convertView, @NonNull ViewGroup parent) {
-        // 检查现有视图是否被重用，否则为这个视图填充新的布局
-        if (convertView == null) {
-            convertView = LayoutInflater.from(getContext()).inflate(R.layout.signature_list_item, parent, false);
-        }
+    public long getItemId(int position) {
+        return getItem(position).id;
+    }
 
-        // 查找布局中的TextView和Button
-        TextView textViewFileName = convertView.findViewById(R.id.textViewFileName);
-        TextView textViewFileDate = convertView.findViewById(R.id.textViewFileDate);
-        Button buttonDelete = convertView.findViewById(R.id.buttonDelete);
-
-        // 获取当前项的签名信息（文件ID、文件名和时间）
-        String item = getItem(position);
-        if (item != null) {
-            String[] parts = item.split("\n");
-            if (parts.length >= 3) {
-                // 文件名和日期信息在第二和第三行
-                textViewFileName.setText(parts[1]);  // 设置文件名
-                textViewFileDate.setText(parts[2]);  // 设置文件日期
+    /**
+     * @return 返回选中的签名，按列表中的顺序
+     */
+    public List<SignatureRecord> getSelectedRecords() {
+        List<SignatureRecord> selected = new ArrayList<>(selectedIds.size());
+        for (SignatureRecord record : getCurrentList()) {
+            if (selectedIds.contains(record.id)) {
+                selected.add(record);
             }
         }
+        return selected;
+    }
 
-        // 设置删除按钮的点击事件
-        buttonDelete.setOnClickListener(new View.OnClickListener() {
-            @Override
-            public void onClick(View v) {
-                showDeleteConfirmationDialog(position);  // 显示删除确认对话框
+    /**
+     * 清除所有选中状态，退出多选模式。
+     */
+    public void clearSelection() {
+        if (selectedIds.isEmpty()) {
+            return;
+        }
+        List<SignatureRecord> records = getCurrentList();
+        for (int i = 0; i < records.size(); i++) {
+            if (selectedIds.contains(records.get(i).id)) {
+                notifyItemChanged(i, PAYLOAD_SELECTION);
             }
-        });
+        }
+        selectedIds.clear();
+        listener.onSelectionChanged(0);
+    }
+
+    /**
+     * 切换一行的选中状态。
+     */
+    private void toggleSelection(int position) {
+        long id = getItem(position).id;
+        if (!selectedIds.remove(id)) {
+            selectedIds.add(id);
+        }
+        notifyItemChanged(position, PAYLOAD_SELECTION);
+        listener.onSelectionChanged(selectedIds.size());
+    }
+
+    /**
+     * 列表更新后丢弃已经不在列表中的签名的选中状态，例如被删除或不再满足搜索条件的签名。
+     */
+    @Override
+    public void onCurrentListChanged(@NonNull List<SignatureRecord> previousList, @NonNull List<SignatureRecord> currentList) {
+        if (selectedIds.isEmpty()) {
+            return;
+        }
+        Set<Long> present = new HashSet<>(currentList.size());
+        for (SignatureRecord record : currentList) {
+            present.add(record.id);
+        }
+        if (selectedIds.retainAll(present)) {
+            listener.onSelectionChanged(selectedIds.size());
+        }
+    }
 
-        return convertView;  // 返回设置好数据和事件的视图
+    /**
+     * 创建列表项的视图和 ViewHolder。
+     * @param parent 父视图
+     * @param viewType 视图类型
+     * @return 返回新的 ViewHolder
+     */
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.signature_list_item, parent, false);
+        return new ViewHolder(view);
     }
 
     /**
-     * 显示删除确认对话框。
-     * @param position 要删除的文件在列表中的位置
+     * 把签名记录绑定到列表项。
+     * @param holder 列表项的 ViewHolder
+     * @param position 列表项的位置
      */
-    private void showDeleteConfirmationDialog(int position) {
-        new AlertDialog.Builder(getContext())
-                .setTitle("确认删除")
-                .setMessage("是否要删除这项签名？")
-                .setPositiveButton("删除", new DialogInterface.OnClickListener() {
-                    @Override
-                    public void onClick(DialogInterface dialog, int which) {
-                        deleteFile(position);  // 删除文件
-                    }
-                })
-                .setNegativeButton("取消", null)
-                .show();  // 显示对话框
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        SignatureRecord record = getItem(position);
+        holder.textViewFileName.setText(record.name);  // 设置文件名
+        holder.textViewFileDate.setText(record.dateText);  // 设置文件日期
+        ThumbnailLoader.get(holder.itemView.getContext()).bind(holder.imageViewThumbnail, record.uri, record.thumbnailKey);  // 在后台加载缩略图
+        holder.itemView.setActivated(selectedIds.contains(record.id));  // 显示选中状态
     }
 
     /**
-     * 删除文件。
-     * @param position 要删除的文件在列表中的位置
+     * 只有选中状态变化时只更新高亮，不重新绑定文本和缩略图。
+     * @param holder 列表项的 ViewHolder
+     * @param position 列表项的位置
+     * @param payloads 局部绑定标记
      */
-    private void deleteFile(int position) {
-        String item = getItem(position);
-        if (item != null) {
-            String[] parts = item.split("\n");
-            if (parts.length > 1) {
-                long id = Long.parseLong(parts[0]);  // 获取文件ID
-                Uri fileUri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);  // 根据文件ID创建URI
-                try {
-                    getContext().getContentResolver().delete(fileUri, null, null);  // 删除文件
-                    remove(getItem(position));  // 从列表中移除文件名
-                    notifyDataSetChanged();  // 通知适配器数据已更改
-                    Toast.makeText(getContext(), "文件已删除", Toast.LENGTH_SHORT).show();  // 提示用户文件已删除
-                } catch (Exception e) {
-                    Toast.makeText(getContext(), "文件删除失败: " + e.getMessage(), Toast.LENGTH_LONG).show();  // 提示用户删除失败
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        holder.itemView.setActivated(selectedIds.contains(getItem(position).id));
+    }
+
+    /**
+     * 列表项被回收时取消还没有完成的缩略图请求，快速滚动时不会为已经移出屏幕的行解密文件。
+     * @param holder 被回收的 ViewHolder
+     */
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        ThumbnailLoader.get(holder.itemView.getContext()).cancel(holder.imageViewThumbnail);
+    }
+
+    /**
+     * 列表项的 ViewHolder，保存布局中的视图引用。
+     */
+    public final class ViewHolder extends RecyclerView.ViewHolder {
+        final ImageView imageViewThumbnail;
+        final TextView textViewFileName;
+        final TextView textViewFileDate;
+
+        ViewHolder(@NonNull View itemView) {
+            super(itemView);
+            imageViewThumbnail = itemView.findViewById(R.id.imageViewThumbnail);
+            textViewFileName = itemView.findViewById(R.id.textViewFileName);
+            textViewFileDate = itemView.findViewById(R.id.textViewFileDate);
+            Button buttonDelete = itemView.findViewById(R.id.buttonDelete);
+            // 点击事件只设置一次，按当前位置取记录
+            buttonDelete.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION) {
+                    listener.onDeleteRequested(getItem(position));
                 }
-            }
+            });
+            // 长按切换选中状态；已经有选中项时点击也切换
+            itemView.setOnLongClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position == RecyclerView.NO_POSITION) {
+                    return false;
+                }
+                toggleSelection(position);
+                return true;
+            });
+            itemView.setOnClickListener(v -> {
+                int position = getBindingAdapterPosition();
+                if (position != RecyclerView.NO_POSITION && !selectedIds.isEmpty()) {
+                    toggleSelection(position);
+                }
+            });
         }
     }
 }
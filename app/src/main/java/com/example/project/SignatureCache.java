@@ -0,0 +1,250 @@
+package com.example.project;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.provider.MediaStore;
+import android.provider.OpenableColumns;
+import android.util.LruCache;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * SignatureCache 类是解密后签名位图的内存LRU缓存，按位图占用的字节数限制大小。
+ * 键由URI、最后修改时间、文件大小和解码尺寸组成，文件被替换后旧的缓存自然失效。
+ * 应用进入后台或系统内存紧张时清空缓存；被淘汰的位图会被擦除，明文像素不会在内存中残留，
+ * 正在显示的位图被“钉住”，等不再显示时再擦除。同一个位图可以被多次钉住（例如同时显示在两处），
+ * 每次钉住都需要一次对应的取消钉住。
+ */
+public final class SignatureCache implements ComponentCallbacks2 {
+
+    // 缓存上限：可用堆的1/8，最多32MB
+    private static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+
+    private static volatile SignatureCache instance;
+
+    private final LruCache<String, Bitmap> cache;
+    private final Map<Bitmap, Integer> pinned = new IdentityHashMap<>();  // 正在显示的位图和它被钉住的次数
+    private final Set<Bitmap> evictedWhilePinned = Collections.newSetFromMap(new IdentityHashMap<>());  // 已淘汰但仍在显示的位图
+
+    private SignatureCache(int maxBytes) {
+        cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                if (oldValue != newValue) {
+                    wipe(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * 获取全局唯一的缓存，第一次获取时注册内存回调。
+     * @param context 任意上下文
+     * @return 返回签名缓存
+     */
+    public static SignatureCache get(Context context) {
+        if (instance == null) {
+            synchronized (SignatureCache.class) {
+                if (instance == null) {
+                    int maxBytes = (int) Math.min(MAX_CACHE_BYTES, Runtime.getRuntime().maxMemory() / 8);
+                    SignatureCache cache = new SignatureCache(maxBytes);
+                    context.getApplicationContext().registerComponentCallbacks(cache);
+                    instance = cache;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 生成缓存键。查询文件的最后修改时间和大小只需要一次很小的查询，远比解密和解码便宜。
+     * @param context 任意上下文
+     * @param uri 签名文件
+     * @param targetSize 解码尺寸
+     * @return 返回缓存键
+     */
+    public static String keyFor(Context context, Uri uri, int targetSize) {
+        long modified = -1;
+        long size = -1;
+        try (Cursor cursor = context.getContentResolver().query(uri, null, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                modified = getLong(cursor, DocumentsContract.Document.COLUMN_LAST_MODIFIED);
+                if (modified < 0) {
+                    modified = getLong(cursor, MediaStore.MediaColumns.DATE_MODIFIED);
+                }
+                size = getLong(cursor, OpenableColumns.SIZE);
+            }
+        } catch (RuntimeException ignored) {
+            // 无法查询时只按URI区分
+        }
+        return keyFor(uri, modified, size, targetSize);
+    }
+
+    /**
+     * 用已知的最后修改时间和大小生成缓存键，不需要查询。
+     * @param uri 签名文件
+     * @param modified 最后修改时间，未知时为 -1
+     * @param size 文件大小，未知时为 -1
+     * @param targetSize 解码尺寸
+     * @return 返回与 keyFor(Context, Uri, int) 相同格式的缓存键
+     */
+    public static String keyFor(Uri uri, long modified, long size, int targetSize) {
+        return String.format(Locale.US, "%s|%d|%d|%d", uri, modified, size, targetSize);
+    }
+
+    private static long getLong(Cursor cursor, String column) {
+        int index = cursor.getColumnIndex(column);
+        return index >= 0 && !cursor.isNull(index) ? cursor.getLong(index) : -1;
+    }
+
+    /**
+     * 查找缓存的位图。
+     * @param key keyFor 生成的键
+     * @return 返回缓存的位图，不存在时返回 null
+     */
+    public Bitmap get(String key) {
+        return cache.get(key);
+    }
+
+    /**
+     * 加入缓存。
+     * @param key keyFor 生成的键
+     * @param bitmap 解码得到的位图
+     */
+    public void put(String key, Bitmap bitmap) {
+        if (bitmap.getAllocationByteCount() <= cache.maxSize()) {
+            cache.put(key, bitmap);
+        }
+    }
+
+    /**
+     * 查找缓存的位图并钉住它。查找和钉住与擦除使用同一个锁，找到的位图不会在钉住之前被淘汰擦除。
+     * @param key keyFor 生成的键
+     * @return 返回已钉住的位图，调用者负责取消钉住；不存在时返回 null
+     */
+    public synchronized Bitmap acquire(String key) {
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null) {
+            pin(bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 钉住位图后加入缓存，加入之后立即被淘汰也不会擦除。
+     * @param key keyFor 生成的键
+     * @param bitmap 解码得到的位图，调用者负责取消钉住
+     */
+    public synchronized void putAndPin(String key, Bitmap bitmap) {
+        pin(bitmap);
+        put(key, bitmap);
+    }
+
+    /**
+     * 钉住正在显示的位图，它被淘汰时暂不擦除。
+     * @param bitmap 正在显示的位图
+     */
+    public synchronized void pin(Bitmap bitmap) {
+        Integer count = pinned.get(bitmap);
+        pinned.put(bitmap, count == null ? 1 : count + 1);
+    }
+
+    /**
+     * 取消一次钉住。所有钉住都取消之后，如果位图已经被淘汰，现在擦除它。
+     * @param bitmap 不再显示的位图
+     */
+    public synchronized void unpin(Bitmap bitmap) {
+        Integer count = pinned.get(bitmap);
+        if (count == null) {
+            return;
+        }
+        if (count > 1) {
+            pinned.put(bitmap, count - 1);
+            return;
+        }
+        pinned.remove(bitmap);
+        if (evictedWhilePinned.remove(bitmap)) {
+            wipe(bitmap);
+        }
+    }
+
+    /**
+     * 清空缓存并擦除所有被淘汰的位图。
+     */
+    public void clear() {
+        cache.evictAll();
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return 返回缓存当前占用的字节数
+     */
+    public int sizeBytes() {
+        return cache.size();
+    }
+
+    public int maxBytes() {
+        return cache.maxSize();
+    }
+
+    /**
+     * 擦除被移出缓存的位图，正在显示的位图等取消钉住时再擦除。
+     */
+    private synchronized void wipe(Bitmap bitmap) {
+        if (pinned.containsKey(bitmap)) {
+            evictedWhilePinned.add(bitmap);
+        } else if (bitmap.isMutable() && !bitmap.isRecycled()) {
+            bitmap.eraseColor(Color.TRANSPARENT);
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_UI_HIDDEN || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();  // 应用进入后台或内存严重不足，清空缓存
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            cache.trimToSize(cache.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onLowMemory() {
+        clear();
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig) {
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "SignatureCache{hits=%d, misses=%d, evictions=%d, size=%d/%d bytes}",
+                hitCount(), missCount(), evictionCount(), sizeBytes(), maxBytes());
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.project;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+
+/**
+ * SignatureDecoder 类把解密后的签名数据解码为位图。
+ * 它根据数据开头的魔数区分矢量签名、单色签名和普通图片（PNG、WebP等），矢量签名按目标尺寸直接绘制。
+ * 普通图片先只解码尺寸，再按目标尺寸计算 inSampleSize 边读边解码，不会先解码出全分辨率的位图。
+ */
+public final class SignatureDecoder {
+
+    /**
+     * 解密后数据的来源，每次调用返回一个新的、位于数据开头的输入流。
+     */
+    public interface Source {
+        InputStream open() throws Exception;
+    }
+
+    private SignatureDecoder() {
+    }
+
+    /**
+     * 解码签名。普通图片需要读两遍：第一遍只读到图片头取得尺寸（加密分块流只需要解密第一个分块），
+     * 第二遍按采样率解码，因此峰值内存与目标尺寸而不是原图尺寸成正比。
+     * @param source 解密后数据的来源
+     * @param targetWidth 目标宽度
+     * @param targetHeight 目标高度
+     * @return 返回解码得到的位图，无法解码时返回 null
+     * @throws Exception 读取、解密失败或数据无效时抛出
+     */
+    public static Bitmap decode(Source source, int targetWidth, int targetHeight) throws Exception {
+        long start = PipelineMetrics.begin(PipelineMetrics.Stage.DECODE);
+        Bitmap bitmap = null;
+        try {
+            bitmap = decodeBitmap(source, targetWidth, targetHeight);
+            return bitmap;
+        } finally {
+            PipelineMetrics.end(PipelineMetrics.Stage.DECODE, start,
+                    bitmap != null ? bitmap.getByteCount() : PipelineMetrics.FAILED);
+        }
+    }
+
+    private static Bitmap decodeBitmap(Source source, int targetWidth, int targetHeight) throws Exception {
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream decrypted = source.open()) {
+            PushbackInputStream in = new PushbackInputStream(decrypted, VectorSignatureCodec.MAGIC.length);
+            byte[] header = new byte[VectorSignatureCodec.MAGIC.length];
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            in.unread(header, 0, read);
+            if (VectorSignatureCodec.isVectorSignature(header, read)) {
+                StrokeBuffer strokes = VectorSignatureCodec.decode(in);
+                return SignatureRenderer.render(strokes, targetWidth, targetHeight);
+            }
+            if (MonochromeCodec.isMonochromeSignature(header, read)) {
+                return toBitmap(MonochromeCodec.decode(in));
+            }
+            BitmapFactory.decodeStream(in, null, bounds);  // 只读取图片头
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, targetWidth, targetHeight);
+        options.inMutable = true;  // 可变位图才能在不再需要时擦除像素
+        try (InputStream decrypted = source.open()) {
+            return BitmapFactory.decodeStream(decrypted, null, options);
+        }
+    }
+
+    /**
+     * 计算不小于目标尺寸的最大2的幂采样率。
+     * @param width 原图宽度
+     * @param height 原图高度
+     * @param targetWidth 目标宽度，不大于0时不限制
+     * @param targetHeight 目标高度，不大于0时不限制
+     * @return 返回采样率
+     */
+    static int calculateInSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        int sampleSize = 1;
+        if (targetWidth <= 0 || targetHeight <= 0) {
+            return sampleSize;
+        }
+        while (width / (sampleSize * 2) >= targetWidth && height / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * 把单色图像转换为黑色墨迹、透明背景的位图。
+     */
+    private static Bitmap toBitmap(MonochromeCodec.Image image) {
+        int[] pixels = new int[image.width * image.height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (image.alpha[i] & 0xFF) << 24;  // alpha 通道即墨迹，颜色为黑色
+        }
+        Bitmap bitmap = Bitmap.createBitmap(image.width, image.height, Bitmap.Config.ARGB_8888);  // 可变位图
+        bitmap.setPixels(pixels, 0, image.width, 0, 0, image.width, image.height);
+        return bitmap;
+    }
+}
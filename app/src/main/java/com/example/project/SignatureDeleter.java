@@ -0,0 +1,181 @@
+package com.example.project;
+
+import android.app.PendingIntent;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Build;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * SignatureDeleter 类批量删除签名文件，并清理它们留下的密钥、索引和缩略图。
+ * 每 500 个文件只向 MediaStore 发一次按ID列表的删除请求，而不是逐个删除；
+ * 删除成功的文件的按文件名保存的密钥在密钥存储中一次删除（只落盘一次），索引也在一个事务中删除。
+ * 所有方法都会访问 MediaStore 或磁盘，必须在后台线程调用。
+ */
+public final class SignatureDeleter {
+
+    private static final String TAG = "SignatureDeleter";
+
+    // 单个删除请求中ID列表的长度上限，不超过 SQLite 的参数个数限制
+    private static final int MAX_IN_ARGS = 500;
+
+    private SignatureDeleter() {
+    }
+
+    /**
+     * 批量删除的结果。
+     */
+    public static final class Result {
+        public final List<SignatureRecord> deleted;       // 已删除并清理的签名
+        public final List<SignatureRecord> needsConsent;  // MediaStore 拒绝直接删除的签名（不是本应用安装后创建的文件）
+        public final PendingIntent consentRequest;        // 请求用户确认删除 needsConsent 的系统对话框，不支持时为 null
+
+        Result(List<SignatureRecord> deleted, List<SignatureRecord> needsConsent, PendingIntent consentRequest) {
+            this.deleted = deleted;
+            this.needsConsent = needsConsent;
+            this.consentRequest = consentRequest;
+        }
+    }
+
+    /**
+     * 删除签名文件。本应用创建的文件直接删除；其他文件在 Android 11 及以上返回一个系统确认请求，
+     * 用户确认后调用 forgetDeleted 清理。
+     * @param context 任意上下文
+     * @param records 要删除的签名
+     * @return 返回删除结果
+     * @throws IOException 无法查询哪些文件没有被删除时抛出，此时不清理任何密钥
+     */
+    public static Result delete(Context context, List<SignatureRecord> records) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        int deletedCount = 0;
+        for (int start = 0; start < records.size(); start += MAX_IN_ARGS) {
+            List<SignatureRecord> chunk = records.subList(start, Math.min(records.size(), start + MAX_IN_ARGS));
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = Long.toString(chunk.get(i).id);
+            }
+            deletedCount += resolver.delete(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    MediaStore.Images.Media._ID + " IN (" + placeholders(args.length) + ")", args);
+        }
+
+        // 一个请求中 MediaStore 会跳过不属于本应用的文件，只有数量对不上时才需要查询哪些还在
+        Set<Long> remaining = deletedCount >= records.size() ? new HashSet<>() : existingIds(context, records);
+        List<SignatureRecord> deleted = new ArrayList<>(records.size());
+        List<SignatureRecord> needsConsent = new ArrayList<>();
+        for (SignatureRecord record : records) {
+            (remaining.contains(record.id) ? needsConsent : deleted).add(record);
+        }
+        forget(context, deleted);
+
+        PendingIntent consentRequest = null;
+        if (!needsConsent.isEmpty() && Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            List<Uri> uris = new ArrayList<>(needsConsent.size());
+            for (SignatureRecord record : needsConsent) {
+                uris.add(record.uri);
+            }
+            consentRequest = MediaStore.createDeleteRequest(resolver, uris);  // 一个对话框确认全部文件
+        }
+        return new Result(deleted, needsConsent, consentRequest);
+    }
+
+    /**
+     * 用户在系统对话框中确认删除之后调用，清理确实已经被删除的签名。
+     * @param context 任意上下文
+     * @param records 请求确认的签名
+     * @return 返回确实已经被删除的签名
+     * @throws IOException 无法查询 MediaStore 时抛出，此时不清理任何密钥
+     */
+    public static List<SignatureRecord> forgetDeleted(Context context, List<SignatureRecord> records) throws IOException {
+        Set<Long> remaining = existingIds(context, records);
+        List<SignatureRecord> deleted = new ArrayList<>(records.size());
+        for (SignatureRecord record : records) {
+            if (!remaining.contains(record.id)) {
+                deleted.add(record);
+            }
+        }
+        forget(context, deleted);
+        return deleted;
+    }
+
+    /**
+     * 清理已删除文件的密钥、索引和缩略图。
+     */
+    private static void forget(Context context, List<SignatureRecord> deleted) {
+        if (deleted.isEmpty()) {
+            return;
+        }
+        List<String> keyRefs = new ArrayList<>();
+        List<Long> ids = new ArrayList<>(deleted.size());
+        List<String> thumbnailKeys = new ArrayList<>(deleted.size());
+        for (SignatureRecord record : deleted) {
+            if (record.keyRef != null) {
+                keyRefs.add(record.keyRef);
+            }
+            ids.add(record.id);
+            thumbnailKeys.add(record.thumbnailKey);
+        }
+        try {
+            KeyStores.get(context).removeAll(keyRefs);  // 一次落盘
+        } catch (IOException e) {
+            Log.w(TAG, "无法删除密钥，留给完整性扫描清理", e);
+        }
+        SignatureIndex.get(context).delete(ids);
+        ThumbnailLoader.get(context).evict(thumbnailKeys);
+    }
+
+    /**
+     * @return 返回 records 中在 MediaStore 里仍然存在的ID
+     * @throws IOException 查询失败时抛出。不能当作文件都已删除，否则会删掉仍然存在的文件的密钥
+     */
+    private static Set<Long> existingIds(Context context, List<SignatureRecord> records) throws IOException {
+        Set<Long> existing = new HashSet<>();
+        for (int start = 0; start < records.size(); start += MAX_IN_ARGS) {
+            List<SignatureRecord> chunk = records.subList(start, Math.min(records.size(), start + MAX_IN_ARGS));
+            String[] args = new String[chunk.size()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = Long.toString(chunk.get(i).id);
+            }
+            try (Cursor cursor = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                    new String[]{MediaStore.Images.Media._ID},
+                    MediaStore.Images.Media._ID + " IN (" + placeholders(args.length) + ")", args, null)) {
+                if (cursor == null) {
+                    throw new IOException("无法查询 MediaStore");
+                }
+                while (cursor.moveToNext()) {
+                    existing.add(cursor.getLong(0));
+                }
+            }
+        }
+        return existing;
+    }
+
+    private static String placeholders(int count) {
+        StringBuilder builder = new StringBuilder(count * 2);
+        for (int i = 0; i < count; i++) {
+            builder.append(i == 0 ? "?" : ",?");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @param records 签名
+     * @return 返回签名的ID
+     */
+    static List<Long> idsOf(Collection<SignatureRecord> records) {
+        List<Long> ids = new ArrayList<>(records.size());
+        for (SignatureRecord record : records) {
+            ids.add(record.id);
+        }
+        return ids;
+    }
+}
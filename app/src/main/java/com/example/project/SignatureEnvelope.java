@@ -0,0 +1,190 @@
+package com.example.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * SignatureEnvelope 类实现自描述的签名加密文件格式（信封加密）。
+ * 每个文件使用随机生成的数据密钥加密，数据密钥由主密钥包装后写在文件头中，
+ * 因此解密只需要顺序读一遍文件，不再依赖文件名和按文件名保存的密钥，文件被改名也能解密。
+ *
+ * 格式：
+ * <pre>
+ * magic "SFEN"(4) | version(1) | 主密钥标识 | 创建时间(8) | 格式 | 原始文件名
+ *                 | IV长度(1) | IV | 包装后的密钥长度(2) | 包装后的密钥 | 分块加密流(见 AESUtil)
+ * </pre>
+ * 字符串使用 modified UTF-8（DataOutputStream.writeUTF）。包装密钥时把 IV 之前的全部内容作为附加认证数据，
+ * 头部的任何修改都会导致解包失败。分块加密流有自己的随机 nonce 和逐块认证。
+ */
+public final class SignatureEnvelope {
+
+    // 信封格式的魔数和版本号
+    static final byte[] MAGIC = {'S', 'F', 'E', 'N'};
+    private static final int VERSION = 1;
+
+    // IV和包装后密钥的长度上限，防止损坏的数据耗尽内存
+    private static final int MAX_IV_LENGTH = 32;
+    private static final int MAX_WRAPPED_KEY_LENGTH = 512;
+
+    private SignatureEnvelope() {
+    }
+
+    /**
+     * 信封头中的元数据。
+     */
+    public static final class Metadata {
+        public final long createdAt;       // 创建时间
+        public final String format;        // 明文的格式，见 SignatureExporter.Format
+        public final String originalName;  // 保存时的文件名
+
+        public Metadata(long createdAt, String format, String originalName) {
+            this.createdAt = createdAt;
+            this.format = format;
+            this.originalName = originalName;
+        }
+    }
+
+    /**
+     * 打开的信封：元数据和解密后的明文流。
+     */
+    public static final class Opened {
+        public final Metadata metadata;
+        public final InputStream plaintext;
+
+        Opened(Metadata metadata, InputStream plaintext) {
+            this.metadata = metadata;
+            this.plaintext = plaintext;
+        }
+    }
+
+    /**
+     * 文件由另一个主密钥加密。主密钥不能导出，通常是应用被重装或数据从备份恢复后重新生成了主密钥，
+     * 这样的文件无法再解密，但文件本身并没有损坏。
+     */
+    public static final class KeyMismatchException extends GeneralSecurityException {
+        public final String keyId;  // 文件头中的主密钥标识
+
+        KeyMismatchException(String keyId) {
+            super("文件由另一个主密钥加密（应用重装或从备份恢复后原主密钥已丢失），无法解密: " + keyId);
+            this.keyId = keyId;
+        }
+    }
+
+    /**
+     * 写出信封头，并返回加密输出流。关闭返回的流时写出最后一个分块并关闭底层输出流。
+     * @param out 底层输出流
+     * @param dataKey 这个文件的数据密钥，应当每个文件随机生成
+     * @param masterKey 用于包装数据密钥的主密钥
+     * @param metadata 元数据
+     * @return 返回加密输出流
+     * @throws IOException 写入失败时抛出
+     * @throws GeneralSecurityException 包装密钥失败时抛出
+     */
+    public static OutputStream newEncryptingStream(OutputStream out, SecretKey dataKey, MasterKey masterKey,
+                                                   Metadata metadata) throws IOException, GeneralSecurityException {
+        byte[] aad = encodeAuthenticatedHeader(masterKey.getId(), metadata);
+        byte[] rawKey = dataKey.getEncoded();
+        MasterKey.Wrapped wrapped;
+        try {
+            wrapped = masterKey.wrap(rawKey, aad);
+        } finally {
+            AESUtil.wipe(rawKey);
+        }
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream(aad.length + 128);
+        DataOutputStream data = new DataOutputStream(header);
+        data.write(aad);
+        data.writeByte(wrapped.iv.length);
+        data.write(wrapped.iv);
+        data.writeShort(wrapped.wrappedKey.length);
+        data.write(wrapped.wrappedKey);
+        out.write(header.toByteArray());
+        return AESUtil.newEncryptingStream(out, dataKey);
+    }
+
+    /**
+     * 读取信封头，解包数据密钥，并返回解密输入流。输入流必须位于魔数之前。
+     * @param in 加密文件的输入流
+     * @param masterKey 主密钥
+     * @return 返回元数据和解密输入流
+     * @throws IOException 数据无效或读取失败时抛出
+     * @throws KeyMismatchException 文件由另一个主密钥加密时抛出
+     * @throws GeneralSecurityException 头部被篡改时抛出
+     */
+    public static Opened open(InputStream in, MasterKey masterKey) throws IOException, GeneralSecurityException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] magic = new byte[MAGIC.length];
+        data.readFully(magic);
+        if (!isEnvelope(magic, magic.length)) {
+            throw new IOException("不是信封加密的签名文件");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("不支持的信封版本: " + version);
+        }
+        String masterKeyId = data.readUTF();
+        Metadata metadata = new Metadata(data.readLong(), data.readUTF(), data.readUTF());
+        if (!masterKeyId.equals(masterKey.getId())) {
+            throw new KeyMismatchException(masterKeyId);
+        }
+
+        int ivLength = data.readUnsignedByte();
+        if (ivLength == 0 || ivLength > MAX_IV_LENGTH) {
+            throw new IOException("IV长度无效: " + ivLength);
+        }
+        byte[] iv = new byte[ivLength];
+        data.readFully(iv);
+        int wrappedLength = data.readUnsignedShort();
+        if (wrappedLength == 0 || wrappedLength > MAX_WRAPPED_KEY_LENGTH) {
+            throw new IOException("密钥长度无效: " + wrappedLength);
+        }
+        byte[] wrappedKey = new byte[wrappedLength];
+        data.readFully(wrappedKey);
+
+        byte[] rawKey = masterKey.unwrap(iv, wrappedKey, encodeAuthenticatedHeader(masterKeyId, metadata));
+        SecretKey dataKey = new SecretKeySpec(rawKey, AESUtil.ALGORITHM);
+        AESUtil.wipe(rawKey);
+        return new Opened(metadata, AESUtil.newDecryptingStream(in, dataKey));
+    }
+
+    /**
+     * 判断数据开头是否为信封格式的魔数。
+     * @param header 数据开头的字节
+     * @param length 有效字节数
+     * @return 如果是信封格式返回 true
+     */
+    public static boolean isEnvelope(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 编码受认证保护的头部：从魔数到元数据结束。
+     */
+    private static byte[] encodeAuthenticatedHeader(String masterKeyId, Metadata metadata) throws IOException {
+        ByteArrayOutputStream header = new ByteArrayOutputStream(128);
+        DataOutputStream data = new DataOutputStream(header);
+        data.write(MAGIC);
+        data.writeByte(VERSION);
+        data.writeUTF(masterKeyId);
+        data.writeLong(metadata.createdAt);
+        data.writeUTF(metadata.format);
+        data.writeUTF(metadata.originalName);
+        return header.toByteArray();
+    }
+}
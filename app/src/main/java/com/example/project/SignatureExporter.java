@@ -0,0 +1,283 @@
+package com.example.project;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.os.SystemClock;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SignatureExporter 类负责把签名导出为可保存的数据。
+ * 栅格格式只绘制墨迹的包围盒（加上边距），并按目标分辨率等比缩放，
+ * 位图使用每像素1字节的 ALPHA_8，而不是整个视图大小、每像素4字节的 ARGB_8888。
+ */
+public final class SignatureExporter {
+
+    /**
+     * 导出格式。
+     */
+    public enum Format {
+        VECTOR,         // 矢量格式，见 VectorSignatureCodec
+        MONOCHROME_RLE, // 裁剪后的1位游程编码，见 MonochromeCodec
+        WEBP_LOSSLESS,  // 裁剪后的无损WebP
+        PNG_CROPPED,    // 裁剪后的PNG
+        PNG_FULL        // 原来的保存方式：整个视图大小的 ARGB_8888 PNG，仅用于对比
+    }
+
+    // 包围盒四周的边距（采集画布上的像素）
+    static final int DEFAULT_MARGIN = 16;
+
+    // 栅格格式的目标分辨率：长边的像素数
+    static final int DEFAULT_TARGET_LONG_SIDE = 1024;
+
+    // 单色编码时视为墨迹的 alpha 阈值
+    private static final int INK_THRESHOLD = 128;
+
+    private SignatureExporter() {
+    }
+
+    /**
+     * 按指定格式导出签名并写入输出流，绘制和编码的耗时记录到 PipelineMetrics，编码阶段记录输出的字节数。
+     * @param strokes 签名的矢量数据
+     * @param format 导出格式
+     * @param out 输出流，例如加密输出流
+     * @throws IOException 编码或写入失败时抛出
+     */
+    public static void write(StrokeBuffer strokes, Format format, OutputStream out) throws IOException {
+        CountingOutputStream counter = new CountingOutputStream(out);
+        if (format == Format.VECTOR) {
+            long start = PipelineMetrics.begin(PipelineMetrics.Stage.ENCODE);
+            long encoded = PipelineMetrics.FAILED;
+            try {
+                VectorSignatureCodec.encode(strokes, counter);
+                encoded = counter.count;
+            } finally {
+                PipelineMetrics.end(PipelineMetrics.Stage.ENCODE, start, encoded);
+            }
+            return;
+        }
+
+        long start = PipelineMetrics.begin(PipelineMetrics.Stage.RENDER);
+        Bitmap bitmap = null;
+        try {
+            bitmap = render(strokes, format);
+        } finally {
+            PipelineMetrics.end(PipelineMetrics.Stage.RENDER, start,
+                    bitmap != null ? bitmap.getByteCount() : PipelineMetrics.FAILED);
+        }
+
+        start = PipelineMetrics.begin(PipelineMetrics.Stage.ENCODE);
+        long encoded = PipelineMetrics.FAILED;
+        try {
+            encode(bitmap, format, counter);
+            encoded = counter.count;
+        } finally {
+            PipelineMetrics.end(PipelineMetrics.Stage.ENCODE, start, encoded);
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 与 write 相同，但不记录到 PipelineMetrics，用于格式对比，不影响真实保存的统计。
+     */
+    private static void writeUnmetered(StrokeBuffer strokes, Format format, OutputStream out) throws IOException {
+        if (format == Format.VECTOR) {
+            VectorSignatureCodec.encode(strokes, out);
+            return;
+        }
+        Bitmap bitmap = render(strokes, format);
+        try {
+            encode(bitmap, format, out);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * 按栅格格式的要求绘制位图。
+     */
+    private static Bitmap render(StrokeBuffer strokes, Format format) {
+        return format == Format.PNG_FULL
+                ? renderFull(strokes)
+                : renderCropped(strokes, DEFAULT_MARGIN, DEFAULT_TARGET_LONG_SIDE);
+    }
+
+    /**
+     * 把绘制好的位图编码为指定的栅格格式。
+     */
+    private static void encode(Bitmap bitmap, Format format, OutputStream out) throws IOException {
+        if (format == Format.PNG_FULL) {
+            compress(bitmap, Bitmap.CompressFormat.PNG, out);
+        } else if (format == Format.MONOCHROME_RLE) {
+            ByteBuffer pixels = ByteBuffer.allocate(bitmap.getRowBytes() * bitmap.getHeight());
+            bitmap.copyPixelsToBuffer(pixels);
+            MonochromeCodec.encode(pixels.array(), bitmap.getWidth(), bitmap.getHeight(),
+                    bitmap.getRowBytes(), INK_THRESHOLD, out);
+        } else {
+            // PNG和WebP编码器不支持 ALPHA_8，转换为黑色墨迹加 alpha 的 ARGB 位图
+            Bitmap argb = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+            try {
+                compress(argb, format == Format.WEBP_LOSSLESS ? webpLossless() : Bitmap.CompressFormat.PNG, out);
+            } finally {
+                argb.recycle();
+            }
+        }
+    }
+
+    /**
+     * 把墨迹的包围盒（加上边距）绘制到 ALPHA_8 位图中，并把长边缩放到目标分辨率。
+     * @param strokes 签名的矢量数据
+     * @param margin 包围盒四周的边距（采集画布上的像素）
+     * @param targetLongSide 输出位图长边的像素数
+     * @return 返回裁剪后的位图
+     */
+    public static Bitmap renderCropped(StrokeBuffer strokes, int margin, int targetLongSide) {
+        float[] bounds = new float[4];
+        if (!strokes.getBounds(bounds)) {
+            return Bitmap.createBitmap(1, 1, Bitmap.Config.ALPHA_8);
+        }
+        float halfStroke = SignatureRenderer.DEFAULT_STROKE_WIDTH / 2;
+        float left = bounds[0] - halfStroke - margin;
+        float top = bounds[1] - halfStroke - margin;
+        float cropWidth = bounds[2] - bounds[0] + 2 * (halfStroke + margin);
+        float cropHeight = bounds[3] - bounds[1] + 2 * (halfStroke + margin);
+        float scale = targetLongSide / Math.max(cropWidth, cropHeight);
+        int width = Math.max(1, Math.round(cropWidth * scale));
+        int height = Math.max(1, Math.round(cropHeight * scale));
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale(scale, scale);
+        canvas.translate(-left, -top);
+        SignatureRenderer.draw(canvas, strokes, SignatureRenderer.newPaint(SignatureRenderer.DEFAULT_STROKE_WIDTH));
+        return bitmap;
+    }
+
+    /**
+     * 按原来的方式绘制整个视图大小的 ARGB_8888 位图。
+     */
+    private static Bitmap renderFull(StrokeBuffer strokes) {
+        Bitmap bitmap = Bitmap.createBitmap(Math.max(1, strokes.getCanvasWidth()), Math.max(1, strokes.getCanvasHeight()),
+                Bitmap.Config.ARGB_8888);
+        SignatureRenderer.draw(new Canvas(bitmap), strokes, SignatureRenderer.newPaint(SignatureRenderer.DEFAULT_STROKE_WIDTH));
+        return bitmap;
+    }
+
+    private static void compress(Bitmap bitmap, Bitmap.CompressFormat format, OutputStream out) throws IOException {
+        if (!bitmap.compress(format, 100, out)) {
+            throw new IOException("图片编码失败: " + format);
+        }
+    }
+
+    /**
+     * Android 11 以上使用无损WebP，更早的系统上 WEBP 在质量100时也是有损的，退回到PNG。
+     */
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat webpLossless() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R ? Bitmap.CompressFormat.WEBP_LOSSLESS : Bitmap.CompressFormat.PNG;
+    }
+
+    /**
+     * 用每种格式导出同一个签名，统计各自的字节数和耗时，并与原来的整视图PNG进行对比。
+     * @param strokes 签名的矢量数据
+     * @return 返回对比报告
+     * @throws IOException 编码失败时抛出
+     */
+    public static Report compareFormats(StrokeBuffer strokes) throws IOException {
+        Report report = new Report();
+        for (Format format : Format.values()) {
+            CountingOutputStream counter = new CountingOutputStream(null);
+            long start = SystemClock.elapsedRealtimeNanos();
+            writeUnmetered(strokes, format, counter);
+            report.add(format, counter.count, (SystemClock.elapsedRealtimeNanos() - start) / 1_000_000.0);
+        }
+        return report;
+    }
+
+    /**
+     * 各导出格式的字节数和耗时对比报告。
+     */
+    public static final class Report {
+        private final List<Format> formats = new ArrayList<>();
+        private final List<Long> bytes = new ArrayList<>();
+        private final List<Double> millis = new ArrayList<>();
+
+        void add(Format format, long size, double elapsedMillis) {
+            formats.add(format);
+            bytes.add(size);
+            millis.add(elapsedMillis);
+        }
+
+        /**
+         * @param format 导出格式
+         * @return 返回该格式的字节数，没有统计时返回-1
+         */
+        public long getBytes(Format format) {
+            int index = formats.indexOf(format);
+            return index < 0 ? -1 : bytes.get(index);
+        }
+
+        /**
+         * @param format 导出格式
+         * @return 返回该格式的耗时（毫秒），没有统计时返回-1
+         */
+        public double getMillis(Format format) {
+            int index = formats.indexOf(format);
+            return index < 0 ? -1 : millis.get(index);
+        }
+
+        @Override
+        public String toString() {
+            long baselineBytes = getBytes(Format.PNG_FULL);
+            double baselineMillis = getMillis(Format.PNG_FULL);
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < formats.size(); i++) {
+                builder.append(String.format(Locale.US, "%s: %d bytes (%+d), %.1f ms (%+.1f)%n",
+                        formats.get(i), bytes.get(i), bytes.get(i) - baselineBytes,
+                        millis.get(i), millis.get(i) - baselineMillis));
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * 统计写入的字节数，并转发到底层输出流。不关闭底层输出流。
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private final OutputStream out;  // 底层输出流，只统计字节数时为 null
+        long count;
+
+        CountingOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (out != null) {
+                out.write(b);
+            }
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (out != null) {
+                out.write(b, off, len);
+            }
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (out != null) {
+                out.flush();
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package com.example.project;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SignatureIndex 类是应用自己的签名元数据索引（SQLite），列表、搜索和筛选都查询它而不是扫描 MediaStore。
+ * 每个签名一行：MediaStore ID、URI、文件名、添加和修改时间、大小、密钥引用和缩略图引用。
+ * 添加时间和文件名上都建有索引，时间范围、文件名前缀和排序查询都走索引，查询代价只和结果的页大小有关。
+ * <p>
+ * 保存队列发布文件后、应用删除文件后立即更新索引；此外在后台与 MediaStore 对账，
+ * 处理其他应用（或用户在相册中）对签名文件的新增、修改和删除。
+ */
+public final class SignatureIndex extends SQLiteOpenHelper {
+
+    private static final String TAG = "SignatureIndex";
+
+    private static final String DATABASE_NAME = "signature_index.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String TABLE = "signatures";
+    private static final String COLUMN_ID = SignatureQuery.COLUMN_ID;
+    private static final String COLUMN_URI = "uri";
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_NAME_KEY = SignatureQuery.COLUMN_NAME_KEY;
+    private static final String COLUMN_DATE_ADDED = SignatureQuery.COLUMN_DATE_ADDED;
+    private static final String COLUMN_DATE_MODIFIED = "date_modified";
+    private static final String COLUMN_SIZE = "size";
+    private static final String COLUMN_KEY_REF = "key_ref";
+    private static final String COLUMN_THUMBNAIL_REF = "thumbnail_ref";
+
+    private static final String META_TABLE = "meta";
+    private static final String META_GENERATION = "media_generation";  // 上次对账时 MediaStore 的 generation
+
+    private static final String[] COLUMNS = {
+            COLUMN_ID, COLUMN_NAME, COLUMN_DATE_ADDED, COLUMN_DATE_MODIFIED, COLUMN_SIZE, COLUMN_KEY_REF
+    };
+
+    // MediaStore 中签名文件的条件：保存目录完全匹配（MediaStore 保存的相对路径以“/”结尾）
+    static final String MEDIA_SELECTION = MediaStore.Images.Media.RELATIVE_PATH + " = ?";
+    static final String MEDIA_RELATIVE_PATH = SaveQueue.RELATIVE_PATH + "/";
+
+    private static final String[] MEDIA_PROJECTION = {
+            MediaStore.Images.Media._ID,
+            MediaStore.Images.Media.DISPLAY_NAME,
+            MediaStore.Images.Media.DATE_ADDED,
+            MediaStore.Images.Media.DATE_MODIFIED,
+            MediaStore.Images.Media.SIZE
+    };
+
+    // SQLite 单条语句的参数个数上限较低的系统上也能执行的 IN 列表长度
+    private static final int MAX_IN_ARGS = 500;
+
+    private static volatile SignatureIndex instance;
+
+    private final Context context;
+    private final AtomicLong modifications = new AtomicLong();  // 索引内容被修改的次数
+
+    private SignatureIndex(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.context = context;
+        setWriteAheadLoggingEnabled(true);  // 后台对账写入时列表查询不被阻塞
+    }
+
+    /**
+     * 获取全局唯一的索引。数据库在第一次查询时打开，应当在后台线程中使用。
+     * @param context 任意上下文
+     * @return 返回签名索引
+     */
+    public static SignatureIndex get(Context context) {
+        if (instance == null) {
+            synchronized (SignatureIndex.class) {
+                if (instance == null) {
+                    instance = new SignatureIndex(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE + " ("
+                + COLUMN_ID + " INTEGER PRIMARY KEY, "
+                + COLUMN_URI + " TEXT NOT NULL, "
+                + COLUMN_NAME + " TEXT NOT NULL, "
+                + COLUMN_NAME_KEY + " TEXT NOT NULL, "
+                + COLUMN_DATE_ADDED + " INTEGER NOT NULL, "
+                + COLUMN_DATE_MODIFIED + " INTEGER NOT NULL, "
+                + COLUMN_SIZE + " INTEGER NOT NULL, "
+                + COLUMN_KEY_REF + " TEXT, "
+                + COLUMN_THUMBNAIL_REF + " TEXT)");
+        // 按时间排序和按文件名前缀查询的索引，ID作为最后一列，键集分页可以直接在索引上定位
+        db.execSQL("CREATE INDEX " + TABLE + "_date ON " + TABLE + " (" + COLUMN_DATE_ADDED + ", " + COLUMN_ID + ")");
+        db.execSQL("CREATE INDEX " + TABLE + "_name ON " + TABLE + " (" + COLUMN_NAME_KEY + ", " + COLUMN_ID + ")");
+        db.execSQL("CREATE INDEX " + TABLE + "_key_ref ON " + TABLE + " (" + COLUMN_KEY_REF + ")");
+        db.execSQL("CREATE TABLE " + META_TABLE + " (key TEXT PRIMARY KEY, value INTEGER NOT NULL)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // 索引可以随时从 MediaStore 重建
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE);
+        db.execSQL("DROP TABLE IF EXISTS " + META_TABLE);
+        onCreate(db);
+    }
+
+    /**
+     * 按查询条件读取一页签名。
+     * @param query 查询条件
+     * @param after 上一页的最后一项，第一页为 null
+     * @param limit 最多返回的项数
+     * @param signal 取消信号，可以为 null
+     * @return 返回按查询顺序排列的签名
+     */
+    public List<SignatureRecord> query(SignatureQuery query, SignatureRecord after, int limit, CancellationSignal signal) {
+        boolean keyset = after != null;
+        String selection = query.selection(keyset);
+        String[] args = keyset
+                ? query.selectionArgs(true, after.id, after.name, after.dateAdded)
+                : query.selectionArgs(false, 0, null, 0);
+        String sql = "SELECT " + String.join(", ", COLUMNS) + " FROM " + TABLE
+                + (selection != null ? " WHERE " + selection : "")
+                + " ORDER BY " + query.orderBy()
+                + " LIMIT " + limit;
+        long start = PipelineMetrics.begin(PipelineMetrics.Stage.QUERY);
+        List<SignatureRecord> page = null;
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, args, signal)) {
+            page = readRecords(cursor, limit);
+            return page;
+        } finally {
+            PipelineMetrics.end(PipelineMetrics.Stage.QUERY, start, page != null ? 0 : PipelineMetrics.FAILED);
+        }
+    }
+
+    /**
+     * 删除索引中的签名，在应用删除文件之后调用。
+     * @param ids 被删除的签名的ID
+     * @return 返回实际删除的行数
+     */
+    public int delete(Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        int deleted = 0;
+        db.beginTransaction();
+        try (SQLiteStatement statement = db.compileStatement("DELETE FROM " + TABLE + " WHERE " + COLUMN_ID + " = ?")) {
+            for (long id : ids) {
+                statement.bindLong(1, id);
+                deleted += statement.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        modifications.incrementAndGet();
+        return deleted;
+    }
+
+    /**
+     * @return 返回索引被修改的次数。两次读到的值相同，说明期间查询到的结果没有过期
+     */
+    long modificationCount() {
+        return modifications.get();
+    }
+
+    /**
+     * 从 MediaStore 读取指定的签名并写入索引，在保存队列发布文件之后调用。
+     * @param ids MediaStore 中的ID
+     * @return 返回写入索引的签名
+     */
+    public List<SignatureRecord> importById(Collection<Long> ids) {
+        List<SignatureRecord> imported = new ArrayList<>(ids.size());
+        List<Long> remaining = new ArrayList<>(ids);
+        for (int start = 0; start < remaining.size(); start += MAX_IN_ARGS) {
+            List<Long> chunk = remaining.subList(start, Math.min(remaining.size(), start + MAX_IN_ARGS));
+            StringBuilder selection = new StringBuilder(MEDIA_SELECTION).append(" AND ")
+                    .append(MediaStore.Images.Media._ID).append(" IN (");
+            String[] args = new String[chunk.size() + 1];
+            args[0] = MEDIA_RELATIVE_PATH;
+            for (int i = 0; i < chunk.size(); i++) {
+                selection.append(i == 0 ? "?" : ",?");
+                args[i + 1] = Long.toString(chunk.get(i));
+            }
+            selection.append(')');
+            imported.addAll(importFromMediaStore(selection.toString(), args, null));
+        }
+        return imported;
+    }
+
+    /**
+     * 读取 MediaStore 中上次对账之后新增或修改的签名并写入索引。只有 Android 11 及以上支持。
+     * @param signal 取消信号，可以为 null
+     * @return 返回新增或修改的签名，不支持 generation 或从未对账时返回 null，调用者应当改用 reconcile
+     */
+    public List<SignatureRecord> importChanges(CancellationSignal signal) {
+        long since = getSyncedGeneration();
+        if (since < 0) {
+            return null;
+        }
+        long generation = currentMediaGeneration();  // 先取 generation 再查询，查询期间的变化下次还会查到
+        List<SignatureRecord> changes = importFromMediaStore(
+                MEDIA_SELECTION + " AND " + MediaStore.MediaColumns.GENERATION_MODIFIED + " > ?",
+                new String[]{MEDIA_RELATIVE_PATH, Long.toString(since)}, signal);
+        setSyncedGeneration(generation);
+        return changes;
+    }
+
+    /**
+     * 与 MediaStore 完整对账：写入新增和修改的签名，删除 MediaStore 中已经不存在的签名。
+     * 只读取ID、修改时间和大小做比较，只有变化的行才写入。
+     * @param signal 取消信号，可以为 null
+     * @return 如果索引有变化返回 true
+     */
+    public boolean reconcile(CancellationSignal signal) {
+        long generation = currentMediaGeneration();
+        Map<Long, long[]> indexed = new HashMap<>();  // ID -> {修改时间, 大小}
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT " + COLUMN_ID + ", " + COLUMN_DATE_MODIFIED + ", "
+                + COLUMN_SIZE + " FROM " + TABLE, null, signal)) {
+            while (cursor.moveToNext()) {
+                indexed.put(cursor.getLong(0), new long[]{cursor.getLong(1), cursor.getLong(2)});
+            }
+        }
+
+        Set<Long> stale = new HashSet<>(indexed.keySet());
+        List<Long> changed = new ArrayList<>();
+        String[] projection = {MediaStore.Images.Media._ID, MediaStore.Images.Media.DATE_MODIFIED, MediaStore.Images.Media.SIZE};
+        try (Cursor cursor = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, projection,
+                MEDIA_SELECTION, new String[]{MEDIA_RELATIVE_PATH}, null, signal)) {
+            if (cursor == null) {
+                return false;  // MediaStore 不可用时不删除任何索引
+            }
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                stale.remove(id);
+                long[] known = indexed.get(id);
+                if (known == null || known[0] != cursor.getLong(1) || known[1] != cursor.getLong(2)) {
+                    changed.add(id);
+                }
+            }
+        }
+
+        importById(changed);
+        delete(stale);
+        setSyncedGeneration(generation);
+        if (!changed.isEmpty() || !stale.isEmpty()) {
+            Log.i(TAG, "对账完成：更新 " + changed.size() + " 项，删除 " + stale.size() + " 项");
+        }
+        return !changed.isEmpty() || !stale.isEmpty();
+    }
+
+    /**
+     * @return 返回所有引用了按文件名保存的密钥的名称
+     */
+    public Set<String> keyRefs() {
+        Set<String> refs = new HashSet<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT " + COLUMN_KEY_REF + " FROM " + TABLE
+                + " WHERE " + COLUMN_KEY_REF + " IS NOT NULL", null)) {
+            while (cursor.moveToNext()) {
+                refs.add(cursor.getString(0));
+            }
+        }
+        return refs;
+    }
+
+    /**
+     * @return 返回所有仍然使用按文件名保存的密钥的签名，按ID排列
+     */
+    public List<SignatureRecord> legacyRecords() {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT " + String.join(", ", COLUMNS) + " FROM " + TABLE
+                + " WHERE " + COLUMN_KEY_REF + " IS NOT NULL ORDER BY " + COLUMN_ID, null)) {
+            return readRecords(cursor, cursor.getCount());
+        }
+    }
+
+    /**
+     * 按条件查询 MediaStore 中的签名，在一个事务中写入索引。
+     */
+    private List<SignatureRecord> importFromMediaStore(String selection, String[] args, CancellationSignal signal) {
+        List<SignatureRecord> records = new ArrayList<>();
+        long start = PipelineMetrics.begin(PipelineMetrics.Stage.QUERY);
+        boolean queried = false;
+        try (Cursor cursor = context.getContentResolver().query(MediaStore.Images.Media.EXTERNAL_CONTENT_URI,
+                MEDIA_PROJECTION, selection, args, null, signal)) {
+            if (cursor == null) {
+                return records;
+            }
+            KeyStoreEngine keyStore = keyStoreOrNull();
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(1);
+                String keyRef = keyStore != null && name != null && keyStore.contains(name) ? name : null;
+                records.add(new SignatureRecord(cursor.getLong(0), name, cursor.getLong(2), cursor.getLong(3),
+                        cursor.getLong(4), keyRef));
+            }
+            queried = true;
+        } finally {
+            PipelineMetrics.end(PipelineMetrics.Stage.QUERY, start, queried ? 0 : PipelineMetrics.FAILED);
+        }
+        upsert(records);
+        return records;
+    }
+
+    private void upsert(List<SignatureRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (SignatureRecord record : records) {
+                values.clear();
+                values.put(COLUMN_ID, record.id);
+                values.put(COLUMN_URI, record.uri.toString());
+                values.put(COLUMN_NAME, record.name);
+                values.put(COLUMN_NAME_KEY, SignatureQuery.nameKey(record.name));
+                values.put(COLUMN_DATE_ADDED, record.dateAdded);
+                values.put(COLUMN_DATE_MODIFIED, record.dateModified);
+                values.put(COLUMN_SIZE, record.size);
+                values.put(COLUMN_KEY_REF, record.keyRef);
+                values.put(COLUMN_THUMBNAIL_REF, record.thumbnailKey);
+                db.insertWithOnConflict(TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        modifications.incrementAndGet();
+    }
+
+    private static List<SignatureRecord> readRecords(Cursor cursor, int limit) {
+        List<SignatureRecord> records = new ArrayList<>(Math.min(limit, cursor.getCount()));
+        while (cursor.moveToNext()) {
+            records.add(new SignatureRecord(cursor.getLong(0), cursor.getString(1), cursor.getLong(2),
+                    cursor.getLong(3), cursor.getLong(4), cursor.isNull(5) ? null : cursor.getString(5)));
+        }
+        return records;
+    }
+
+    private long getSyncedGeneration() {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.R) {
+            return -1;
+        }
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT value FROM " + META_TABLE + " WHERE key = ?",
+                new String[]{META_GENERATION})) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
+    private void setSyncedGeneration(long generation) {
+        if (generation < 0) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put("key", META_GENERATION);
+        values.put("value", generation);
+        getWritableDatabase().insertWithOnConflict(META_TABLE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * @return 返回主外部存储卷当前的 generation，Android 10 及以下返回 -1
+     */
+    private long currentMediaGeneration() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            return MediaStore.getGeneration(context, MediaStore.VOLUME_EXTERNAL_PRIMARY);
+        }
+        return -1;
+    }
+
+    private KeyStoreEngine keyStoreOrNull() {
+        try {
+            return KeyStores.get(context);
+        } catch (IOException e) {
+            Log.w(TAG, "无法打开密钥存储，密钥引用留空", e);
+            return null;
+        }
+    }
+}
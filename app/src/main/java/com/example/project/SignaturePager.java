@@ -0,0 +1,398 @@
+package com.example.project;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.Context;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.provider.MediaStore;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * SignaturePager 类按页在后台线程从签名索引（SignatureIndex）中读取签名，支持文件名前缀、时间范围和排序。
+ * 分页使用键集（keyset）而不是偏移量：下一页从上一页最后一项之后开始，
+ * 每一页的查询代价只和页大小有关，与签名文件的总数和已经翻过的页数无关。
+ * 第一页查到后立即显示，列表滚动到接近末尾时再加载下一页。
+ * 启动时如果 StartupPrewarmer 在生物识别验证期间已经查好了第一页，直接在主线程显示，不必等待后台线程。
+ * <p>
+ * 进程中第一次加载时先显示索引中的内容，再在后台与 MediaStore 对账，有变化时重新读取。
+ * 之后通过 ContentObserver 监听 MediaStore 的变化，没有变化时 sync() 什么也不查询。
+ * Android 11 及以上按 MediaStore 的 generation 只导入上次对账之后新增或修改的行，删除直接从通知的URI中得到，
+ * 然后把增量合并到已加载的列表；更早的系统无法区分变化的类型，有变化时重新对账。
+ */
+public final class SignaturePager {
+
+    private static final String TAG = "SignaturePager";
+
+    static final int PAGE_SIZE = 50;  // 每页的签名数
+
+    // 收到变化通知后等待这么久再同步，连续的通知只同步一次
+    private static final long SYNC_DELAY_MS = 300;
+
+    // 进程中是否已经与 MediaStore 对账过，应用不在运行时发生的删除只能通过对账发现
+    private static volatile boolean reconciled;
+
+    /**
+     * 分页结果的回调，在主线程调用。
+     */
+    public interface Listener {
+        /**
+         * 已加载的签名发生变化。
+         * @param records 到目前为止加载的全部签名，不可修改
+         */
+        void onSignaturesLoaded(List<SignatureRecord> records);
+    }
+
+    private final ContentResolver resolver;
+    private final SignatureIndex index;
+    private final Listener listener;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();  // 查询索引和 MediaStore 的后台线程
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // 以下字段只在主线程访问
+    private SignatureQuery query = SignatureQuery.ALL;  // 当前的查询条件
+    private List<SignatureRecord> loaded = Collections.emptyList();  // 已加载的签名
+    private boolean hasMore = true;      // 是否还有下一页
+    private boolean loading;             // 是否有正在进行的查询
+    private int generation;              // 每次刷新加一，用于丢弃过期的结果
+    private CancellationSignal pending;  // 正在进行的查询
+    private boolean loadedOnce;          // 是否已经开始加载第一页
+    private boolean forceDeliver = true; // 下一次刷新的结果即使与已加载的相同也要通知（第一次加载、更换查询条件）
+    private boolean changed;             // 上次同步之后是否有新增或修改
+    private boolean needsRefresh;        // 是否有无法增量处理的变化，需要重新对账
+    private final Set<Long> deletedIds = new HashSet<>();  // 上次同步之后被删除的签名
+    private boolean active;              // 界面可见时收到通知立即同步
+    private final Runnable syncRunnable = this::sync;
+
+    // 监听 MediaStore 中图片的变化，回调在主线程执行
+    private final ContentObserver observer = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange, Uri uri, int flags) {
+            long id = uri != null ? parseId(uri) : -1;
+            if ((flags & ContentResolver.NOTIFY_DELETE) != 0 && id >= 0) {
+                deletedIds.add(id);
+            } else if ((flags & (ContentResolver.NOTIFY_INSERT | ContentResolver.NOTIFY_UPDATE)) != 0) {
+                changed = true;
+            } else {
+                needsRefresh = true;  // 没有类型的通知，可能是批量删除
+            }
+            scheduleSync();
+        }
+
+        @Override
+        public void onChange(boolean selfChange, Uri uri) {
+            needsRefresh = true;  // Android 10 及以下只调用这个方法，无法区分变化的类型
+            scheduleSync();
+        }
+    };
+
+    /**
+     * 创建分页器。
+     * @param context 任意上下文
+     * @param listener 分页结果的回调
+     */
+    public SignaturePager(Context context, Listener listener) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+        this.index = SignatureIndex.get(context);
+        this.listener = listener;
+        resolver.registerContentObserver(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, true, observer);
+    }
+
+    /**
+     * 设置界面是否可见。可见时收到变化通知立即同步，不可见时只记录变化，等 setActive(true) 时一起同步。
+     * @param active 界面是否可见
+     */
+    public void setActive(boolean active) {
+        this.active = active;
+        if (active) {
+            sync();
+        } else {
+            mainHandler.removeCallbacks(syncRunnable);
+        }
+    }
+
+    /**
+     * 更换查询条件并从第一页重新加载。
+     * @param newQuery 新的查询条件
+     */
+    public void setQuery(SignatureQuery newQuery) {
+        if (newQuery.equals(query)) {
+            return;
+        }
+        query = newQuery;
+        forceDeliver = true;
+        if (loadedOnce) {
+            load(PAGE_SIZE);
+        }
+    }
+
+    /**
+     * @return 返回当前的查询条件
+     */
+    public SignatureQuery getQuery() {
+        return query;
+    }
+
+    /**
+     * 把上次同步之后的变化应用到已加载的列表。没有变化时什么也不做。
+     */
+    public void sync() {
+        mainHandler.removeCallbacks(syncRunnable);
+        if (!loadedOnce || needsRefresh) {
+            refresh();
+        } else if (changed || !deletedIds.isEmpty()) {
+            if (!loading) {
+                syncIncrementally();
+            }
+        }
+    }
+
+    /**
+     * 从索引和已加载的列表中移除签名，用于应用自己删除了文件之后立即更新列表，所有ID只合并一次。
+     * @param ids 被删除的签名的ID
+     */
+    public void remove(Collection<Long> ids) {
+        deletedIds.addAll(ids);
+        if (!loading) {
+            syncIncrementally();
+        }
+    }
+
+    /**
+     * 重新从第一项开始加载，取消正在进行的查询。已经加载过多页时一次重新加载相同数量的签名，列表不会缩回第一页。
+     */
+    public void refresh() {
+        load(Math.max(PAGE_SIZE, loaded.size()));
+    }
+
+    /**
+     * 从第一项开始加载至多 limit 个签名。需要时先显示索引中的内容，再与 MediaStore 对账。
+     */
+    private void load(int limit) {
+        cancelPending();
+        generation++;
+        boolean reconcile = needsRefresh || !reconciled;
+        loadedOnce = true;
+        needsRefresh = false;
+        changed = false;
+        deletedIds.clear();
+        loading = true;
+        int requestGeneration = generation;
+        SignatureQuery requestQuery = query;
+        CancellationSignal signal = new CancellationSignal();
+        pending = signal;
+        List<SignatureRecord> prewarmed = limit == PAGE_SIZE && requestQuery.equals(SignatureQuery.ALL)
+                ? StartupPrewarmer.takeFirstPage() : null;
+        if (prewarmed != null) {
+            deliver(requestGeneration, prewarmed, limit, true, !reconcile);
+            if (!reconcile) {
+                return;
+            }
+        }
+        executor.execute(() -> {
+            try {
+                List<SignatureRecord> page = prewarmed;
+                if (page == null) {
+                    List<SignatureRecord> firstPage = index.query(requestQuery, null, limit, signal);
+                    mainHandler.post(() -> deliver(requestGeneration, firstPage, limit, true, !reconcile));
+                    page = firstPage;
+                }
+                if (reconcile) {
+                    boolean indexChanged = index.reconcile(signal);
+                    reconciled = true;
+                    List<SignatureRecord> reconciledPage = indexChanged ? index.query(requestQuery, null, limit, signal) : page;
+                    mainHandler.post(() -> deliver(requestGeneration, reconciledPage, limit, true, true));
+                }
+            } catch (OperationCanceledException e) {
+                // 被新的刷新取代
+            } catch (RuntimeException e) {
+                Log.w(TAG, "加载签名失败", e);
+                mainHandler.post(() -> deliver(requestGeneration, Collections.emptyList(), limit, true, true));
+            }
+        });
+    }
+
+    /**
+     * 加载下一页。已经在加载或没有更多签名时什么也不做。
+     */
+    public void loadMore() {
+        if (loading || !hasMore) {
+            return;
+        }
+        SignatureRecord last = loaded.isEmpty() ? null : loaded.get(loaded.size() - 1);
+        loading = true;
+        int requestGeneration = generation;
+        SignatureQuery requestQuery = query;
+        CancellationSignal signal = new CancellationSignal();
+        pending = signal;
+        executor.execute(() -> {
+            List<SignatureRecord> page;
+            try {
+                page = index.query(requestQuery, last, PAGE_SIZE, signal);
+            } catch (OperationCanceledException e) {
+                return;
+            } catch (RuntimeException e) {
+                Log.w(TAG, "加载签名失败", e);
+                page = Collections.emptyList();
+            }
+            List<SignatureRecord> result = page;
+            mainHandler.post(() -> deliver(requestGeneration, result, PAGE_SIZE, false, true));
+        });
+    }
+
+    /**
+     * @return 如果可能还有下一页返回 true
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    /**
+     * 取消正在进行的查询并关闭后台线程。
+     */
+    public void close() {
+        resolver.unregisterContentObserver(observer);
+        mainHandler.removeCallbacks(syncRunnable);
+        cancelPending();
+        generation++;
+        executor.shutdownNow();
+    }
+
+    private void scheduleSync() {
+        if (active && loadedOnce) {
+            mainHandler.removeCallbacks(syncRunnable);
+            mainHandler.postDelayed(syncRunnable, SYNC_DELAY_MS);
+        }
+    }
+
+    /**
+     * 在后台把上次同步之后新增或修改的签名导入索引、从索引中删除被删除的签名，再合并到已加载的列表。
+     */
+    private void syncIncrementally() {
+        boolean importChanges = changed;
+        Set<Long> deleted = new HashSet<>(deletedIds);
+        changed = false;
+        deletedIds.clear();
+        loading = true;
+        int requestGeneration = generation;
+        SignatureQuery requestQuery = query;
+        CancellationSignal signal = new CancellationSignal();
+        pending = signal;
+        executor.execute(() -> {
+            List<SignatureRecord> matching = new ArrayList<>();
+            Set<Long> removed = new HashSet<>(deleted);
+            try {
+                index.delete(deleted);
+                List<SignatureRecord> changes = importChanges ? index.importChanges(signal) : Collections.emptyList();
+                if (changes == null) {
+                    fallBackToReconcile(requestGeneration);  // 不支持 generation 或从未对账
+                    return;
+                }
+                for (SignatureRecord record : changes) {
+                    if (requestQuery.matches(record.name, record.dateAdded)) {
+                        matching.add(record);
+                    } else {
+                        removed.add(record.id);  // 修改后不再满足查询条件
+                    }
+                }
+            } catch (OperationCanceledException e) {
+                return;
+            } catch (RuntimeException e) {
+                Log.w(TAG, "增量同步失败", e);
+                fallBackToReconcile(requestGeneration);
+                return;
+            }
+            mainHandler.post(() -> applyChanges(requestGeneration, matching, removed));
+        });
+    }
+
+    private void fallBackToReconcile(int requestGeneration) {
+        mainHandler.post(() -> {
+            if (requestGeneration == generation) {
+                loading = false;
+                needsRefresh = true;
+                sync();
+            }
+        });
+    }
+
+    private void applyChanges(int requestGeneration, Collection<SignatureRecord> changes, Set<Long> removed) {
+        if (requestGeneration != generation) {
+            return;
+        }
+        pending = null;
+        loading = false;
+        List<SignatureRecord> merged = SortedMerge.merge(loaded, changes, removed, !hasMore, record -> record.id, order());
+        if (!merged.equals(loaded)) {  // 其他应用的图片变化不影响签名列表
+            loaded = Collections.unmodifiableList(merged);
+            listener.onSignaturesLoaded(loaded);
+        }
+        if (changed || !deletedIds.isEmpty() || needsRefresh) {
+            sync();  // 同步期间又收到了通知
+        }
+    }
+
+    private void deliver(int requestGeneration, List<SignatureRecord> page, int limit, boolean replace, boolean finished) {
+        if (requestGeneration != generation) {
+            return;  // 刷新之前发出的查询
+        }
+        if (finished) {
+            pending = null;
+            loading = false;
+        }
+        hasMore = page.size() >= limit;
+        boolean notify;
+        if (replace) {
+            notify = forceDeliver || !page.equals(loaded);  // 对账后没有变化时不通知
+            loaded = Collections.unmodifiableList(page);
+            forceDeliver = false;
+        } else {
+            List<SignatureRecord> records = new ArrayList<>(loaded.size() + page.size());
+            records.addAll(loaded);
+            records.addAll(page);
+            loaded = Collections.unmodifiableList(records);
+            notify = !page.isEmpty();
+        }
+        if (notify) {
+            listener.onSignaturesLoaded(loaded);
+        }
+        if (finished && (changed || !deletedIds.isEmpty() || needsRefresh)) {
+            sync();  // 加载期间收到了通知
+        }
+    }
+
+    private Comparator<SignatureRecord> order() {
+        SignatureQuery current = query;
+        return (a, b) -> current.compare(a.id, a.name, a.dateAdded, b.id, b.name, b.dateAdded);
+    }
+
+    private void cancelPending() {
+        if (pending != null) {
+            pending.cancel();
+            pending = null;
+        }
+        loading = false;
+    }
+
+    private static long parseId(Uri uri) {
+        try {
+            return ContentUris.parseId(uri);
+        } catch (RuntimeException e) {
+            return -1;  // 集合URI，不是单个文件
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.example.project;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SignatureQuery 类描述对签名索引的一次查询：文件名前缀、添加时间范围和排列顺序，创建后不可修改。
+ * 它同时生成 SQL 条件（包括键集分页的条件）和内存中的比较规则，两者的顺序保持一致，
+ * 增量变化可以按同样的规则合并到已加载的列表中。
+ */
+public final class SignatureQuery {
+
+    /**
+     * 排列顺序。每种顺序都以ID作为最后的排序键，保证顺序唯一，键集分页才不会漏项或重复。
+     */
+    public enum Sort {
+        NEWEST_FIRST,  // 添加时间降序
+        OLDEST_FIRST,  // 添加时间升序
+        NAME           // 文件名升序（不区分大小写）
+    }
+
+    // 索引中的列名
+    static final String COLUMN_ID = "_id";
+    static final String COLUMN_NAME_KEY = "name_key";
+    static final String COLUMN_DATE_ADDED = "date_added";
+
+    /** 不带任何条件、按添加时间降序的查询。 */
+    public static final SignatureQuery ALL = new SignatureQuery(null, Long.MIN_VALUE, Long.MAX_VALUE, Sort.NEWEST_FIRST);
+
+    public final String namePrefix;  // 文件名前缀，为空时不限制
+    public final long fromDate;      // 添加时间下限（秒，包含）
+    public final long toDate;        // 添加时间上限（秒，不包含）
+    public final Sort sort;          // 排列顺序
+
+    private final String prefixKey;  // 小写的文件名前缀
+
+    /**
+     * 创建查询。
+     * @param namePrefix 文件名前缀，为 null 或空字符串时不限制
+     * @param fromDate 添加时间下限（秒，包含），Long.MIN_VALUE 表示不限制
+     * @param toDate 添加时间上限（秒，不包含），Long.MAX_VALUE 表示不限制
+     * @param sort 排列顺序
+     */
+    public SignatureQuery(String namePrefix, long fromDate, long toDate, Sort sort) {
+        this.namePrefix = namePrefix == null || namePrefix.isEmpty() ? null : namePrefix;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.sort = sort;
+        this.prefixKey = this.namePrefix == null ? null : nameKey(this.namePrefix);
+    }
+
+    /**
+     * @param prefix 新的文件名前缀
+     * @return 返回只替换了文件名前缀的查询
+     */
+    public SignatureQuery withNamePrefix(String prefix) {
+        return new SignatureQuery(prefix, fromDate, toDate, sort);
+    }
+
+    /**
+     * 计算用于不区分大小写的比较和前缀匹配的文件名键。
+     * @param name 文件名
+     * @return 返回文件名键
+     */
+    static String nameKey(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param name 文件名
+     * @param dateAdded 添加时间（秒）
+     * @return 如果签名满足查询条件返回 true
+     */
+    public boolean matches(String name, long dateAdded) {
+        if (dateAdded < fromDate || dateAdded >= toDate) {
+            return false;
+        }
+        return prefixKey == null || nameKey(name).startsWith(prefixKey);
+    }
+
+    /**
+     * 按查询的排列顺序比较两个签名。
+     * @return 返回负数、零或正数，与 ORDER BY 的结果一致
+     */
+    public int compare(long idA, String nameA, long dateA, long idB, String nameB, long dateB) {
+        int result;
+        switch (sort) {
+            case OLDEST_FIRST:
+                result = Long.compare(dateA, dateB);
+                return result != 0 ? result : Long.compare(idA, idB);
+            case NAME:
+                result = nameKey(nameA).compareTo(nameKey(nameB));
+                return result != 0 ? result : Long.compare(idA, idB);
+            case NEWEST_FIRST:
+            default:
+                result = Long.compare(dateB, dateA);
+                return result != 0 ? result : Long.compare(idB, idA);
+        }
+    }
+
+    /**
+     * 生成 WHERE 条件。文件名前缀转换为范围条件，可以使用文件名索引。
+     * @param keyset 是否加上“排在上一页最后一项之后”的条件
+     * @return 返回 WHERE 条件，没有条件时返回 null
+     */
+    public String selection(boolean keyset) {
+        List<String> clauses = new ArrayList<>(4);
+        if (fromDate != Long.MIN_VALUE) {
+            clauses.add(COLUMN_DATE_ADDED + " >= ?");
+        }
+        if (toDate != Long.MAX_VALUE) {
+            clauses.add(COLUMN_DATE_ADDED + " < ?");
+        }
+        if (prefixKey != null) {
+            clauses.add(COLUMN_NAME_KEY + " >= ? AND " + COLUMN_NAME_KEY + " < ?");
+        }
+        if (keyset) {
+            String column = sort == Sort.NAME ? COLUMN_NAME_KEY : COLUMN_DATE_ADDED;
+            String operator = sort == Sort.NEWEST_FIRST ? "<" : ">";
+            clauses.add("(" + column + " " + operator + " ? OR (" + column + " = ? AND "
+                    + COLUMN_ID + " " + operator + " ?))");
+        }
+        return clauses.isEmpty() ? null : String.join(" AND ", clauses);
+    }
+
+    /**
+     * 生成与 selection 对应的参数。
+     * @param keyset 是否包含键集条件的参数
+     * @param afterId 上一页最后一项的ID
+     * @param afterName 上一页最后一项的文件名
+     * @param afterDate 上一页最后一项的添加时间（秒）
+     * @return 返回参数数组，没有参数时返回 null
+     */
+    public String[] selectionArgs(boolean keyset, long afterId, String afterName, long afterDate) {
+        List<String> args = new ArrayList<>(7);
+        if (fromDate != Long.MIN_VALUE) {
+            args.add(Long.toString(fromDate));
+        }
+        if (toDate != Long.MAX_VALUE) {
+            args.add(Long.toString(toDate));
+        }
+        if (prefixKey != null) {
+            args.add(prefixKey);
+            args.add(prefixKey + '\uffff');  // 所有以前缀开头的键都小于它
+        }
+        if (keyset) {
+            String key = sort == Sort.NAME ? nameKey(afterName) : Long.toString(afterDate);
+            args.add(key);
+            args.add(key);
+            args.add(Long.toString(afterId));
+        }
+        return args.isEmpty() ? null : args.toArray(new String[0]);
+    }
+
+    /**
+     * @return 返回 ORDER BY 子句
+     */
+    public String orderBy() {
+        switch (sort) {
+            case OLDEST_FIRST:
+                return COLUMN_DATE_ADDED + " ASC, " + COLUMN_ID + " ASC";
+            case NAME:
+                return COLUMN_NAME_KEY + " ASC, " + COLUMN_ID + " ASC";
+            case NEWEST_FIRST:
+            default:
+                return COLUMN_DATE_ADDED + " DESC, " + COLUMN_ID + " DESC";
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SignatureQuery)) {
+            return false;
+        }
+        SignatureQuery other = (SignatureQuery) o;
+        return fromDate == other.fromDate && toDate == other.toDate && sort == other.sort
+                && (namePrefix == null ? other.namePrefix == null : namePrefix.equals(other.namePrefix));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = namePrefix == null ? 0 : namePrefix.hashCode();
+        result = 31 * result + Long.hashCode(fromDate);
+        result = 31 * result + Long.hashCode(toDate);
+        return 31 * result + sort.hashCode();
+    }
+}
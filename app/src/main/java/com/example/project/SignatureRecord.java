@@ -0,0 +1,84 @@
+package com.example.project;
+
+import android.content.ContentUris;
+import android.net.Uri;
+import android.provider.MediaStore;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * SignatureRecord 类是签名列表中的一项，对应 MediaStore 中的一个签名文件，创建后不可修改。
+ * URI、日期文本和缩略图的缓存键在后台线程创建记录时一次算好，列表绑定时不再解析、查询或分配。
+ */
+public final class SignatureRecord {
+
+    public final long id;          // MediaStore 中的ID
+    public final String name;      // 文件名
+    public final long dateAdded;   // 添加时间（秒）
+    public final long dateModified;  // 最后修改时间（秒）
+    public final long size;        // 文件大小（字节）
+    public final String keyRef;    // 按文件名保存的密钥在密钥存储中的名称，信封格式的文件为 null
+    public final Uri uri;          // 文件的 content:// URI
+    public final String dateText;  // 显示在列表中的日期
+    public final String thumbnailKey;  // 缩略图在缓存中的键
+
+    /**
+     * 创建签名记录。
+     * @param id MediaStore 中的ID
+     * @param name 文件名
+     * @param dateAdded 添加时间（秒）
+     * @param dateModified 最后修改时间（秒）
+     * @param size 文件大小（字节）
+     * @param keyRef 按文件名保存的密钥的名称，没有时为 null
+     */
+    public SignatureRecord(long id, String name, long dateAdded, long dateModified, long size, String keyRef) {
+        this.id = id;
+        this.name = name != null ? name : "";
+        this.dateAdded = dateAdded;
+        this.dateModified = dateModified;
+        this.size = size;
+        this.keyRef = keyRef;
+        this.uri = ContentUris.withAppendedId(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, id);
+        this.thumbnailKey = SignatureCache.keyFor(uri, dateModified, size, ThumbnailLoader.THUMBNAIL_SIZE);
+        this.dateText = "Saved on: " + new SimpleDateFormat("dd/MM/yyyy HH:mm:ss", Locale.getDefault())
+                .format(new Date(dateAdded * 1000L));
+    }
+
+    /**
+     * @param other 另一条记录
+     * @return 如果两条记录指向同一个文件返回 true
+     */
+    public boolean isSameFile(SignatureRecord other) {
+        return id == other.id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SignatureRecord)) {
+            return false;
+        }
+        SignatureRecord other = (SignatureRecord) o;
+        return id == other.id && dateAdded == other.dateAdded && dateModified == other.dateModified
+                && size == other.size && name.equals(other.name)
+                && (keyRef == null ? other.keyRef == null : keyRef.equals(other.keyRef));
+    }
+
+    @Override
+    public int hashCode() {
+        int result = Long.hashCode(id);
+        result = 31 * result + name.hashCode();
+        result = 31 * result + Long.hashCode(dateAdded);
+        result = 31 * result + Long.hashCode(dateModified);
+        return 31 * result + Long.hashCode(size);
+    }
+
+    @Override
+    public String toString() {
+        return "SignatureRecord{id=" + id + ", name=" + name + "}";
+    }
+}
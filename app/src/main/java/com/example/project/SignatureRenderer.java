@@ -0,0 +1,82 @@
+package com.example.project;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+
+/**
+ * SignatureRenderer 类把 {@link StrokeBuffer} 中的矢量笔画绘制成位图。
+ * 绘制时按目标尺寸等比缩放，因此矢量签名在任何显示尺寸下都是清晰的。
+ */
+public final class SignatureRenderer {
+
+    // 采集时使用的画笔宽度，与 SignatureView 保持一致
+    static final float DEFAULT_STROKE_WIDTH = 5f;
+
+    private SignatureRenderer() {
+    }
+
+    /**
+     * 把笔画按目标尺寸等比缩放后居中绘制到一张透明背景的位图上。
+     * @param strokes 需要绘制的笔画
+     * @param targetWidth 目标宽度
+     * @param targetHeight 目标高度
+     * @return 返回绘制好的位图
+     */
+    public static Bitmap render(StrokeBuffer strokes, int targetWidth, int targetHeight) {
+        int canvasWidth = strokes.getCanvasWidth() > 0 ? strokes.getCanvasWidth() : targetWidth;
+        int canvasHeight = strokes.getCanvasHeight() > 0 ? strokes.getCanvasHeight() : targetHeight;
+        float scale = Math.min((float) targetWidth / canvasWidth, (float) targetHeight / canvasHeight);
+        int width = Math.max(1, Math.round(canvasWidth * scale));
+        int height = Math.max(1, Math.round(canvasHeight * scale));
+
+        Bitmap bitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.scale(scale, scale);
+        draw(canvas, strokes, newPaint(DEFAULT_STROKE_WIDTH));
+        return bitmap;
+    }
+
+    /**
+     * 创建与签名板一致的画笔。
+     * @param strokeWidth 画笔宽度
+     * @return 返回画笔
+     */
+    static Paint newPaint(float strokeWidth) {
+        Paint paint = new Paint();
+        paint.setAntiAlias(true);
+        paint.setColor(Color.BLACK);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeWidth(strokeWidth);
+        return paint;
+    }
+
+    /**
+     * 在画布上绘制全部笔画，使用与签名板相同的中点二次曲线平滑方式。
+     * @param canvas 目标画布
+     * @param strokes 需要绘制的笔画
+     * @param paint 画笔
+     */
+    static void draw(Canvas canvas, StrokeBuffer strokes, Paint paint) {
+        Path path = new Path();
+        for (int stroke = 0; stroke < strokes.getStrokeCount(); stroke++) {
+            int start = strokes.getStrokeStart(stroke);
+            int end = strokes.getStrokeEnd(stroke);
+            if (end - start < 2) {
+                continue;  // 单个采样点在签名板上也不会留下墨迹
+            }
+            path.moveTo(strokes.getX(start), strokes.getY(start));
+            for (int i = start + 1; i < end; i++) {
+                float previousX = strokes.getX(i - 1);
+                float previousY = strokes.getY(i - 1);
+                path.quadTo(previousX, previousY, (previousX + strokes.getX(i)) / 2, (previousY + strokes.getY(i)) / 2);
+            }
+            path.lineTo(strokes.getX(end - 1), strokes.getY(end - 1));
+        }
+        canvas.drawPath(path, paint);
+    }
+}
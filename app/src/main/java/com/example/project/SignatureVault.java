@@ -0,0 +1,156 @@
+package com.example.project;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * SignatureVault 类统一负责签名文件的加密和解密。
+ * 新文件使用 SignatureEnvelope 的信封格式，数据密钥由 Keystore 中的主密钥包装后写在文件头里；
+ * 旧文件（以及 Keystore 不可用时写出的文件）按文件名在密钥存储中查找密钥。
+ * 主密钥只存在于本机的 Keystore 中，没有备份或恢复途径：应用重装或数据从备份恢复后，信封格式的文件无法再解密，
+ * openDecrypted 抛出 SignatureEnvelope.KeyMismatchException。
+ * 正在被 Reencryptor 迁移的文件优先读取已经校验过的暂存副本，原文件在覆盖完成之前可能只写了一半。
+ */
+public final class SignatureVault {
+
+    private static final String TAG = "SignatureVault";
+
+    private SignatureVault() {
+    }
+
+    /**
+     * 开始加密一个新文件的结果。
+     */
+    public static final class Encryption {
+        public final OutputStream stream;  // 加密输出流，关闭时写出最后一个分块
+        public final byte[] nameKey;       // 需要按文件名保存的密钥；使用信封格式时为空数组
+
+        Encryption(OutputStream stream, byte[] nameKey) {
+            this.stream = stream;
+            this.nameKey = nameKey;
+        }
+    }
+
+    /**
+     * 为新文件生成数据密钥并返回加密输出流。优先使用信封格式，Keystore 不可用时退回到按文件名保存密钥的格式。
+     * @param out 底层输出流
+     * @param fileName 文件名
+     * @param format 明文的格式
+     * @return 返回加密输出流和需要按文件名保存的密钥
+     * @throws Exception 生成密钥或写入失败时抛出
+     */
+    public static Encryption beginEncryption(OutputStream out, String fileName, String format) throws Exception {
+        SecretKey dataKey = AESUtil.generateKey();
+        MasterKey masterKey = masterKeyOrNull();
+        if (masterKey != null) {
+            SignatureEnvelope.Metadata metadata = new SignatureEnvelope.Metadata(System.currentTimeMillis(), format, fileName);
+            return new Encryption(SignatureEnvelope.newEncryptingStream(out, dataKey, masterKey, metadata), new byte[0]);
+        }
+        return new Encryption(AESUtil.newEncryptingStream(out, dataKey), dataKey.getEncoded());
+    }
+
+    /**
+     * 打开签名文件并返回解密后的明文流。信封格式只需要顺序读取文件本身，其他格式按文件名查找密钥。
+     * @param context 任意上下文
+     * @param uri 签名文件
+     * @return 返回解密输入流，调用者负责关闭
+     * @throws Exception 读取或解密失败时抛出
+     */
+    public static InputStream openDecrypted(Context context, Uri uri) throws Exception {
+        InputStream raw = openRaw(context, uri);
+        try {
+            PushbackInputStream in = new PushbackInputStream(raw, SignatureEnvelope.MAGIC.length);
+            byte[] header = new byte[SignatureEnvelope.MAGIC.length];
+            int read = 0;
+            while (read < header.length) {
+                int n = in.read(header, read, header.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            in.unread(header, 0, read);
+            if (SignatureEnvelope.isEnvelope(header, read)) {
+                MasterKey masterKey = masterKeyOrNull();
+                if (masterKey == null) {
+                    throw new GeneralSecurityException("主密钥不可用");
+                }
+                return SignatureEnvelope.open(in, masterKey).plaintext;
+            }
+            return AESUtil.openDecryptingStream(in, getNameKey(context, uri));  // 旧文件：按文件名查找密钥
+        } catch (Exception e) {
+            raw.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 打开签名文件的密文。迁移中的文件读取暂存副本，副本在打开之前刚好被删除时说明覆盖已经完成，读取原文件。
+     */
+    private static InputStream openRaw(Context context, Uri uri) throws FileNotFoundException {
+        File staged = Reencryptor.stagedCopy(context, uri);
+        if (staged != null) {
+            try {
+                return new FileInputStream(staged);
+            } catch (FileNotFoundException ignored) {
+                // 迁移刚刚完成
+            }
+        }
+        InputStream raw = context.getContentResolver().openInputStream(uri);
+        if (raw == null) {
+            throw new FileNotFoundException(uri.toString());
+        }
+        return raw;
+    }
+
+    /**
+     * @return 返回 Keystore 中的主密钥，不可用时返回 null
+     */
+    private static MasterKey masterKeyOrNull() {
+        try {
+            return KeystoreMasterKey.get();
+        } catch (GeneralSecurityException | RuntimeException e) {
+            Log.w(TAG, "主密钥不可用，使用按文件名保存的密钥", e);
+            return null;
+        }
+    }
+
+    /**
+     * 按文件名在密钥存储中查找旧格式文件的密钥。
+     */
+    private static SecretKey getNameKey(Context context, Uri uri) throws IOException {
+        String fileName = getFileName(context, uri);
+        byte[] keyBytes = KeyStores.get(context).get(fileName);
+        if (keyBytes == null) {
+            throw new IllegalArgumentException("No key found for file: " + fileName);  // 如果密钥不存在，抛出异常
+        }
+        return new SecretKeySpec(keyBytes, AESUtil.ALGORITHM);
+    }
+
+    /**
+     * 根据URI获取文件的名称。
+     */
+    static String getFileName(Context context, Uri uri) throws FileNotFoundException {
+        try (Cursor cursor = context.getContentResolver().query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                throw new FileNotFoundException(uri.toString());
+            }
+            return cursor.getString(0);
+        }
+    }
+}
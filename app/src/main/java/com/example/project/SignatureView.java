@@ -6,24 +6,50 @@ import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.Display;
 import android.view.MotionEvent;
 import android.view.View;
 
 /**
  * SignatureView 类是一个自定义视图，用于捕获用户的签名输入。
  * 它提供了签名板的绘制功能，并允许用户通过触摸来绘制自己的签名。
+ * 已完成的笔画只会被绘制一次到离屏的墨迹位图中，每一帧只需要绘制位图和当前正在移动的一小段线条，
+ * 每个触摸事件最多请求一次重绘，因此每帧的绘制开销不会随着签名变长而增加。
+ * 硬件加速下系统总是重绘整个视图，局部刷新区域会被忽略，所以这里不计算刷新区域。
+ * 每个 ACTION_MOVE 中批量的历史采样都会被逐个使用，快速书写时线条也不会出现折角，
+ * 输入到绘制的延迟等性能数据可以通过 {@link #getInkMetrics()} 查询。
+ * 采样点先经过 {@link StrokeSimplifier} 简化，保留下来的点才会被绘制并保存在 {@link StrokeBuffer} 中，
+ * 作为签名的矢量数据用于保存。
  */
 public class SignatureView extends View {
     private Paint paint = new Paint();  // 画笔，用于绘制路径
-    private Path path = new Path();     // 路径，用于记录用户绘制的轨迹
+    private Path livePath = new Path(); // 尚未写入墨迹位图的当前线段
+    private Path segmentPath = new Path();  // 临时路径，用于把平滑后的线段写入墨迹位图
+    private Bitmap inkBitmap;           // 离屏墨迹位图，保存所有已完成的线段
+    private Canvas inkCanvas;           // 用于在墨迹位图上绘制的画布
+    private boolean hasInk;             // 是否已经绘制过线条
+
+    private float lastX, lastY;         // 上一个触摸点
+    private float midX, midY;           // 已写入墨迹位图的线段终点（上一段的中点）
+    private boolean strokeStarted;      // 当前这一笔是否已经有了起点
+
+    private boolean hasTail;            // 当前是否有实时线段
+    private boolean dirty;              // 本次触摸事件是否改变了需要绘制的内容
+    private final InkMetrics inkMetrics = new InkMetrics();  // 输入到绘制的性能统计
+    private final StrokeBuffer strokes = new StrokeBuffer();  // 签名的矢量数据
+    private final StrokeSimplifier simplifier;  // 笔画简化器，只保留描述笔画形状所必需的采样点
+
+    // 默认的简化容差（dp），在屏幕上不可见
+    private static final float DEFAULT_SIMPLIFY_TOLERANCE_DP = 0.5f;
 
     /**
      * 检查签名视图是否为空。
      * @return 如果没有签名返回 true，否则返回 false。
      */
     public boolean isEmpty() {
-        return path.isEmpty();
+        return !hasInk;
     }
 
     /**
@@ -37,7 +63,10 @@ public class SignatureView extends View {
         paint.setColor(Color.BLACK);  // 设置画笔颜色为黑色
         paint.setStyle(Paint.Style.STROKE);  // 设置画笔样式为描边
         paint.setStrokeJoin(Paint.Join.ROUND);  // 设置描边的拐角为圆角
+        paint.setStrokeCap(Paint.Cap.ROUND);  // 线段端点为圆形，使分段绘制的线条首尾衔接
         paint.setStrokeWidth(5f);  // 设置描边宽度
+        float tolerance = DEFAULT_SIMPLIFY_TOLERANCE_DP * getResources().getDisplayMetrics().density;
+        simplifier = new StrokeSimplifier(tolerance, this::onKeptPoint);
     }
 
     /**
@@ -53,13 +82,48 @@ public class SignatureView extends View {
         setMeasuredDimension(size, size);  // 设置测量的尺寸为正方形
     }
 
+    /**
+     * 视图尺寸变化时重新创建墨迹位图，并保留已有的墨迹。
+     */
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        strokes.setCanvasSize(w, h);
+        Bitmap oldBitmap = inkBitmap;
+        inkBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+        inkCanvas = new Canvas(inkBitmap);
+        if (oldBitmap != null) {
+            inkCanvas.drawBitmap(oldBitmap, 0, 0, null);  // 把旧的墨迹复制到新位图中
+            oldBitmap.recycle();
+        }
+    }
+
+    /**
+     * 视图附加到窗口时，按屏幕的实际刷新率计算掉帧。
+     */
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        Display display = getDisplay();
+        if (display != null) {
+            inkMetrics.setRefreshRate(display.getRefreshRate());
+        }
+    }
+
     /**
      * 绘制视图内容。
      * @param canvas 画布，用于在其中绘制内容
      */
     @Override
     protected void onDraw(Canvas canvas) {
-        canvas.drawPath(path, paint);  // 在画布上绘制路径
+        if (inkBitmap != null) {
+            canvas.drawBitmap(inkBitmap, 0, 0, null);  // 绘制已完成的墨迹
+        }
+        canvas.drawPath(livePath, paint);  // 绘制当前正在移动的线段
+        inkMetrics.onFrameDrawn(SystemClock.uptimeMillis(), System.nanoTime());  // 结算这一帧绘制的采样
     }
 
     /**
@@ -71,32 +135,167 @@ public class SignatureView extends View {
     public boolean onTouchEvent(MotionEvent event) {
         float eventX = event.getX();  // 获取触摸点的X坐标
         float eventY = event.getY();  // 获取触摸点的Y坐标
+        long receivedNanos = System.nanoTime();  // 收到事件的时间，用于统计掉帧
 
         switch (event.getAction()) {
             case MotionEvent.ACTION_DOWN:  // 手指触碰屏幕
-                path.moveTo(eventX, eventY);  // 将绘制起点移至触碰点
+                livePath.reset();
+                strokes.beginStroke();  // 开始新的一笔
+                strokeStarted = false;
+                simplifier.begin(eventX, eventY, event.getEventTime(), event.getPressure());  // 将绘制起点移至触碰点
                 return true;
             case MotionEvent.ACTION_MOVE:  // 手指在屏幕上移动
-                path.lineTo(eventX, eventY);  // 绘制线条
-                break;
             case MotionEvent.ACTION_UP:  // 手指离开屏幕
+                // 先按时间顺序使用上一帧以来被合并的历史采样，再使用当前采样
+                int historySize = event.getHistorySize();
+                for (int h = 0; h < historySize; h++) {
+                    simplifier.add(event.getHistoricalX(h), event.getHistoricalY(h),
+                            event.getHistoricalEventTime(h), event.getHistoricalPressure(h));
+                    inkMetrics.onSample(event.getHistoricalEventTime(h), receivedNanos);
+                }
+                if (event.getAction() == MotionEvent.ACTION_MOVE) {
+                    simplifier.add(eventX, eventY, event.getEventTime(), event.getPressure());  // 绘制线条
+                    inkMetrics.onSample(event.getEventTime(), receivedNanos);
+                    hasInk = true;
+                    updateLiveTail();
+                } else {
+                    simplifier.end();  // 最后一个采样点总是被保留
+                    finishStroke();  // 把剩余的线段写入墨迹位图
+                    inkMetrics.onStrokeEnd();
+                    hasInk |= historySize > 0;
+                }
                 break;
             default:
                 return false;
         }
 
-        invalidate();  // 通知视图重绘
+        flushDirty();  // 本次事件涉及的所有线段只请求一次重绘
         return true;
     }
 
+    /**
+     * 设置笔画简化的容差，容差越大保存和绘制的点越少。
+     * @param tolerance 被丢弃的采样点到简化后折线的最大距离（像素）
+     */
+    public void setSimplifyTolerance(float tolerance) {
+        simplifier.setTolerance(tolerance);
+    }
+
+    /**
+     * 接收简化后保留下来的采样点：以上一个保留点为控制点，把到两点中点为止的平滑曲线写入墨迹位图，
+     * 并把该点保存到矢量数据中。
+     * @param x 保留点的X坐标
+     * @param y 保留点的Y坐标
+     * @param time 保留点的事件时间
+     * @param pressure 保留点的压力
+     */
+    private void onKeptPoint(float x, float y, long time, float pressure) {
+        strokes.add(x, y, time, pressure);
+        if (!strokeStarted) {  // 一笔的第一个点只作为起点
+            lastX = midX = x;
+            lastY = midY = y;
+            strokeStarted = true;
+            return;
+        }
+
+        float newMidX = (lastX + x) / 2;
+        float newMidY = (lastY + y) / 2;
+
+        segmentPath.reset();
+        segmentPath.moveTo(midX, midY);
+        segmentPath.quadTo(lastX, lastY, newMidX, newMidY);
+        drawToInk(segmentPath);
+        dirty = true;
+
+        midX = newMidX;
+        midY = newMidY;
+        lastX = x;
+        lastY = y;
+    }
+
+    /**
+     * 重建实时线段：从已写入墨迹位图的终点经过最后一个保留点，连到窗口中尚未决定是否保留的采样点。
+     * 窗口长度有上限，因此每帧绘制的实时线段长度也有上限。
+     */
+    private void updateLiveTail() {
+        livePath.reset();
+        livePath.moveTo(midX, midY);
+        livePath.lineTo(lastX, lastY);
+        for (int i = 0; i < simplifier.getPendingCount(); i++) {
+            livePath.lineTo(simplifier.getPendingX(i), simplifier.getPendingY(i));
+        }
+        hasTail = true;
+        dirty = true;
+    }
+
+    /**
+     * 笔画结束时，把最后一段线段写入墨迹位图，并清除实时线段。
+     */
+    private void finishStroke() {
+        if (strokeStarted && (midX != lastX || midY != lastY)) {
+            segmentPath.reset();
+            segmentPath.moveTo(midX, midY);
+            segmentPath.lineTo(lastX, lastY);
+            drawToInk(segmentPath);
+            dirty = true;
+        }
+        if (hasTail) {
+            dirty = true;  // 擦除实时线段
+            hasTail = false;
+        }
+        livePath.reset();
+    }
+
+    /**
+     * 把路径绘制到墨迹位图中。
+     * @param segment 需要绘制的路径
+     */
+    private void drawToInk(Path segment) {
+        if (inkCanvas != null) {
+            inkCanvas.drawPath(segment, paint);
+        }
+    }
+
+    /**
+     * 本次事件改变了绘制内容时请求一次重绘。
+     */
+    private void flushDirty() {
+        if (dirty) {
+            invalidate();
+            dirty = false;
+        }
+    }
+
+    /**
+     * 获取输入到绘制的性能统计，可在测试或调试浮层中查询。
+     * @return 返回性能统计对象
+     */
+    public InkMetrics getInkMetrics() {
+        return inkMetrics;
+    }
+
     /**
      * 清除签名。
      */
     public void clear() {
-        path.reset();  // 重置路径
+        livePath.reset();  // 重置当前线段
+        hasTail = false;
+        if (inkBitmap != null) {
+            inkBitmap.eraseColor(Color.TRANSPARENT);  // 清空墨迹位图
+        }
+        strokes.clear();  // 清空矢量数据
+        hasInk = false;
         invalidate();  // 通知视图重绘
     }
 
+    /**
+     * 获取签名的矢量数据副本，可以安全地交给后台线程编码。
+     * @return 返回笔画数据的副本
+     */
+    public StrokeBuffer getStrokes() {
+        return strokes.copy();
+    }
+
     /**
      * 获取签名的位图。
      * @return 返回包含签名的位图
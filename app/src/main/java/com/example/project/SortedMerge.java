@@ -0,0 +1,56 @@
+package com.example.project;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * SortedMerge 类把增量变化（新增、修改和删除）合并到一个已排序、可能只加载了前几页的列表中。
+ */
+final class SortedMerge {
+
+    private SortedMerge() {
+    }
+
+    /**
+     * 合并增量变化。已加载的列表是完整排序结果的前缀，排在最后一项之后的变化属于还没有加载的页，
+     * 它们会在翻到那一页时被查到，因此在这里忽略，以免列表中间出现缺口。
+     * @param loaded 已加载的列表，按 order 排序
+     * @param changed 新增或修改的项
+     * @param deletedIds 被删除的项的ID
+     * @param complete 已加载的列表是否已经包含全部项
+     * @param idOf 取项的ID
+     * @param order 列表的排列顺序
+     * @param <T> 列表项的类型
+     * @return 返回合并后按 order 排序的新列表
+     */
+    static <T> List<T> merge(List<T> loaded, Collection<T> changed, Collection<Long> deletedIds, boolean complete,
+                             ToLongFunction<T> idOf, Comparator<? super T> order) {
+        T boundary = loaded.isEmpty() ? null : loaded.get(loaded.size() - 1);
+        Set<Long> removed = new HashSet<>(deletedIds);
+        for (T item : changed) {
+            removed.add(idOf.applyAsLong(item));  // 修改过的项先移除，再按新的内容插入
+        }
+        List<T> merged = new ArrayList<>(loaded.size() + changed.size());
+        for (T item : loaded) {
+            if (!removed.contains(idOf.applyAsLong(item))) {
+                merged.add(item);
+            }
+        }
+        Set<Long> deleted = new HashSet<>(deletedIds);
+        for (T item : changed) {
+            if (deleted.contains(idOf.applyAsLong(item))) {
+                continue;  // 查询之后又被删除
+            }
+            if (complete || boundary == null || order.compare(item, boundary) <= 0) {
+                merged.add(item);
+            }
+        }
+        merged.sort(order);  // 已加载的部分本来有序，TimSort 只需要合并插入的几项
+        return merged;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.project;
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * StageStats 类统计流水线中一个阶段的耗时分布（微秒）、处理的字节数和失败次数。
+ * 所有计数都是无锁的，可以在多个线程中同时记录。
+ */
+final class StageStats {
+
+    private final LatencyHistogram micros = new LatencyHistogram();  // 每次执行的耗时（微秒）
+    private final AtomicLong bytes = new AtomicLong();               // 处理的字节总数
+    private final AtomicLong failures = new AtomicLong();            // 失败次数
+
+    /**
+     * 记录一次成功的执行。
+     * @param durationNanos 耗时（纳秒）
+     * @param byteCount 处理的字节数，未知时为0
+     * @return 返回累计处理的字节数
+     */
+    long record(long durationNanos, long byteCount) {
+        micros.record(durationNanos / 1000);
+        return byteCount > 0 ? bytes.addAndGet(byteCount) : bytes.get();
+    }
+
+    /**
+     * 记录一次失败的执行，失败的耗时不计入分布。
+     */
+    void recordFailure() {
+        failures.incrementAndGet();
+    }
+
+    /**
+     * @return 返回耗时分布（微秒）
+     */
+    LatencyHistogram getMicros() {
+        return micros;
+    }
+
+    /**
+     * @return 返回处理的字节总数
+     */
+    long getBytes() {
+        return bytes.get();
+    }
+
+    /**
+     * @return 返回失败次数
+     */
+    long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * 清空所有统计数据。
+     */
+    void reset() {
+        micros.reset();
+        bytes.set(0);
+        failures.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "us[%s] bytes=%d failures=%d", micros, bytes.get(), failures.get());
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.project;
+
+import android.content.Context;
+import android.os.CancellationSignal;
+import android.util.Log;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+
+/**
+ * StartupPrewarmer 类利用生物识别提示显示的时间在后台预热应用：
+ * 完成加密提供者的查找并把 Cipher 放入对象池，打开密钥存储（包括迁移旧的 SharedPreferences）、加载主密钥，
+ * 并查询签名列表的第一页。
+ * 查询结果只保存在这里，验证成功调用 unlock 之后 SignaturePager 才能取走；验证失败或取消时 discard 丢弃结果。
+ * 应用首先显示的是 FilesFragment，签名列表要等用户切换到 SignFragment 才加载，因此结果不按时间过期，
+ * 而是一直保留到被取走，只在查询之后索引被修改过时作废。
+ * 所有方法都可以在任意线程调用，takeFirstPage 不会阻塞。
+ */
+public final class StartupPrewarmer {
+
+    private static final String TAG = "StartupPrewarmer";
+
+    // 以下字段由类锁保护
+    private static FutureTask<FirstPage> firstPage;  // 正在进行或已经完成的预热
+    private static CancellationSignal signal;         // 用于取消第一页的查询
+    private static boolean unlocked;                  // 验证是否已经成功
+
+    /**
+     * 预先查询的第一页和查询时索引的状态。
+     */
+    private static final class FirstPage {
+        final SignatureIndex index;
+        final long version;                  // 查询之前索引的修改次数
+        final List<SignatureRecord> records;
+
+        FirstPage(SignatureIndex index, long version, List<SignatureRecord> records) {
+            this.index = index;
+            this.version = version;
+            this.records = records;
+        }
+    }
+
+    private StartupPrewarmer() {
+    }
+
+    /**
+     * 在后台线程开始预热，丢弃之前的预热结果。
+     * @param context 任意上下文
+     */
+    public static synchronized void start(Context context) {
+        discard();
+        Context appContext = context.getApplicationContext();
+        CancellationSignal cancel = new CancellationSignal();
+        FutureTask<FirstPage> task = new FutureTask<>(() -> prewarm(appContext, cancel));
+        firstPage = task;
+        signal = cancel;
+        new Thread(task, "StartupPrewarm").start();
+    }
+
+    /**
+     * 验证成功后调用，允许取走预先查询的第一页。
+     */
+    public static synchronized void unlock() {
+        unlocked = firstPage != null;
+    }
+
+    /**
+     * 验证失败或取消时调用，取消正在进行的查询并丢弃结果。
+     */
+    public static synchronized void discard() {
+        if (signal != null) {
+            signal.cancel();
+        }
+        firstPage = null;
+        signal = null;
+        unlocked = false;
+    }
+
+    /**
+     * 取走预先查询的第一页（按 SignatureQuery.ALL 排序，至多 SignaturePager.PAGE_SIZE 项），只能取一次。
+     * @return 返回第一页；验证尚未成功、查询尚未完成、查询失败或查询之后索引被修改过时返回 null，调用者应当自己查询
+     */
+    static synchronized List<SignatureRecord> takeFirstPage() {
+        FutureTask<FirstPage> task = firstPage;
+        boolean released = unlocked;
+        discard();
+        if (task == null || !released || !task.isDone()) {
+            return null;
+        }
+        try {
+            FirstPage page = task.get();
+            return page.index.modificationCount() == page.version ? page.records : null;
+        } catch (ExecutionException | InterruptedException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 依次预热加密、密钥和签名索引，前面的步骤失败不影响后面的步骤。
+     */
+    private static FirstPage prewarm(Context context, CancellationSignal cancel) {
+        try {
+            Cipher cipher = CipherEngine.obtain(AESUtil.STREAM_TRANSFORMATION);
+            CipherEngine.recycle(AESUtil.STREAM_TRANSFORMATION, cipher);  // 放入对象池，第一次加解密直接取用
+            KeyGenerator.getInstance(AESUtil.ALGORITHM);                  // 提供者的查找结果会被缓存
+            new SecureRandom().nextBytes(new byte[AESUtil.GCM_IV_LENGTH]);  // 提前完成随机数生成器的播种
+        } catch (GeneralSecurityException e) {
+            Log.w(TAG, "预热加密提供者失败", e);
+        }
+        try {
+            KeyStores.get(context);
+        } catch (IOException e) {
+            Log.w(TAG, "打开密钥存储失败", e);
+        }
+        try {
+            KeystoreMasterKey.get();
+        } catch (GeneralSecurityException e) {
+            Log.w(TAG, "加载主密钥失败", e);
+        }
+        SignatureIndex index = SignatureIndex.get(context);
+        long version = index.modificationCount();  // 在查询之前读取，查询期间的修改也会使结果作废
+        return new FirstPage(index, version, index.query(SignatureQuery.ALL, null, SignaturePager.PAGE_SIZE, cancel));
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.project;
+
+import java.util.Arrays;
+
+/**
+ * StrokeBuffer 类用基本类型数组保存签名的所有笔画采样点（坐标、时间和压力）。
+ * 数组按需成倍扩容，添加采样点不会产生额外的对象，也不依赖 android.graphics.Path，
+ * 因此既可以在任意线程中编码保存，也可以在显示时按任意尺寸重新绘制。
+ */
+public class StrokeBuffer {
+
+    private float[] xs = new float[256];        // 各采样点的X坐标
+    private float[] ys = new float[256];        // 各采样点的Y坐标
+    private float[] pressures = new float[256]; // 各采样点的压力，范围0到1
+    private long[] times = new long[256];       // 各采样点的时间（毫秒）
+    private int size;                           // 采样点总数
+
+    private int[] strokeStarts = new int[16];   // 每一笔第一个采样点的下标
+    private int strokeCount;                    // 笔画数
+
+    private int canvasWidth;                    // 采集时画布的宽度
+    private int canvasHeight;                   // 采集时画布的高度
+
+    /**
+     * 开始新的一笔，之后添加的采样点都属于这一笔。
+     */
+    public void beginStroke() {
+        if (strokeCount > 0 && strokeStarts[strokeCount - 1] == size) {
+            return;  // 上一笔没有任何采样点，直接复用
+        }
+        if (strokeCount == strokeStarts.length) {
+            strokeStarts = Arrays.copyOf(strokeStarts, strokeCount * 2);
+        }
+        strokeStarts[strokeCount++] = size;
+    }
+
+    /**
+     * 向当前笔画添加一个采样点。
+     * @param x X坐标
+     * @param y Y坐标
+     * @param time 采样时间（毫秒）
+     * @param pressure 压力，范围0到1
+     */
+    public void add(float x, float y, long time, float pressure) {
+        if (strokeCount == 0) {
+            beginStroke();
+        }
+        if (size == xs.length) {
+            int capacity = size * 2;
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            pressures = Arrays.copyOf(pressures, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+        xs[size] = x;
+        ys[size] = y;
+        times[size] = time;
+        pressures[size] = pressure;
+        size++;
+    }
+
+    /**
+     * 清除所有笔画。
+     */
+    public void clear() {
+        size = 0;
+        strokeCount = 0;
+    }
+
+    /**
+     * 复制当前的全部笔画，用于交给后台线程处理。
+     * @return 返回新的 StrokeBuffer
+     */
+    public StrokeBuffer copy() {
+        StrokeBuffer copy = new StrokeBuffer();
+        int capacity = Math.max(size, 1);
+        copy.xs = Arrays.copyOf(xs, capacity);
+        copy.ys = Arrays.copyOf(ys, capacity);
+        copy.pressures = Arrays.copyOf(pressures, capacity);
+        copy.times = Arrays.copyOf(times, capacity);
+        copy.size = size;
+        copy.strokeStarts = Arrays.copyOf(strokeStarts, Math.max(strokeCount, 1));
+        copy.strokeCount = strokeCount;
+        copy.canvasWidth = canvasWidth;
+        copy.canvasHeight = canvasHeight;
+        return copy;
+    }
+
+    /**
+     * 设置采集时画布的尺寸。
+     * @param width 宽度
+     * @param height 高度
+     */
+    public void setCanvasSize(int width, int height) {
+        canvasWidth = width;
+        canvasHeight = height;
+    }
+
+    public int getCanvasWidth() {
+        return canvasWidth;
+    }
+
+    public int getCanvasHeight() {
+        return canvasHeight;
+    }
+
+    /**
+     * @return 返回采样点总数
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return 返回笔画数
+     */
+    public int getStrokeCount() {
+        return strokeCount;
+    }
+
+    /**
+     * @param stroke 笔画序号
+     * @return 返回该笔第一个采样点的下标
+     */
+    public int getStrokeStart(int stroke) {
+        return strokeStarts[stroke];
+    }
+
+    /**
+     * @param stroke 笔画序号
+     * @return 返回该笔最后一个采样点之后的下标
+     */
+    public int getStrokeEnd(int stroke) {
+        return stroke + 1 < strokeCount ? strokeStarts[stroke + 1] : size;
+    }
+
+    public float getX(int index) {
+        return xs[index];
+    }
+
+    public float getY(int index) {
+        return ys[index];
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public float getPressure(int index) {
+        return pressures[index];
+    }
+
+    /**
+     * 计算所有采样点的包围盒。
+     * @param out 长度为4的数组，依次写入 left、top、right、bottom
+     * @return 如果没有采样点返回 false
+     */
+    public boolean getBounds(float[] out) {
+        if (size == 0) {
+            return false;
+        }
+        float left = xs[0], top = ys[0], right = xs[0], bottom = ys[0];
+        for (int i = 1; i < size; i++) {
+            left = Math.min(left, xs[i]);
+            right = Math.max(right, xs[i]);
+            top = Math.min(top, ys[i]);
+            bottom = Math.max(bottom, ys[i]);
+        }
+        out[0] = left;
+        out[1] = top;
+        out[2] = right;
+        out[3] = bottom;
+        return true;
+    }
+}
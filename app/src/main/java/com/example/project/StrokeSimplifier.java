@@ -0,0 +1,154 @@
+package com.example.project;
+
+/**
+ * StrokeSimplifier 类在采集过程中增量地简化笔画，是 Ramer–Douglas–Peucker 算法的在线（开窗）版本。
+ * 从上一个保留点开始维护一个窗口，新采样点到来时检查窗口内所有被跳过的点到“保留点—新采样点”线段的距离，
+ * 只要都不超过容差就继续扩大窗口；一旦超过，就把窗口中的最后一个点作为新的保留点输出。
+ * 因此每个被丢弃的采样点到相邻两个保留点之间线段的距离都不超过容差。
+ * 窗口长度有上限，每个采样点的处理开销是常数。保留点之间的平滑由绘制时的二次贝塞尔曲线完成。
+ */
+public class StrokeSimplifier {
+
+    /**
+     * 接收保留点的回调。
+     */
+    public interface Sink {
+        /**
+         * 输出一个保留点。
+         * @param x X坐标
+         * @param y Y坐标
+         * @param time 采样时间
+         * @param pressure 压力
+         */
+        void onPoint(float x, float y, long time, float pressure);
+    }
+
+    // 窗口中最多容纳的采样点数，达到上限时强制输出保留点
+    static final int MAX_WINDOW = 64;
+
+    private final Sink sink;                 // 保留点的接收者
+    private float tolerance;                 // 容差（像素）
+
+    private float anchorX, anchorY;          // 上一个保留点
+    private final float[] windowX = new float[MAX_WINDOW];      // 窗口中尚未决定是否保留的采样点
+    private final float[] windowY = new float[MAX_WINDOW];
+    private final long[] windowTime = new long[MAX_WINDOW];
+    private final float[] windowPressure = new float[MAX_WINDOW];
+    private int windowSize;                  // 窗口中的采样点数
+    private boolean active;                  // 是否处于一笔之中
+
+    /**
+     * 构造函数。
+     * @param tolerance 容差，即被丢弃的采样点到简化后折线的最大距离（像素）
+     * @param sink 保留点的接收者
+     */
+    public StrokeSimplifier(float tolerance, Sink sink) {
+        this.sink = sink;
+        setTolerance(tolerance);
+    }
+
+    /**
+     * 设置容差，容差为0时保留所有不共线的采样点。
+     * @param tolerance 容差（像素）
+     */
+    public void setTolerance(float tolerance) {
+        this.tolerance = Math.max(0f, tolerance);
+    }
+
+    public float getTolerance() {
+        return tolerance;
+    }
+
+    /**
+     * 开始新的一笔，第一个采样点总是被保留。
+     */
+    public void begin(float x, float y, long time, float pressure) {
+        windowSize = 0;
+        active = true;
+        anchorX = x;
+        anchorY = y;
+        sink.onPoint(x, y, time, pressure);
+    }
+
+    /**
+     * 添加一个采样点，可能会输出一个保留点。
+     */
+    public void add(float x, float y, long time, float pressure) {
+        if (!active) {
+            begin(x, y, time, pressure);
+            return;
+        }
+        if (windowSize > 0 && !fitsWithin(x, y)) {
+            emitLast();  // 窗口中的最后一个点无法被跳过，把它作为新的保留点
+        } else if (windowSize == MAX_WINDOW) {
+            emitLast();  // 窗口已满，强制输出以保证每个采样点的开销有上限
+        }
+        windowX[windowSize] = x;
+        windowY[windowSize] = y;
+        windowTime[windowSize] = time;
+        windowPressure[windowSize] = pressure;
+        windowSize++;
+    }
+
+    /**
+     * 结束当前这一笔，最后一个采样点总是被保留。
+     */
+    public void end() {
+        if (active && windowSize > 0) {
+            emitLast();
+        }
+        active = false;
+    }
+
+    /**
+     * @return 返回窗口中尚未决定是否保留的采样点数，这些点需要作为实时线段绘制
+     */
+    public int getPendingCount() {
+        return windowSize;
+    }
+
+    public float getPendingX(int index) {
+        return windowX[index];
+    }
+
+    public float getPendingY(int index) {
+        return windowY[index];
+    }
+
+    /**
+     * 检查窗口中所有点到“保留点—新采样点”线段的距离是否都在容差之内。
+     */
+    private boolean fitsWithin(float x, float y) {
+        for (int i = 0; i < windowSize; i++) {
+            if (segmentDistance(windowX[i], windowY[i], anchorX, anchorY, x, y) > tolerance) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 输出窗口中的最后一个点作为保留点，并以它为新的起点清空窗口。
+     */
+    private void emitLast() {
+        int last = windowSize - 1;
+        anchorX = windowX[last];
+        anchorY = windowY[last];
+        windowSize = 0;
+        sink.onPoint(anchorX, anchorY, windowTime[last], windowPressure[last]);
+    }
+
+    /**
+     * 计算点到线段的距离。
+     */
+    static float segmentDistance(float px, float py, float ax, float ay, float bx, float by) {
+        float dx = bx - ax;
+        float dy = by - ay;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0 ? 0 : ((px - ax) * dx + (py - ay) * dy) / lengthSquared;
+        t = Math.max(0f, Math.min(1f, t));
+        float cx = ax + t * dx - px;
+        float cy = ay + t * dy - py;
+        return (float) Math.sqrt(cx * cx + cy * cy);
+    }
+}
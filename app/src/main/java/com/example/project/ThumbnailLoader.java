@@ -0,0 +1,265 @@
+package com.example.project;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Color;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.ImageView;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * ThumbnailLoader 类在后台线程中为签名列表加载缩略图并绑定到列表项的 ImageView。
+ * 缩略图先查内存缓存（SignatureCache），再查加密的磁盘缓存（ThumbnailStore），都没有时才解密原文件生成，
+ * 矢量签名直接按缩略图尺寸绘制，普通图片按采样率解码，生成后写入磁盘缓存，以后滚动列表不再解密原文件。
+ * 列表项被复用或重新绑定时取消旧的请求，过期的结果不会显示到错误的行上。
+ */
+public final class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+
+    static final int THUMBNAIL_SIZE = 128;                       // 缩略图的最大边长（像素）
+    static final String THUMBNAIL_KEY_NAME = ".thumbnail_cache_key";  // 缩略图缓存密钥在密钥存储中的保留名称
+    private static final String DIRECTORY = "thumbnails";        // 应用私有缓存目录下的子目录
+    private static final long MAX_DISK_BYTES = 16L * 1024 * 1024;
+    private static final int THREAD_COUNT = 2;
+
+    private static volatile ThumbnailLoader instance;
+
+    private final Context context;
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);  // 加载缩略图的后台线程池
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());              // 把结果发送到主线程
+    private ThumbnailStore store;  // 只在后台线程中第一次使用时打开
+
+    /**
+     * 一个 ImageView 当前的加载请求，保存在 ImageView 的 tag 中。
+     */
+    private static final class Request {
+        final Uri uri;
+        final String cacheKey;  // 未知时为 null
+        volatile boolean cancelled;
+        Future<?> future;
+        Bitmap bitmap;  // 已显示并被钉住的缩略图
+
+        Request(Uri uri, String cacheKey) {
+            this.uri = uri;
+            this.cacheKey = cacheKey;
+        }
+
+        boolean isFor(Uri uri, String cacheKey) {
+            return !cancelled && this.uri.equals(uri) && Objects.equals(this.cacheKey, cacheKey);
+        }
+    }
+
+    private ThumbnailLoader(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    /**
+     * 获取全局唯一的缩略图加载器。
+     * @param context 任意上下文
+     * @return 返回缩略图加载器
+     */
+    public static ThumbnailLoader get(Context context) {
+        if (instance == null) {
+            synchronized (ThumbnailLoader.class) {
+                if (instance == null) {
+                    instance = new ThumbnailLoader(context);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 把签名文件的缩略图绑定到 ImageView，必须在主线程调用。同一个 ImageView 上的旧请求会被取消。
+     * @param view 列表项中的 ImageView
+     * @param uri 签名文件
+     */
+    public void bind(ImageView view, Uri uri) {
+        bind(view, uri, null);
+    }
+
+    /**
+     * 把签名文件的缩略图绑定到 ImageView，必须在主线程调用。已知缓存键时不需要为每一行查询文件的修改时间和大小。
+     * @param view 列表项中的 ImageView
+     * @param uri 签名文件
+     * @param cacheKey SignatureCache.keyFor 格式的缓存键，未知时为 null
+     */
+    public void bind(ImageView view, Uri uri, String cacheKey) {
+        Object tag = view.getTag();
+        if (tag instanceof Request && ((Request) tag).isFor(uri, cacheKey)) {
+            return;  // 同一行重新绑定到同一个没有变化的文件，保留已有的请求或缩略图
+        }
+        cancel(view);
+        Request request = new Request(uri, cacheKey);
+        view.setTag(request);
+        SignatureCache cache = SignatureCache.get(context);
+        request.future = executor.submit(() -> {
+            if (request.cancelled) {
+                return;  // 快速滚动时大部分请求在开始之前就已过期
+            }
+            Bitmap bitmap = null;
+            try {
+                bitmap = load(cache, uri, cacheKey, request);
+            } catch (Exception e) {
+                Log.w(TAG, "无法加载缩略图: " + uri, e);
+            }
+            if (bitmap == null) {
+                return;
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> {
+                if (request.cancelled || view.getTag() != request) {
+                    cache.unpin(result);
+                    return;
+                }
+                request.bitmap = result;
+                view.setImageBitmap(result);
+            });
+        });
+    }
+
+    /**
+     * 取消 ImageView 上的请求并清除显示的缩略图，在列表项被复用时调用，必须在主线程调用。
+     * @param view 列表项中的 ImageView
+     */
+    public void cancel(ImageView view) {
+        Object tag = view.getTag();
+        if (!(tag instanceof Request)) {
+            return;
+        }
+        Request request = (Request) tag;
+        request.cancelled = true;
+        if (request.future != null) {
+            request.future.cancel(false);  // 不中断正在写入磁盘缓存的任务
+        }
+        view.setImageDrawable(null);
+        view.setTag(null);
+        if (request.bitmap != null) {
+            SignatureCache.get(context).unpin(request.bitmap);
+            request.bitmap = null;
+        }
+    }
+
+    /**
+     * 删除已删除签名的磁盘缓存缩略图，必须在后台线程调用。内存缓存中的缩略图随 LRU 淘汰。
+     * @param cacheKeys 缩略图的缓存键
+     */
+    public void evict(Collection<String> cacheKeys) {
+        try {
+            ThumbnailStore store = getStore();
+            for (String key : cacheKeys) {
+                if (key != null) {
+                    store.remove(key);
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "无法删除缩略图缓存", e);  // 留给 LRU 淘汰
+        }
+    }
+
+    /**
+     * 按内存缓存、磁盘缓存、原文件的顺序加载缩略图，在后台线程中调用。
+     * 返回的位图已经钉住，在主线程显示之前不会被淘汰时擦除。
+     */
+    private Bitmap load(SignatureCache cache, Uri uri, String cacheKey, Request request) throws Exception {
+        String key = cacheKey != null ? cacheKey : SignatureCache.keyFor(context, uri, THUMBNAIL_SIZE);
+        Bitmap bitmap = cache.acquire(key);
+        if (bitmap != null) {
+            return bitmap;
+        }
+        ThumbnailStore store = getStore();
+        byte[] encoded = store.get(key);
+        if (encoded != null) {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inMutable = true;  // 可变位图才能在淘汰时擦除像素
+            bitmap = BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+            AESUtil.wipe(encoded);
+        }
+        if (bitmap == null) {
+            if (request.cancelled) {
+                return null;  // 生成缩略图需要解密原文件，已过期的请求不再生成
+            }
+            bitmap = generate(store, key, uri);
+        }
+        if (bitmap != null) {
+            cache.putAndPin(key, bitmap);
+        }
+        return bitmap;
+    }
+
+    /**
+     * 解密原文件生成缩略图并写入磁盘缓存。
+     */
+    private Bitmap generate(ThumbnailStore store, String key, Uri uri) throws Exception {
+        Bitmap decoded = SignatureDecoder.decode(() -> SignatureVault.openDecrypted(context, uri), THUMBNAIL_SIZE, THUMBNAIL_SIZE);
+        if (decoded == null) {
+            return null;
+        }
+        Bitmap thumbnail = scaleToFit(decoded);
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        thumbnail.compress(Bitmap.CompressFormat.PNG, 100, encoded);  // 缩略图很小，无损压缩即可
+        byte[] data = encoded.toByteArray();
+        try {
+            store.put(key, data);
+        } catch (IOException e) {
+            Log.w(TAG, "无法写入缩略图缓存", e);  // 只影响下次加载的速度
+        } finally {
+            AESUtil.wipe(data);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * 把采样解码后仍然偏大的位图缩小到缩略图尺寸，并擦除中间位图。
+     */
+    private static Bitmap scaleToFit(Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        if (width <= THUMBNAIL_SIZE && height <= THUMBNAIL_SIZE) {
+            return bitmap;
+        }
+        float scale = Math.min((float) THUMBNAIL_SIZE / width, (float) THUMBNAIL_SIZE / height);
+        Bitmap scaled = Bitmap.createScaledBitmap(bitmap, Math.max(1, Math.round(width * scale)),
+                Math.max(1, Math.round(height * scale)), true);
+        if (scaled != bitmap) {
+            if (bitmap.isMutable()) {
+                bitmap.eraseColor(Color.TRANSPARENT);  // 不在内存中残留明文像素
+            }
+            bitmap.recycle();
+        }
+        return scaled;
+    }
+
+    /**
+     * 打开磁盘缓存，第一次使用时生成缩略图缓存的密钥并保存在密钥存储中。
+     */
+    private synchronized ThumbnailStore getStore() throws Exception {
+        if (store == null) {
+            KeyStoreEngine keyStore = KeyStores.get(context);
+            byte[] keyBytes = keyStore.get(THUMBNAIL_KEY_NAME);
+            if (keyBytes == null) {
+                keyBytes = AESUtil.generateKey().getEncoded();
+                keyStore.put(THUMBNAIL_KEY_NAME, keyBytes);
+            }
+            SecretKey key = new SecretKeySpec(keyBytes, AESUtil.ALGORITHM);
+            store = new ThumbnailStore(new File(context.getCacheDir(), DIRECTORY), MAX_DISK_BYTES, key);
+        }
+        return store;
+    }
+}
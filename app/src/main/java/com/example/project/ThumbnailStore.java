@@ -0,0 +1,189 @@
+package com.example.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import javax.crypto.SecretKey;
+
+/**
+ * ThumbnailStore 类是应用私有目录下的缩略图磁盘缓存，每个条目用 AESUtil 的分块流单独加密。
+ * 条目的文件名是缓存键的 SHA-256，不会泄露签名文件名；读取时更新文件的修改时间，
+ * 总大小超过上限时按修改时间淘汰最久未使用的条目。无法解密的条目（密钥已更换或文件损坏）被当作不存在并删除。
+ */
+final class ThumbnailStore {
+
+    private static final String ENTRY_SUFFIX = ".thumb";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    private final SecretKey key;
+    private long sizeBytes = -1;  // 条目总大小，第一次使用时统计
+
+    /**
+     * 创建缩略图缓存。
+     * @param directory 缓存目录，不存在时创建
+     * @param maxBytes 缓存总大小的上限
+     * @param key 加密条目的密钥
+     */
+    ThumbnailStore(File directory, long maxBytes, SecretKey key) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.key = key;
+    }
+
+    /**
+     * 读取并解密一个条目。
+     * @param cacheKey 缓存键
+     * @return 返回明文，不存在或无法解密时返回 null
+     */
+    synchronized byte[] get(String cacheKey) {
+        File file = fileFor(cacheKey);
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = AESUtil.newDecryptingStream(new FileInputStream(file), key)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            file.setLastModified(System.currentTimeMillis());  // 记录最近使用时间
+            return out.toByteArray();
+        } catch (IOException e) {
+            remove(file);  // 损坏或用旧密钥加密的条目
+            return null;
+        }
+    }
+
+    /**
+     * 加密并保存一个条目，先写临时文件再重命名，进程被杀死时不会留下半个条目。
+     * @param cacheKey 缓存键
+     * @param data 明文
+     * @throws IOException 写入失败时抛出
+     */
+    synchronized void put(String cacheKey, byte[] data) throws IOException {
+        ensureSized();
+        File file = fileFor(cacheKey);
+        File temp = new File(directory, file.getName() + TEMP_SUFFIX);
+        try (OutputStream out = AESUtil.newEncryptingStream(new FileOutputStream(temp), key)) {
+            out.write(data);
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        remove(file);
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("无法写入缩略图: " + file);
+        }
+        sizeBytes += file.length();
+        trimToSize(maxBytes);
+    }
+
+    /**
+     * 删除一个条目。
+     * @param cacheKey 缓存键
+     */
+    synchronized void remove(String cacheKey) {
+        ensureSized();
+        remove(fileFor(cacheKey));
+    }
+
+    /**
+     * 删除所有条目。
+     */
+    synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        sizeBytes = 0;
+    }
+
+    /**
+     * @return 返回所有条目的总字节数
+     */
+    synchronized long sizeBytes() {
+        ensureSized();
+        return sizeBytes;
+    }
+
+    /**
+     * 按最近使用时间从旧到新删除条目，直到总大小不超过上限。
+     */
+    private void trimToSize(long limit) {
+        if (sizeBytes <= limit) {
+            return;
+        }
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(ENTRY_SUFFIX));
+        if (entries == null) {
+            return;
+        }
+        long[] modified = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            modified[i] = entries[i].lastModified();  // 排序前取一次，避免比较时反复访问文件系统
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> modified[i]));
+        for (int i = 0; i < order.length && sizeBytes > limit; i++) {
+            remove(entries[order[i]]);
+        }
+    }
+
+    private void remove(File file) {
+        long length = file.length();
+        if (file.delete() && sizeBytes >= 0) {
+            sizeBytes -= length;
+        }
+    }
+
+    /**
+     * 第一次使用时创建目录、删除上次留下的临时文件并统计条目总大小。
+     */
+    private void ensureSized() {
+        if (sizeBytes >= 0) {
+            return;
+        }
+        directory.mkdirs();
+        long total = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(ENTRY_SUFFIX)) {
+                    total += file.length();
+                } else {
+                    file.delete();
+                }
+            }
+        }
+        sizeBytes = total;
+    }
+
+    private File fileFor(String cacheKey) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(cacheKey.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + ENTRY_SUFFIX.length());
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return new File(directory, name.append(ENTRY_SUFFIX).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
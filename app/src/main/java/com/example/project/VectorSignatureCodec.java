@@ -0,0 +1,179 @@
+package com.example.project;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * VectorSignatureCodec 类负责签名矢量格式的编码和解码。
+ * 坐标量化到1/8像素后按与前一个采样点的差值保存，时间保存为与前一个采样点的毫秒差，
+ * 差值经过 zigzag 变换后以变长整数写出，一般的签名只需要几KB。
+ *
+ * 格式：
+ * <pre>
+ * magic "SFVG"(4) | version(1) | 画布宽度 | 画布高度 | 起始时间 | 笔画数
+ * 每一笔：采样点数 | 每个采样点：dx | dy | dt | 压力(1字节)
+ * </pre>
+ * 除压力外的数值都是变长整数。
+ */
+public final class VectorSignatureCodec {
+
+    // 矢量格式的魔数和版本号
+    static final byte[] MAGIC = {'S', 'F', 'V', 'G'};
+    private static final int VERSION = 1;
+
+    // 坐标的量化精度：每像素8个单位
+    private static final float COORDINATE_SCALE = 8f;
+
+    // 解码时允许的最大笔画数和采样点数，防止损坏的数据耗尽内存
+    private static final int MAX_STROKES = 1 << 16;
+    private static final int MAX_POINTS = 1 << 22;
+
+    private VectorSignatureCodec() {
+    }
+
+    /**
+     * 把笔画编码为矢量格式并写入输出流。
+     * @param strokes 需要编码的笔画
+     * @param out 输出流，例如加密输出流
+     * @throws IOException 写入失败时抛出
+     */
+    public static void encode(StrokeBuffer strokes, OutputStream out) throws IOException {
+        out.write(MAGIC);
+        out.write(VERSION);
+        writeVarint(out, strokes.getCanvasWidth());
+        writeVarint(out, strokes.getCanvasHeight());
+        long previousTime = strokes.size() > 0 ? strokes.getTime(0) : 0;
+        writeVarint(out, previousTime);
+
+        int strokeCount = strokes.getStrokeCount();
+        writeVarint(out, strokeCount);
+        int previousX = 0;
+        int previousY = 0;
+        for (int stroke = 0; stroke < strokeCount; stroke++) {
+            int start = strokes.getStrokeStart(stroke);
+            int end = strokes.getStrokeEnd(stroke);
+            writeVarint(out, end - start);
+            for (int i = start; i < end; i++) {
+                int x = Math.round(strokes.getX(i) * COORDINATE_SCALE);
+                int y = Math.round(strokes.getY(i) * COORDINATE_SCALE);
+                long time = strokes.getTime(i);
+                writeVarint(out, zigzag(x - previousX));
+                writeVarint(out, zigzag(y - previousY));
+                writeVarint(out, zigzag(time - previousTime));
+                out.write(Math.round(Math.max(0f, Math.min(1f, strokes.getPressure(i))) * 255));
+                previousX = x;
+                previousY = y;
+                previousTime = time;
+            }
+        }
+    }
+
+    /**
+     * 从输入流中解码矢量签名。输入流必须位于魔数之前。
+     * @param in 输入流，例如解密输入流
+     * @return 返回解码得到的笔画
+     * @throws IOException 数据无效或读取失败时抛出
+     */
+    public static StrokeBuffer decode(InputStream in) throws IOException {
+        for (byte b : MAGIC) {
+            if (readByte(in) != (b & 0xFF)) {
+                throw new IOException("不是矢量签名数据");
+            }
+        }
+        int version = readByte(in);
+        if (version != VERSION) {
+            throw new IOException("不支持的矢量签名版本: " + version);
+        }
+        StrokeBuffer strokes = new StrokeBuffer();
+        strokes.setCanvasSize(readInt(in), readInt(in));
+        long time = readVarint(in);
+
+        int strokeCount = readInt(in);
+        if (strokeCount > MAX_STROKES) {
+            throw new IOException("笔画数无效: " + strokeCount);
+        }
+        int x = 0;
+        int y = 0;
+        int total = 0;
+        for (int stroke = 0; stroke < strokeCount; stroke++) {
+            int points = readInt(in);
+            total += points;
+            if (points > MAX_POINTS || total > MAX_POINTS) {
+                throw new IOException("采样点数无效: " + points);
+            }
+            strokes.beginStroke();
+            for (int i = 0; i < points; i++) {
+                x += (int) unzigzag(readVarint(in));
+                y += (int) unzigzag(readVarint(in));
+                time += unzigzag(readVarint(in));
+                float pressure = readByte(in) / 255f;
+                strokes.add(x / COORDINATE_SCALE, y / COORDINATE_SCALE, time, pressure);
+            }
+        }
+        return strokes;
+    }
+
+    /**
+     * 判断数据开头是否为矢量签名的魔数。
+     * @param header 数据开头的字节
+     * @param length 有效字节数
+     * @return 如果是矢量签名返回 true
+     */
+    public static boolean isVectorSignature(byte[] header, int length) {
+        if (length < MAGIC.length) {
+            return false;
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte(in);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("变长整数格式错误");
+    }
+
+    private static int readInt(InputStream in) throws IOException {
+        long value = readVarint(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("数值超出范围: " + value);
+        }
+        return (int) value;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException("矢量签名数据不完整");
+        }
+        return b;
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.project;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * ZipExportEngine 类把多个条目并行生成后写入同一个 ZIP 文件。
+ * 条目（例如解密后的签名）在工作线程池中并行生成，ZIP 只由调用 run 的线程按完成顺序写入。
+ * 同时在生成或等待写入的条目最多 maxInFlight 个，写入跟不上时不再派发新的条目，
+ * 因此内存占用与 maxInFlight 乘以单个条目的大小成正比，而与条目总数无关。
+ * 已经压缩过的图片（PNG、WebP、JPEG）不再压缩，直接存储，写入线程不会成为瓶颈。
+ */
+final class ZipExportEngine {
+
+    /**
+     * 生成一个条目，在工作线程中调用。
+     */
+    interface Job {
+        /**
+         * @return 返回条目的名称和数据
+         * @throws Exception 生成失败时抛出，只跳过这一个条目
+         */
+        Entry produce() throws Exception;
+    }
+
+    /**
+     * 导出进度的回调，在写入线程中调用。
+     */
+    interface Progress {
+        /**
+         * @param completed 已经处理完的条目数（包括失败的）
+         * @param failed 失败的条目数
+         * @param total 条目总数
+         */
+        void onProgress(int completed, int failed, int total);
+    }
+
+    /**
+     * 一个 ZIP 条目。写入后数据会被擦除。
+     */
+    static final class Entry {
+        final String name;  // 条目名称
+        final byte[] data;  // 条目数据
+
+        Entry(String name, byte[] data) {
+            this.name = name;
+            this.data = data;
+        }
+    }
+
+    /**
+     * 导出的结果。
+     */
+    static final class Result {
+        final int exported;         // 写入 ZIP 的条目数
+        final List<Integer> failed; // 生成失败的条目的序号
+        final boolean cancelled;    // 是否被取消，取消时 ZIP 不完整
+
+        Result(int exported, List<Integer> failed, boolean cancelled) {
+            this.exported = exported;
+            this.failed = failed;
+            this.cancelled = cancelled;
+        }
+    }
+
+    // 一个条目生成完成（或失败）的通知
+    private static final class Done {
+        final int index;
+        final Entry entry;  // 失败时为 null
+
+        Done(int index, Entry entry) {
+            this.index = index;
+            this.entry = entry;
+        }
+    }
+
+    private static final Done CANCELLED = new Done(-1, null);  // 唤醒写入线程的取消标记
+
+    private final ExecutorService workers;
+    private final int maxInFlight;
+    private final BlockingQueue<Done> done = new LinkedBlockingQueue<>();
+    private volatile boolean cancelled;
+
+    /**
+     * 构造函数。
+     * @param workers 生成条目的线程池
+     * @param maxInFlight 同时在生成或等待写入的条目数上限
+     */
+    ZipExportEngine(ExecutorService workers, int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("maxInFlight 必须为正数");
+        }
+        this.workers = workers;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * 取消导出，可以在任意线程调用。正在生成的条目完成后直接丢弃，run 尽快返回。
+     */
+    void cancel() {
+        cancelled = true;
+        done.offer(CANCELLED);
+    }
+
+    /**
+     * 生成所有条目并写入 ZIP，阻塞直到完成或取消。输出流只在这个线程中写入，结束后关闭。
+     * @param jobs 要导出的条目
+     * @param out ZIP 的输出流，例如 SAF 文档的输出流
+     * @param progress 进度回调，可以为 null
+     * @return 返回导出结果
+     * @throws IOException 写入 ZIP 失败时抛出
+     * @throws InterruptedException 等待时被中断时抛出
+     */
+    Result run(List<? extends Job> jobs, OutputStream out, Progress progress) throws IOException, InterruptedException {
+        int total = jobs.size();
+        List<Future<?>> futures = new ArrayList<>(total);
+        List<Integer> failed = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        int submitted = 0;
+        int completed = 0;
+        int exported = 0;
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            while (completed < total && !cancelled) {
+                // 只在有空位时派发，写入跟不上时工作线程空闲等待，内存不会增长
+                while (submitted < total && submitted - completed < maxInFlight) {
+                    int index = submitted++;
+                    Job job = jobs.get(index);
+                    futures.add(workers.submit(() -> produce(index, job)));
+                }
+                Done next = done.take();
+                if (next == CANCELLED) {
+                    break;
+                }
+                completed++;
+                if (next.entry == null) {
+                    failed.add(next.index);
+                } else {
+                    try {
+                        write(zip, uniqueName(names, next.entry.name), next.entry.data);
+                        exported++;
+                    } finally {
+                        AESUtil.wipe(next.entry.data);
+                    }
+                }
+                if (progress != null) {
+                    progress.onProgress(completed, failed.size(), total);
+                }
+            }
+            if (cancelled) {
+                return new Result(exported, failed, true);
+            }
+        } finally {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            // 丢弃已经生成但没有写入的条目
+            for (Done leftover; (leftover = done.poll()) != null; ) {
+                if (leftover.entry != null) {
+                    AESUtil.wipe(leftover.entry.data);
+                }
+            }
+        }
+        return new Result(exported, failed, false);
+    }
+
+    private void produce(int index, Job job) {
+        Entry entry = null;
+        try {
+            if (!cancelled) {
+                entry = job.produce();
+            }
+        } catch (Exception e) {
+            // 只跳过这一个条目
+        } finally {
+            done.offer(new Done(index, entry));  // 抛出 Error（例如解码大图时内存不足）时也要通知写入线程，否则它会一直等待
+        }
+    }
+
+    /**
+     * 写入一个条目。已压缩的图片使用 STORED，数据已经在内存中，可以直接计算 CRC。
+     */
+    private static void write(ZipOutputStream zip, String name, byte[] data) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (imageExtension(data) != null) {
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, data.length);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zip.putNextEntry(entry);
+        zip.write(data);
+        zip.closeEntry();
+    }
+
+    /**
+     * 同名的条目在扩展名之前加上序号，例如 a.png、a (2).png。
+     */
+    static String uniqueName(Set<String> used, String name) {
+        if (used.add(name)) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            String candidate = base + " (" + i + ")" + extension;
+            if (used.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * 按文件头识别已经压缩过的图片格式。
+     * @param data 文件数据
+     * @return 返回扩展名（包括点），不是 PNG、WebP 或 JPEG 时返回 null
+     */
+    static String imageExtension(byte[] data) {
+        if (data.length >= 8 && (data[0] & 0xFF) == 0x89 && data[1] == 'P' && data[2] == 'N' && data[3] == 'G') {
+            return ".png";
+        }
+        if (data.length >= 12 && data[0] == 'R' && data[1] == 'I' && data[2] == 'F' && data[3] == 'F'
+                && data[8] == 'W' && data[9] == 'E' && data[10] == 'B' && data[11] == 'P') {
+            return ".webp";
+        }
+        if (data.length >= 3 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8 && (data[2] & 0xFF) == 0xFF) {
+            return ".jpg";
+        }
+        return null;
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * 流水线阶段之间有界管道的本地单元测试。
+ */
+public class BlockPipeTest {
+
+    @Test
+    public void transfersDataBetweenThreads() throws Exception {
+        byte[] data = new byte[100_000];
+        new Random(7).nextBytes(data);
+        BlockPipe pipe = new BlockPipe(1024, 2);
+
+        Thread writer = new Thread(() -> {
+            try (OutputStream out = pipe.sink()) {
+                out.write(data[0]);
+                for (int off = 1; off < data.length; off += 3000) {
+                    out.write(data, off, Math.min(3000, data.length - off));
+                }
+            } catch (IOException e) {
+                pipe.abort(e);
+            }
+        });
+        writer.start();
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        InputStream in = pipe.source();
+        byte[] buffer = new byte[700];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            received.write(buffer, 0, n);
+        }
+        writer.join();
+        assertArrayEquals(data, received.toByteArray());
+    }
+
+    @Test
+    public void abort_wakesBlockedWriter() throws Exception {
+        BlockPipe pipe = new BlockPipe(16, 1);
+        AtomicReference<Throwable> writerError = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                pipe.sink().write(new byte[1000]);  // 没有读端，写满一个块后阻塞
+            } catch (Throwable e) {
+                writerError.set(e);
+            }
+        });
+        writer.start();
+        Thread.sleep(50);
+
+        pipe.abort(new IOException("cancelled"));
+        writer.join(2000);
+        assertFalse(writer.isAlive());
+        assertTrue(writerError.get() instanceof IOException);
+    }
+
+    @Test(expected = IOException.class)
+    public void abort_failsReader() throws Exception {
+        BlockPipe pipe = new BlockPipe(16, 2);
+        pipe.sink().write(1);
+        pipe.abort(new IllegalStateException("encode failed"));
+        pipe.source().read();
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+/**
+ * 分块加密流的本地单元测试。
+ */
+public class ChunkedCipherStreamTest {
+
+    @Test
+    public void roundTrip_acrossChunkBoundaries() throws Exception {
+        SecretKey key = AESUtil.generateKey();
+        int[] sizes = {0, 1, 1023, 1024, 1025, 5000};
+        for (int size : sizes) {
+            byte[] plain = randomBytes(size);
+            byte[] encrypted = encrypt(plain, key, 1024);
+            assertArrayEquals("size " + size, plain, readAll(new ChunkedCipherInputStream(new ByteArrayInputStream(encrypted), key)));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void tamperedChunk_isRejected() throws Exception {
+        SecretKey key = AESUtil.generateKey();
+        byte[] encrypted = encrypt(randomBytes(3000), key, 1024);
+        encrypted[AESUtil.STREAM_HEADER_LENGTH + 10] ^= 1;
+        readAll(new ChunkedCipherInputStream(new ByteArrayInputStream(encrypted), key));
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedStream_isRejected() throws Exception {
+        SecretKey key = AESUtil.generateKey();
+        byte[] encrypted = encrypt(randomBytes(3000), key, 1024);
+        // 只保留前两个完整分块，缺少带结束标记的最后一个分块
+        int twoChunks = AESUtil.STREAM_HEADER_LENGTH + 2 * (4 + 1024 + AESUtil.GCM_TAG_LENGTH);
+        readAll(new ChunkedCipherInputStream(new ByteArrayInputStream(Arrays.copyOf(encrypted, twoChunks)), key));
+    }
+
+    @Test
+    public void openDecryptingStream_readsLegacyFormat() throws Exception {
+        SecretKey key = AESUtil.generateKey();
+        byte[] plain = randomBytes(4096);
+        byte[] legacy = AESUtil.encrypt(plain, key);
+        assertArrayEquals(plain, readAll(AESUtil.openDecryptingStream(new ByteArrayInputStream(legacy), key)));
+
+        byte[] chunked = encrypt(plain, key, AESUtil.DEFAULT_CHUNK_SIZE);
+        assertArrayEquals(plain, readAll(AESUtil.openDecryptingStream(new ByteArrayInputStream(chunked), key)));
+    }
+
+    private static byte[] encrypt(byte[] plain, SecretKey key, int chunkSize) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (OutputStream encrypting = new ChunkedCipherOutputStream(out, key, chunkSize)) {
+            encrypting.write(plain);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[700];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        return data;
+    }
+}
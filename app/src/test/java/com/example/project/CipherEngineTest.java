@@ -0,0 +1,80 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+
+import static org.junit.Assert.*;
+
+/**
+ * 线程独享加解密引擎和 Cipher 对象池的本地单元测试。
+ */
+public class CipherEngineTest {
+
+    // 其他测试不使用的算法，避免共享对象池中已有的实例
+    private static final String POOLED_TRANSFORMATION = "AES/CTR/NoPadding";
+
+    @Test
+    public void roundTrip_reusesBuffersAcrossSizes() throws Exception {
+        CipherEngine engine = CipherEngine.current();
+        SecretKey key = engine.generateKey(128);
+        Random random = new Random(7);
+        int[] sizes = {0, 1, 15, 16, 4096, 2 * 1024 * 1024};  // 最后一个超过保留缓冲区的上限
+        for (int size : sizes) {
+            byte[] plain = new byte[size];
+            random.nextBytes(plain);
+            byte[] encrypted = engine.encrypt(plain, key);
+            assertArrayEquals("size " + size, plain, engine.decrypt(encrypted, key));
+        }
+    }
+
+    @Test
+    public void generateKey_honoursEachRequestedSize() throws Exception {
+        CipherEngine engine = CipherEngine.current();
+        assertEquals(16, engine.generateKey(128).getEncoded().length);
+        assertEquals(32, engine.generateKey(256).getEncoded().length);
+        assertEquals(16, engine.generateKey(128).getEncoded().length);
+    }
+
+    @Test
+    public void recycle_keepsAtMostMaxPooledCiphers() throws Exception {
+        List<Cipher> recycled = new ArrayList<>();
+        for (int i = 0; i < CipherEngine.MAX_POOLED_CIPHERS + 2; i++) {
+            recycled.add(Cipher.getInstance(POOLED_TRANSFORMATION));
+        }
+        for (Cipher cipher : recycled) {
+            CipherEngine.recycle(POOLED_TRANSFORMATION, cipher);
+        }
+        for (int i = 0; i < CipherEngine.MAX_POOLED_CIPHERS; i++) {
+            assertSame(recycled.get(i), CipherEngine.obtain(POOLED_TRANSFORMATION));  // 先进先出
+        }
+        Cipher fresh = CipherEngine.obtain(POOLED_TRANSFORMATION);  // 超出上限的实例没有被缓存
+        for (Cipher cipher : recycled) {
+            assertNotSame(cipher, fresh);
+        }
+    }
+
+    @Test
+    public void zero_clearsOnlyTheUsedPrefix() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(10000);
+        while (buffer.hasRemaining()) {
+            buffer.put((byte) 0x5A);
+        }
+        CipherEngine.zero(buffer, 9000);  // 超过一次清零的块大小
+        for (int i = 0; i < 9000; i++) {
+            assertEquals(0, buffer.get(i));
+        }
+        assertEquals(0x5A, buffer.get(9000));
+
+        byte[] key = {1, 2, 3};
+        AESUtil.wipe(key);
+        assertArrayEquals(new byte[3], key);
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 签名板绘制性能统计的本地单元测试，时间都由测试给出。
+ */
+public class InkMetricsTest {
+
+    private static final long FRAME_NANOS = 10_000_000L;  // 100Hz
+
+    @Test
+    public void frame_recordsLatencyOfEverySampleAndSamplesPerFrame() {
+        InkMetrics metrics = new InkMetrics();
+        metrics.onSample(100, 0);
+        metrics.onSample(104, 1_000_000);
+        metrics.onFrameDrawn(110, 5_000_000);
+
+        LatencyHistogram latency = metrics.getInputToInkMillis();
+        assertEquals(2, latency.getCount());
+        assertEquals(16, latency.getSum());  // 10 + 6
+        assertEquals(10, latency.getMax());
+        assertEquals(1, metrics.getSamplesPerFrame().getCount());
+        assertEquals(2, metrics.getSamplesPerFrame().getMax());
+        assertEquals(1, metrics.getFrames());
+        assertEquals(2, metrics.getTotalSamples());
+        assertEquals(0, metrics.getDroppedFrames());
+    }
+
+    @Test
+    public void frameWithoutSamples_isIgnored() {
+        InkMetrics metrics = new InkMetrics();
+        metrics.onFrameDrawn(100, FRAME_NANOS);
+        assertEquals(0, metrics.getFrames());
+        assertEquals(0, metrics.getSamplesPerFrame().getCount());
+    }
+
+    @Test
+    public void lateFrame_countsSkippedFrames() {
+        InkMetrics metrics = new InkMetrics();
+        metrics.setRefreshRate(100);
+        metrics.onSample(0, 0);
+        metrics.onFrameDrawn(10, FRAME_NANOS);
+
+        metrics.onSample(12, 12_000_000);
+        metrics.onFrameDrawn(20, 22_000_000);  // 一个帧间隔之内
+        assertEquals(0, metrics.getDroppedFrames());
+
+        metrics.onSample(22, 24_000_000);
+        metrics.onFrameDrawn(59, 24_000_000 + 35_000_000);  // 采样到达后3.5个帧间隔才绘制
+        assertEquals(3, metrics.getDroppedFrames());
+        assertEquals(3, metrics.getFrames());
+    }
+
+    @Test
+    public void pausesAndGapsBetweenStrokes_areNotDroppedFrames() {
+        InkMetrics metrics = new InkMetrics();
+        metrics.setRefreshRate(100);
+        metrics.onSample(0, 0);
+        metrics.onFrameDrawn(10, FRAME_NANOS);
+
+        // 手指停住不动，很久之后才有新的采样
+        metrics.onSample(1000, 1_000_000_000L);
+        metrics.onFrameDrawn(1005, 1_005_000_000L);
+        assertEquals(0, metrics.getDroppedFrames());
+
+        // 两笔之间的空闲时间
+        metrics.onStrokeEnd();
+        metrics.onSample(5000, 5_000_000_000L);
+        metrics.onFrameDrawn(5100, 5_100_000_000L);
+        assertEquals(0, metrics.getDroppedFrames());
+        assertEquals(3, metrics.getFrames());
+    }
+
+    @Test
+    public void manySamplesInOneFrame_growTheBuffer() {
+        InkMetrics metrics = new InkMetrics();
+        for (int i = 0; i < 100; i++) {
+            metrics.onSample(i, i);
+        }
+        metrics.onFrameDrawn(100, 1000);
+        assertEquals(100, metrics.getTotalSamples());
+        assertEquals(100, metrics.getInputToInkMillis().getCount());
+        assertEquals(100, metrics.getSamplesPerFrame().getMax());
+    }
+
+    @Test
+    public void reset_clearsCountersAndPendingSamples() {
+        InkMetrics metrics = new InkMetrics();
+        metrics.setRefreshRate(100);
+        metrics.onSample(0, 0);
+        metrics.onFrameDrawn(10, FRAME_NANOS);
+        metrics.onSample(12, 12_000_000);
+        metrics.onFrameDrawn(100, 100_000_000);
+        metrics.onSample(110, 110_000_000);  // 尚未绘制
+        assertTrue(metrics.getDroppedFrames() > 0);
+
+        metrics.reset();
+        assertEquals(0, metrics.getFrames());
+        assertEquals(0, metrics.getDroppedFrames());
+        assertEquals(0, metrics.getTotalSamples());
+        assertEquals(0, metrics.getInputToInkMillis().getCount());
+        assertEquals(0, metrics.getSamplesPerFrame().getCount());
+
+        metrics.onFrameDrawn(120, 120_000_000);  // 清空前的采样不再结算
+        assertEquals(0, metrics.getFrames());
+    }
+}
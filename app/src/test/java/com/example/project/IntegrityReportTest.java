@@ -0,0 +1,39 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * 完整性扫描结果的本地单元测试。
+ */
+public class IntegrityReportTest {
+
+    @Test
+    public void orphanedKeys_excludeExistingPendingAndReservedNames() {
+        Set<String> keys = new HashSet<>(Arrays.asList("a.png", "b.png", "c.png", "d.png", ".thumbnail_cache_key"));
+        Set<String> files = new HashSet<>(Arrays.asList("a.png", "x.png"));
+        Set<String> pending = Collections.singleton("c.png");
+
+        Set<String> orphans = IntegrityReport.orphanedKeys(keys, files, pending);
+        assertEquals(new HashSet<>(Arrays.asList("b.png", "d.png")), orphans);
+    }
+
+    @Test
+    public void problemFiles_areCountedButListedUpToLimit() {
+        IntegrityReport report = new IntegrityReport();
+        for (int i = 0; i < IntegrityReport.MAX_LISTED + 5; i++) {
+            report.addCorrupt("content://media/external/images/media/" + i);
+        }
+        report.addKeyless("content://media/external/images/media/99");
+        assertEquals(IntegrityReport.MAX_LISTED + 5, report.corrupt);
+        assertEquals(IntegrityReport.MAX_LISTED, report.corruptFiles.size());
+        assertEquals(1, report.keyless);
+        assertTrue(report.toString().contains("corrupt=" + (IntegrityReport.MAX_LISTED + 5)));
+    }
+}
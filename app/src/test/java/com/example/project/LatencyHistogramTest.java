@@ -0,0 +1,97 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 对数分桶直方图的本地单元测试。
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void buckets_coverEveryValueWithinQuarterRelativeError() {
+        for (long value = 0; value < 100_000; value++) {
+            assertBucketHolds(value);
+        }
+        for (int shift = 17; shift < 63; shift++) {
+            long power = 1L << shift;
+            assertBucketHolds(power - 1);
+            assertBucketHolds(power);
+            assertBucketHolds(power + 1);
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void smallValues_haveTheirOwnBuckets() {
+        for (int value = 0; value < 4; value++) {
+            assertEquals(value, LatencyHistogram.bucketIndex(value));
+            assertEquals(value, LatencyHistogram.bucketUpperBound(value));
+        }
+        assertEquals(4, LatencyHistogram.bucketIndex(4));
+        assertEquals(8, LatencyHistogram.bucketIndex(8));
+        assertEquals(8, LatencyHistogram.bucketIndex(9));  // 8和9在同一个桶
+        assertEquals(9, LatencyHistogram.bucketUpperBound(8));
+    }
+
+    @Test
+    public void percentiles_returnBucketUpperBoundCappedAtMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentile(50));  // 没有记录
+
+        for (int value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+        assertEquals(100, histogram.getCount());
+        assertEquals(5050, histogram.getSum());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+        assertEquals(100, histogram.getMax());
+
+        assertEquals(1, histogram.getPercentile(0));
+        long p50 = histogram.getPercentile(50);
+        assertTrue("p50=" + p50, p50 >= 50 && p50 <= 50 * 5 / 4);
+        long p90 = histogram.getPercentile(90);
+        assertTrue("p90=" + p90, p90 >= 90 && p90 <= 100);
+        assertEquals(100, histogram.getPercentile(99));   // 桶的上界是111，不超过最大值
+        assertEquals(100, histogram.getPercentile(100));
+        assertEquals(100, histogram.getPercentile(250));  // 超出范围按100处理
+    }
+
+    @Test
+    public void negativeValues_areRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        assertEquals(1, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void reset_clearsEverything() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(7);
+        histogram.record(1_000_000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getSum());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getMean(), 0);
+        assertEquals(0, histogram.getPercentile(99));
+
+        histogram.record(3);
+        assertEquals(3, histogram.getPercentile(50));
+        assertTrue(histogram.toString().contains("count=1"));
+    }
+
+    private static void assertBucketHolds(long value) {
+        int index = LatencyHistogram.bucketIndex(value);
+        long upper = LatencyHistogram.bucketUpperBound(index);
+        assertTrue(value + " > " + upper, value <= upper);
+        assertTrue(value + " 的误差过大: " + upper, upper - value <= value / 4);
+        if (index > 0) {
+            assertTrue(value + " 也属于前一个桶", LatencyHistogram.bucketUpperBound(index - 1) < value);
+        }
+    }
+}
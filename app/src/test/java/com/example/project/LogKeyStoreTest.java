@@ -0,0 +1,114 @@
+package com.example.project;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 基于日志的密钥存储的本地单元测试。
+ */
+public class LogKeyStoreTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("keys", ".log");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".compact").delete();
+    }
+
+    @Test
+    public void putGetRemove_surviveReopen() throws Exception {
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            store.put("加密签名_1.png", key(1));
+            store.put("加密签名_2.png", key(2));
+            store.put("加密签名_1.png", key(3));  // 覆盖
+            assertEquals(1, store.removeAll(Arrays.asList("加密签名_2.png", "不存在.png")));
+        }
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            assertEquals(1, store.size());
+            assertArrayEquals(key(3), store.get("加密签名_1.png"));
+            assertNull(store.get("加密签名_2.png"));
+            assertFalse(store.contains("加密签名_2.png"));
+        }
+    }
+
+    @Test
+    public void tornTail_isTruncatedOnOpen() throws Exception {
+        long intact;
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            store.put("a", key(1));
+            intact = file.length();
+            store.put("b", key(2));
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 5);
+        }
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            assertEquals(intact, file.length());
+            store.put("c", key(3));
+        }
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            assertEquals(2, store.size());
+            assertArrayEquals(key(3), store.get("c"));
+        }
+    }
+
+    @Test
+    public void compact_dropsGarbageAndKeepsLiveKeys() throws Exception {
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            for (int round = 0; round < 5; round++) {
+                for (int i = 0; i < 100; i++) {
+                    store.put("key" + i, key(round * 100 + i));
+                }
+            }
+            assertTrue(store.getGarbageBytes() > 0);
+            store.compact();
+            assertEquals(0, store.getGarbageBytes());
+            store.put("after", key(7));
+        }
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            assertEquals(101, store.size());
+            assertArrayEquals(key(499), store.get("key99"));
+            assertArrayEquals(key(7), store.get("after"));
+        }
+    }
+
+    @Test
+    public void manyKeys_batchInsertAndLookup() throws Exception {
+        Map<String, byte[]> keys = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            keys.put("加密签名_" + i + ".png", key(i));
+        }
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            store.putAll(keys);
+        }
+        try (LogKeyStore store = new LogKeyStore(file)) {
+            assertEquals(keys.size(), store.size());
+            assertArrayEquals(key(12345), store.get("加密签名_12345.png"));
+        }
+    }
+
+    private static byte[] key(int seed) {
+        byte[] key = new byte[32];
+        for (int i = 0; i < key.length; i++) {
+            key[i] = (byte) (seed * 31 + i);
+        }
+        return key;
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * 单色游程编码的本地单元测试。
+ */
+public class MonochromeCodecTest {
+
+    @Test
+    public void roundTrip_thresholdsAndSkipsRowPadding() throws Exception {
+        int width = 5;
+        int height = 3;
+        int stride = 8;  // 每行有3字节填充
+        byte[] alpha = new byte[stride * height];
+        alpha[0] = (byte) 255;
+        alpha[1] = (byte) 127;         // 低于阈值，视为背景
+        alpha[stride + 4] = (byte) 128;
+        alpha[2 * stride] = (byte) 200;
+        alpha[6] = (byte) 255;         // 填充字节，不参与编码
+
+        MonochromeCodec.Image image = decode(encode(alpha, width, height, stride));
+
+        assertEquals(width, image.width);
+        assertEquals(height, image.height);
+        byte[] expected = new byte[width * height];
+        expected[0] = (byte) 255;
+        expected[width + 4] = (byte) 255;
+        expected[2 * width] = (byte) 255;
+        assertArrayEquals(expected, image.alpha);
+    }
+
+    @Test
+    public void sparseInk_isMuchSmallerThanRawPixels() throws Exception {
+        int width = 1024;
+        int height = 400;
+        byte[] alpha = new byte[width * height];
+        for (int x = 100; x < 900; x++) {
+            int y = 200 + (int) (80 * Math.sin(x / 40.0));
+            for (int dy = -2; dy <= 2; dy++) {
+                alpha[(y + dy) * width + x] = (byte) 255;
+            }
+        }
+        byte[] encoded = encode(alpha, width, height, width);
+
+        assertTrue("encoded size " + encoded.length, encoded.length < width * height / 8 / 10);
+        assertArrayEquals(alpha, decode(encoded).alpha);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsOverlongRun() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MonochromeCodec.MAGIC);
+        out.write(1);
+        VectorSignatureCodec.writeVarint(out, 2);
+        VectorSignatureCodec.writeVarint(out, 2);
+        VectorSignatureCodec.writeVarint(out, 5);
+        decode(out.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsNegativeRun() throws Exception {
+        ByteArrayOutputStream out = header(2, 2);
+        VectorSignatureCodec.writeVarint(out, 1);
+        VectorSignatureCodec.writeVarint(out, -1);  // 10字节的变长整数，最高位为1
+        decode(out.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsDimensionsWhoseProductOverflows() throws Exception {
+        ByteArrayOutputStream out = header(1L << 33, 1L << 31);  // 乘积溢出为0
+        VectorSignatureCodec.writeVarint(out, 0);
+        decode(out.toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsZeroWidth() throws Exception {
+        decode(header(0, 10).toByteArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsTruncatedRuns() throws Exception {
+        ByteArrayOutputStream out = header(4, 4);
+        VectorSignatureCodec.writeVarint(out, 3);
+        decode(out.toByteArray());
+    }
+
+    private static ByteArrayOutputStream header(long width, long height) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(MonochromeCodec.MAGIC);
+        out.write(1);
+        VectorSignatureCodec.writeVarint(out, width);
+        VectorSignatureCodec.writeVarint(out, height);
+        return out;
+    }
+
+    private static byte[] encode(byte[] alpha, int width, int height, int stride) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        MonochromeCodec.encode(alpha, width, height, stride, 128, out);
+        return out.toByteArray();
+    }
+
+    private static MonochromeCodec.Image decode(byte[] data) throws IOException {
+        return MonochromeCodec.decode(new ByteArrayInputStream(data));
+    }
+}
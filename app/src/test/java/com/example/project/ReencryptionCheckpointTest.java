@@ -0,0 +1,114 @@
+package com.example.project;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 重新加密检查点的本地单元测试。
+ */
+public class ReencryptionCheckpointTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("checkpoint", null);
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    private static ReencryptionCheckpoint.Entry entry(long id) {
+        return new ReencryptionCheckpoint.Entry(id, "content://media/external/images/media/" + id,
+                "加密签名_" + id + ".png", id % 2 == 0 ? null : "加密签名_" + id + ".png");
+    }
+
+    @Test
+    public void replay_returnsStagedButNotDoneEntries_andRemembersSkipped() throws Exception {
+        ReencryptionCheckpoint checkpoint = new ReencryptionCheckpoint(file);
+        checkpoint.markStaged(Arrays.asList(entry(1), entry(2)));
+        checkpoint.markDone(Collections.singletonList(2L));
+        checkpoint.markSkipped(Collections.singletonList(9L));
+
+        ReencryptionCheckpoint reopened = new ReencryptionCheckpoint(file);
+        List<ReencryptionCheckpoint.Entry> staged = reopened.staged();
+        assertEquals(1, staged.size());
+        assertEquals(1, staged.get(0).id);
+        assertEquals("content://media/external/images/media/1", staged.get(0).uri);
+        assertEquals("加密签名_1.png", staged.get(0).keyRef);
+        assertFalse(reopened.needsStaging(1));  // 已暂存
+        assertFalse(reopened.needsStaging(9));  // 已跳过
+        assertTrue(reopened.needsStaging(2));   // 已完成，只有仍然引用旧密钥时才会再被选中
+    }
+
+    @Test
+    public void failedSwap_isRedoneFromStagedCopyOnRerun_evenIfSkipped() throws Exception {
+        ReencryptionCheckpoint checkpoint = new ReencryptionCheckpoint(file);
+        checkpoint.markStaged(Collections.singletonList(entry(7)));
+        // 覆盖失败：原文件可能只写了一半，没有 DONE 记录
+
+        ReencryptionCheckpoint rerun = new ReencryptionCheckpoint(file);
+        assertEquals(7, rerun.staged().get(0).id);
+        assertFalse(rerun.needsStaging(7));  // 重新暂存会覆盖唯一完整的副本
+        rerun.markSkipped(Collections.singletonList(7L));
+
+        ReencryptionCheckpoint again = new ReencryptionCheckpoint(file);
+        assertEquals(1, again.staged().size());  // SKIPPED 不会丢掉重做覆盖所需的记录
+        assertEquals(7, again.staged().get(0).id);
+        again.markDone(Collections.singletonList(7L));
+
+        ReencryptionCheckpoint finished = new ReencryptionCheckpoint(file);
+        assertTrue(finished.staged().isEmpty());
+        assertFalse(finished.needsStaging(7));
+    }
+
+    @Test
+    public void tornTail_isDiscardedAndLaterAppendsSurvive() throws Exception {
+        ReencryptionCheckpoint checkpoint = new ReencryptionCheckpoint(file);
+        checkpoint.markStaged(Collections.singletonList(entry(4)));
+        try (FileOutputStream out = new FileOutputStream(file, true)) {
+            out.write(new byte[]{2, 0, 0, 0, 8, 0, 0});  // 被杀死时只写了一半的 DONE 记录
+        }
+
+        ReencryptionCheckpoint recovered = new ReencryptionCheckpoint(file);
+        assertEquals(1, recovered.staged().size());  // 没有完整的 DONE 记录，仍然需要重做
+        recovered.markDone(Collections.singletonList(4L));
+        assertTrue(new ReencryptionCheckpoint(file).staged().isEmpty());
+    }
+
+    @Test
+    public void compaction_keepsStagedAndSkippedEntries() throws Exception {
+        ReencryptionCheckpoint checkpoint = new ReencryptionCheckpoint(file);
+        checkpoint.markSkipped(Collections.singletonList(-1L));
+        List<ReencryptionCheckpoint.Entry> entries = new ArrayList<>();
+        List<Long> ids = new ArrayList<>();
+        for (long id = 0; id < 5000; id++) {
+            entries.add(entry(id));
+            ids.add(id);
+        }
+        checkpoint.markStaged(entries);
+        checkpoint.markStaged(Collections.singletonList(entry(-2)));
+        checkpoint.markDone(ids);
+        assertTrue(file.length() < 1024);  // 已经重写为紧凑日志
+
+        ReencryptionCheckpoint reopened = new ReencryptionCheckpoint(file);
+        assertEquals(1, reopened.staged().size());
+        assertEquals(-2, reopened.staged().get(0).id);
+        assertFalse(reopened.needsStaging(-1));
+    }
+}
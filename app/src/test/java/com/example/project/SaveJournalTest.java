@@ -0,0 +1,103 @@
+package com.example.project;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 保存队列日志的本地单元测试。
+ */
+public class SaveJournalTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("journal", null);
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void replay_restoresPendingEntriesInOrder() throws Exception {
+        SaveJournal journal = new SaveJournal(file);
+        journal.enqueue(entry("a"));
+        journal.enqueue(entry("b"));
+        journal.enqueue(entry("c"));
+        SaveJournal.Entry b = journal.getPending().get(1);
+        b.uri = "content://media/external/images/media/42";
+        journal.markInserted(Collections.singletonList(b));
+        journal.markDone(Collections.singletonList("a"));
+
+        List<SaveJournal.Entry> pending = new SaveJournal(file).getPending();
+        assertEquals(2, pending.size());
+        assertEquals("b", pending.get(0).id);
+        assertEquals("加密签名_b.png", pending.get(0).fileName);
+        assertArrayEquals(new byte[]{'b', 1, 2}, pending.get(0).key);
+        assertEquals("content://media/external/images/media/42", pending.get(0).uri);
+        assertEquals("c", pending.get(1).id);
+        assertNull(pending.get(1).uri);
+    }
+
+    @Test
+    public void tornTail_isDiscardedAndLaterAppendsSurvive() throws Exception {
+        SaveJournal journal = new SaveJournal(file);
+        journal.enqueue(entry("a"));
+        long intact = file.length();
+        journal.enqueue(entry("b"));
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(file.length() - 3);  // 模拟写入最后一条记录时进程被杀死
+        }
+
+        SaveJournal reopened = new SaveJournal(file);
+        assertEquals(1, reopened.getPendingCount());
+        assertEquals(intact, file.length());
+
+        reopened.enqueue(entry("c"));
+        List<SaveJournal.Entry> pending = new SaveJournal(file).getPending();
+        assertEquals(2, pending.size());
+        assertEquals("c", pending.get(1).id);
+    }
+
+    @Test
+    public void corruptedRecord_stopsReplay() throws Exception {
+        SaveJournal journal = new SaveJournal(file);
+        journal.enqueue(entry("a"));
+        byte[] data = Files.readAllBytes(file.toPath());
+        data[data.length - 6] ^= 0x40;  // 破坏负载，使校验失败
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        assertEquals(0, new SaveJournal(file).getPendingCount());
+    }
+
+    @Test
+    public void allDone_truncatesJournal() throws Exception {
+        SaveJournal journal = new SaveJournal(file);
+        journal.enqueue(entry("a"));
+        journal.enqueue(entry("b"));
+        journal.markDone(Arrays.asList("a", "b"));
+
+        assertEquals(0, file.length());
+        assertEquals(0, new SaveJournal(file).getPendingCount());
+    }
+
+    private static SaveJournal.Entry entry(String id) {
+        return new SaveJournal.Entry(id, "加密签名_" + id + ".png", new byte[]{(byte) id.charAt(0), 1, 2}, 1000L);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import static org.junit.Assert.*;
+
+/**
+ * 信封加密格式的本地单元测试，主密钥用软件实现代替 Android Keystore。
+ */
+public class SignatureEnvelopeTest {
+
+    @Test
+    public void roundTrip_needsOnlyTheMasterKey() throws Exception {
+        MasterKey masterKey = new SoftwareMasterKey("test");
+        byte[] plaintext = new byte[200_000];
+        new Random(3).nextBytes(plaintext);
+        byte[] sealed = seal(plaintext, masterKey);
+
+        SignatureEnvelope.Opened opened = SignatureEnvelope.open(new ByteArrayInputStream(sealed), masterKey);
+        assertEquals("VECTOR", opened.metadata.format);
+        assertEquals("加密签名_1.png", opened.metadata.originalName);
+        assertEquals(1234L, opened.metadata.createdAt);
+        assertArrayEquals(plaintext, readAll(opened.plaintext));
+    }
+
+    @Test(expected = GeneralSecurityException.class)
+    public void tamperedMetadata_failsUnwrap() throws Exception {
+        MasterKey masterKey = new SoftwareMasterKey("test");
+        byte[] sealed = seal(new byte[10], masterKey);
+        sealed[SignatureEnvelope.MAGIC.length + 1 + 2 + "test".length() + 7] ^= 1;  // 修改创建时间
+        SignatureEnvelope.open(new ByteArrayInputStream(sealed), masterKey);
+    }
+
+    @Test(expected = GeneralSecurityException.class)
+    public void otherMasterKey_isRejected() throws Exception {
+        byte[] sealed = seal(new byte[10], new SoftwareMasterKey("test"));
+        SignatureEnvelope.open(new ByteArrayInputStream(sealed), new SoftwareMasterKey("test"));
+    }
+
+    @Test
+    public void regeneratedMasterKey_isReportedAsKeyMismatch() throws Exception {
+        byte[] sealed = seal(new byte[10], new SoftwareMasterKey("lost"));
+        try {
+            SignatureEnvelope.open(new ByteArrayInputStream(sealed), new SoftwareMasterKey("current"));
+            fail("expected KeyMismatchException");
+        } catch (SignatureEnvelope.KeyMismatchException e) {
+            assertEquals("lost", e.keyId);
+        }
+    }
+
+    private static byte[] seal(byte[] plaintext, MasterKey masterKey) throws Exception {
+        ByteArrayOutputStream sink = new ByteArrayOutputStream();
+        SignatureEnvelope.Metadata metadata = new SignatureEnvelope.Metadata(1234L, "VECTOR", "加密签名_1.png");
+        try (OutputStream out = SignatureEnvelope.newEncryptingStream(sink, AESUtil.generateKey(), masterKey, metadata)) {
+            out.write(plaintext);
+        }
+        byte[] sealed = sink.toByteArray();
+        assertTrue(SignatureEnvelope.isEnvelope(sealed, sealed.length));
+        return sealed;
+    }
+
+    private static byte[] readAll(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 用普通 AES-GCM 密钥实现的主密钥。
+     */
+    private static final class SoftwareMasterKey implements MasterKey {
+        private final String id;
+        private final SecretKey key;
+        private final SecureRandom random = new SecureRandom();
+
+        SoftwareMasterKey(String id) throws Exception {
+            this.id = id;
+            KeyGenerator generator = KeyGenerator.getInstance("AES");
+            generator.init(256);
+            this.key = generator.generateKey();
+        }
+
+        @Override
+        public String getId() {
+            return id;
+        }
+
+        @Override
+        public Wrapped wrap(byte[] dataKey, byte[] aad) throws GeneralSecurityException {
+            byte[] iv = new byte[12];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(128, iv));
+            cipher.updateAAD(aad);
+            return new Wrapped(iv, cipher.doFinal(dataKey));
+        }
+
+        @Override
+        public byte[] unwrap(byte[] iv, byte[] wrappedKey, byte[] aad) throws GeneralSecurityException {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(128, iv));
+            cipher.updateAAD(aad);
+            return cipher.doFinal(wrappedKey);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 签名查询条件的本地单元测试。
+ */
+public class SignatureQueryTest {
+
+    @Test
+    public void selectionArgs_matchPlaceholders_forEveryCombination() {
+        String[] prefixes = {null, "加密"};
+        long[] froms = {Long.MIN_VALUE, 100};
+        long[] tos = {Long.MAX_VALUE, 200};
+        for (SignatureQuery.Sort sort : SignatureQuery.Sort.values()) {
+            for (String prefix : prefixes) {
+                for (long from : froms) {
+                    for (long to : tos) {
+                        SignatureQuery query = new SignatureQuery(prefix, from, to, sort);
+                        for (boolean keyset : new boolean[]{false, true}) {
+                            String selection = query.selection(keyset);
+                            String[] args = query.selectionArgs(keyset, 7, "Name", 150);
+                            int placeholders = selection == null ? 0 : selection.replaceAll("[^?]", "").length();
+                            assertEquals(placeholders, args == null ? 0 : args.length);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void matches_appliesCaseInsensitivePrefixAndHalfOpenRange() {
+        SignatureQuery query = new SignatureQuery("Sig", 100, 200, SignatureQuery.Sort.NAME);
+        assertTrue(query.matches("signature_1.png", 100));
+        assertTrue(query.matches("SIGNED.png", 199));
+        assertFalse(query.matches("signature_1.png", 200));
+        assertFalse(query.matches("signature_1.png", 99));
+        assertFalse(query.matches("my_signature.png", 150));
+        assertTrue(SignatureQuery.ALL.matches("anything", 0));
+    }
+
+    @Test
+    public void compare_breaksTiesById_inSortDirection() {
+        SignatureQuery newest = SignatureQuery.ALL;
+        assertTrue(newest.compare(1, "a", 20, 2, "b", 10) < 0);
+        assertTrue(newest.compare(2, "a", 10, 1, "b", 10) < 0);
+
+        SignatureQuery byName = new SignatureQuery(null, Long.MIN_VALUE, Long.MAX_VALUE, SignatureQuery.Sort.NAME);
+        assertTrue(byName.compare(9, "Alpha", 0, 1, "beta", 0) < 0);
+        assertTrue(byName.compare(1, "same", 0, 2, "SAME", 0) < 0);
+    }
+}
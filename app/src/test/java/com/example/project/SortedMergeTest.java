@@ -0,0 +1,61 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * 增量合并的本地单元测试，列表按时间降序、ID降序排列，与签名列表相同。
+ */
+public class SortedMergeTest {
+
+    private static final class Item {
+        final long id;
+        final long date;
+
+        Item(long id, long date) {
+            this.id = id;
+            this.date = date;
+        }
+    }
+
+    private static final Comparator<Item> ORDER = (a, b) -> a.date != b.date
+            ? Long.compare(b.date, a.date) : Long.compare(b.id, a.id);
+
+    @Test
+    public void insertsAndDeletes_areAppliedInOrder() {
+        List<Item> loaded = Arrays.asList(new Item(5, 50), new Item(4, 40), new Item(3, 30));
+        List<Item> merged = SortedMerge.merge(loaded, Arrays.asList(new Item(6, 60), new Item(7, 35)),
+                Collections.singleton(4L), true, item -> item.id, ORDER);
+        assertIds(merged, 6, 5, 7, 3);
+    }
+
+    @Test
+    public void changesBeyondLoadedPages_areLeftForPaging() {
+        List<Item> loaded = Arrays.asList(new Item(5, 50), new Item(4, 40));
+        List<Item> merged = SortedMerge.merge(loaded, Arrays.asList(new Item(9, 90), new Item(1, 10)),
+                Collections.<Long>emptySet(), false, item -> item.id, ORDER);
+        assertIds(merged, 9, 5, 4);  // ID 1 排在已加载的最后一项之后，由下一页查询返回
+    }
+
+    @Test
+    public void modifiedItem_replacesOldVersion_andDeleteWins() {
+        List<Item> loaded = Arrays.asList(new Item(5, 50), new Item(4, 40));
+        List<Item> merged = SortedMerge.merge(loaded, Arrays.asList(new Item(4, 45), new Item(8, 48)),
+                Collections.singleton(8L), true, item -> item.id, ORDER);
+        assertIds(merged, 5, 4);
+        assertEquals(45, merged.get(1).date);
+    }
+
+    private static void assertIds(List<Item> items, long... ids) {
+        assertEquals(ids.length, items.size());
+        for (int i = 0; i < ids.length; i++) {
+            assertEquals(ids[i], items.get(i).id);
+        }
+    }
+}
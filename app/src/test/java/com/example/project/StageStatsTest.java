@@ -0,0 +1,39 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * 流水线阶段统计的本地单元测试。
+ */
+public class StageStatsTest {
+
+    @Test
+    public void record_accumulatesBytesAndConvertsToMicros() {
+        StageStats stats = new StageStats();
+        assertEquals(100, stats.record(2_000_000, 100));
+        assertEquals(100, stats.record(3_000_000, 0));  // 字节数未知
+        assertEquals(350, stats.record(4_000_000, 250));
+
+        assertEquals(3, stats.getMicros().getCount());
+        assertEquals(350, stats.getBytes());
+        assertTrue(stats.getMicros().getPercentile(100) >= 4000);
+    }
+
+    @Test
+    public void failures_areCountedSeparatelyAndReset() {
+        StageStats stats = new StageStats();
+        stats.record(1_000_000, 10);
+        stats.recordFailure();
+        stats.recordFailure();
+        assertEquals(2, stats.getFailures());
+        assertEquals(1, stats.getMicros().getCount());
+        assertTrue(stats.toString().contains("failures=2"));
+
+        stats.reset();
+        assertEquals(0, stats.getFailures());
+        assertEquals(0, stats.getBytes());
+        assertEquals(0, stats.getMicros().getCount());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * 笔画简化的本地单元测试：检查点数的压缩比例和几何误差上界。
+ */
+public class StrokeSimplifierTest {
+
+    private static final float TOLERANCE = 1f;
+
+    @Test
+    public void denseCapture_isReducedByAnOrderOfMagnitude() {
+        // 240Hz采集的平滑曲线，相邻采样点间距约1像素
+        float[][] raw = smoothCurve(2000, 0f);
+        float[][] kept = simplify(raw, TOLERANCE);
+        assertTrue("kept " + kept[0].length + " of " + raw[0].length, kept[0].length * 10 <= raw[0].length);
+    }
+
+    @Test
+    public void discardedPoints_stayWithinTolerance() {
+        float[][] raw = smoothCurve(3000, 0.4f);  // 叠加手部抖动
+        float[][] kept = simplify(raw, TOLERANCE);
+        int[] keptIndex = matchKeptIndices(raw, kept);
+
+        for (int j = 0; j + 1 < keptIndex.length; j++) {
+            int a = keptIndex[j];
+            int b = keptIndex[j + 1];
+            for (int i = a + 1; i < b; i++) {
+                float distance = StrokeSimplifier.segmentDistance(raw[0][i], raw[1][i], raw[0][a], raw[1][a], raw[0][b], raw[1][b]);
+                assertTrue("point " + i + " is " + distance + "px away", distance <= TOLERANCE + 1e-4f);
+            }
+        }
+    }
+
+    @Test
+    public void endpoints_areAlwaysKept() {
+        float[][] raw = smoothCurve(500, 0.2f);
+        float[][] kept = simplify(raw, TOLERANCE);
+        int last = raw[0].length - 1;
+        assertEquals(raw[0][0], kept[0][0], 0f);
+        assertEquals(raw[1][0], kept[1][0], 0f);
+        assertEquals(raw[0][last], kept[0][kept[0].length - 1], 0f);
+        assertEquals(raw[1][last], kept[1][kept[1].length - 1], 0f);
+    }
+
+    @Test
+    public void zeroTolerance_keepsCorners() {
+        float[][] raw = {{0, 1, 2, 3, 3, 3}, {0, 0, 0, 0, 1, 2}};
+        float[][] kept = simplify(raw, 0f);
+        assertArrayEquals(new float[]{0, 3, 3}, kept[0], 0f);
+        assertArrayEquals(new float[]{0, 0, 2}, kept[1], 0f);
+    }
+
+    private static float[][] simplify(float[][] raw, float tolerance) {
+        final StrokeBuffer out = new StrokeBuffer();
+        StrokeSimplifier simplifier = new StrokeSimplifier(tolerance, out::add);
+        simplifier.begin(raw[0][0], raw[1][0], 0, 1f);
+        for (int i = 1; i < raw[0].length; i++) {
+            simplifier.add(raw[0][i], raw[1][i], i, 1f);
+        }
+        simplifier.end();
+
+        float[][] kept = new float[2][out.size()];
+        for (int i = 0; i < out.size(); i++) {
+            kept[0][i] = out.getX(i);
+            kept[1][i] = out.getY(i);
+        }
+        return kept;
+    }
+
+    /**
+     * 保留点是原始采样点的子序列，按顺序找出它们在原始数据中的下标。
+     */
+    private static int[] matchKeptIndices(float[][] raw, float[][] kept) {
+        int[] indices = new int[kept[0].length];
+        int i = 0;
+        for (int k = 0; k < indices.length; k++) {
+            while (raw[0][i] != kept[0][k] || raw[1][i] != kept[1][k]) {
+                i++;
+            }
+            indices[k] = i++;
+        }
+        return indices;
+    }
+
+    /**
+     * 生成类似签名的连笔曲线：向右推进的同时上下摆动。
+     */
+    private static float[][] smoothCurve(int samples, float jitter) {
+        Random random = new Random(3);
+        float[][] points = new float[2][samples];
+        for (int i = 0; i < samples; i++) {
+            double t = i / 240.0;
+            points[0][i] = (float) (100 + 60 * t * 4 + 80 * Math.sin(t * 2.3)) + (random.nextFloat() - 0.5f) * 2 * jitter;
+            points[1][i] = (float) (500 + 150 * Math.sin(t * 1.7) + 40 * Math.cos(t * 3.1)) + (random.nextFloat() - 0.5f) * 2 * jitter;
+        }
+        return points;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * 缩略图磁盘缓存的本地单元测试。
+ */
+public class ThumbnailStoreTest {
+
+    @Test
+    public void putThenGet_returnsPlaintextAndStoresCiphertext() throws Exception {
+        File dir = Files.createTempDirectory("thumbs").toFile();
+        ThumbnailStore store = new ThumbnailStore(dir, 1 << 20, AESUtil.generateKey());
+        byte[] data = "缩略图数据".getBytes("UTF-8");
+        store.put("content://media/1|100|2000|96", data);
+
+        assertArrayEquals(data, store.get("content://media/1|100|2000|96"));
+        assertNull(store.get("content://media/2|100|2000|96"));
+        File[] files = dir.listFiles();
+        assertEquals(1, files.length);
+        assertFalse(files[0].getName().contains("media"));  // 文件名不包含缓存键
+        assertFalse(new String(Files.readAllBytes(files[0].toPath()), "UTF-8").contains("缩略图数据"));
+    }
+
+    @Test
+    public void overLimit_evictsLeastRecentlyUsed() throws Exception {
+        File dir = Files.createTempDirectory("thumbs").toFile();
+        ThumbnailStore store = new ThumbnailStore(dir, 2500, AESUtil.generateKey());
+        store.put("a", new byte[1000]);
+        store.put("b", new byte[1000]);
+        backdate(dir, 10_000);
+        assertNotNull(store.get("a"));  // a 成为最近使用的条目
+        store.put("c", new byte[1000]);
+
+        assertNotNull(store.get("a"));
+        assertNull(store.get("b"));
+        assertNotNull(store.get("c"));
+        assertTrue(store.sizeBytes() <= 2500);
+    }
+
+    @Test
+    public void otherKeyOrCorruptEntry_isDropped() throws Exception {
+        File dir = Files.createTempDirectory("thumbs").toFile();
+        new ThumbnailStore(dir, 1 << 20, AESUtil.generateKey()).put("a", new byte[100]);
+        ThumbnailStore store = new ThumbnailStore(dir, 1 << 20, AESUtil.generateKey());
+        assertNull(store.get("a"));
+        assertEquals(0, dir.listFiles().length);
+
+        store.put("b", new byte[100]);
+        File entry = dir.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(entry, "rw")) {
+            file.seek(file.length() - 1);
+            int last = file.read();
+            file.seek(file.length() - 1);
+            file.write(last ^ 1);  // 破坏认证标签
+        }
+        assertNull(store.get("b"));
+        assertEquals(0, store.sizeBytes());
+    }
+
+    private static void backdate(File dir, long millis) {
+        for (File file : dir.listFiles()) {
+            file.setLastModified(file.lastModified() - millis);
+        }
+    }
+}
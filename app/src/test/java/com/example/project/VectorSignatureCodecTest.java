@@ -0,0 +1,74 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * 矢量签名格式的本地单元测试。
+ */
+public class VectorSignatureCodecTest {
+
+    @Test
+    public void roundTrip_preservesStrokesWithinQuantization() throws Exception {
+        StrokeBuffer strokes = sampleSignature();
+        StrokeBuffer decoded = VectorSignatureCodec.decode(new ByteArrayInputStream(encode(strokes)));
+
+        assertEquals(strokes.getCanvasWidth(), decoded.getCanvasWidth());
+        assertEquals(strokes.getCanvasHeight(), decoded.getCanvasHeight());
+        assertEquals(strokes.getStrokeCount(), decoded.getStrokeCount());
+        assertEquals(strokes.size(), decoded.size());
+        for (int stroke = 0; stroke < strokes.getStrokeCount(); stroke++) {
+            assertEquals(strokes.getStrokeStart(stroke), decoded.getStrokeStart(stroke));
+        }
+        for (int i = 0; i < strokes.size(); i++) {
+            assertEquals(strokes.getX(i), decoded.getX(i), 1 / 16f);
+            assertEquals(strokes.getY(i), decoded.getY(i), 1 / 16f);
+            assertEquals(strokes.getTime(i), decoded.getTime(i));
+            assertEquals(strokes.getPressure(i), decoded.getPressure(i), 1 / 255f);
+        }
+    }
+
+    @Test
+    public void encodedSignature_isCompact() throws Exception {
+        StrokeBuffer strokes = sampleSignature();
+        // 每个采样点原始占用 4+4+8+4 字节，矢量格式应当小得多
+        assertTrue(encode(strokes).length < strokes.size() * 6);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedData_isRejected() throws Exception {
+        byte[] encoded = encode(sampleSignature());
+        VectorSignatureCodec.decode(new ByteArrayInputStream(Arrays.copyOf(encoded, encoded.length / 2)));
+    }
+
+    private static byte[] encode(StrokeBuffer strokes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        VectorSignatureCodec.encode(strokes, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 生成三笔以120Hz采样的曲线。
+     */
+    private static StrokeBuffer sampleSignature() {
+        StrokeBuffer strokes = new StrokeBuffer();
+        strokes.setCanvasSize(1080, 1080);
+        long time = 1_000_000L;
+        for (int stroke = 0; stroke < 3; stroke++) {
+            strokes.beginStroke();
+            for (int i = 0; i < 300; i++) {
+                float t = i / 300f;
+                strokes.add(100 + stroke * 300 + 250 * t, 540 + 200 * (float) Math.sin(t * 12 + stroke), time, 0.3f + 0.5f * t);
+                time += 8;
+            }
+            time += 400;
+        }
+        return strokes;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.project;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * 并行 ZIP 导出的本地单元测试。
+ */
+public class ZipExportEngineTest {
+
+    private static Map<String, byte[]> unzip(byte[] zip) throws IOException {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(zip))) {
+            for (ZipEntry entry; (entry = in.getNextEntry()) != null; ) {
+                ByteArrayOutputStream data = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int n; (n = in.read(buffer)) != -1; ) {
+                    data.write(buffer, 0, n);
+                }
+                entries.put(entry.getName(), data.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    @Test
+    public void run_writesEveryEntry_skipsFailuresAndRenamesDuplicates() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try {
+            List<ZipExportEngine.Job> jobs = new ArrayList<>();
+            byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 1, 2, 3};
+            for (int i = 0; i < 40; i++) {
+                int index = i;
+                jobs.add(() -> {
+                    if (index == 7) {
+                        throw new IOException("无法解密");
+                    }
+                    byte[] data = index % 2 == 0 ? png.clone() : ("签名" + index).getBytes(StandardCharsets.UTF_8);
+                    return new ZipExportEngine.Entry(index < 3 ? "same.png" : "sig" + index, data);
+                });
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ZipExportEngine.Result result = new ZipExportEngine(workers, 8).run(jobs, out, null);
+
+            assertFalse(result.cancelled);
+            assertEquals(39, result.exported);
+            assertEquals(1, result.failed.size());
+            assertEquals(7, (int) result.failed.get(0));
+            Map<String, byte[]> entries = unzip(out.toByteArray());
+            assertEquals(39, entries.size());
+            assertTrue(entries.containsKey("same.png"));
+            assertTrue(entries.containsKey("same (2).png"));
+            assertTrue(entries.containsKey("same (3).png"));
+            assertArrayEquals(png, entries.get("sig4"));
+            assertEquals("签名9", new String(entries.get("sig9"), StandardCharsets.UTF_8));
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void run_treatsErrorInJobAsFailedEntryInsteadOfHanging() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        try {
+            List<ZipExportEngine.Job> jobs = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                int index = i;
+                jobs.add(() -> {
+                    if (index == 2) {
+                        throw new OutOfMemoryError("位图太大");
+                    }
+                    return new ZipExportEngine.Entry("sig" + index, new byte[]{(byte) index});
+                });
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ZipExportEngine.Result result = new ZipExportEngine(workers, 2).run(jobs, out, null);
+
+            assertEquals(4, result.exported);
+            assertEquals(1, result.failed.size());
+            assertEquals(2, (int) result.failed.get(0));
+            assertEquals(4, unzip(out.toByteArray()).size());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void run_neverHasMoreThanMaxInFlightEntriesOutstanding() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try {
+            AtomicInteger produced = new AtomicInteger();
+            AtomicInteger maxOutstanding = new AtomicInteger();
+            AtomicInteger written = new AtomicInteger();
+            List<ZipExportEngine.Job> jobs = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                int index = i;
+                jobs.add(() -> {
+                    int outstanding = produced.incrementAndGet() - written.get();
+                    maxOutstanding.accumulateAndGet(outstanding, Math::max);
+                    return new ZipExportEngine.Entry("e" + index, new byte[64]);
+                });
+            }
+            ZipExportEngine.Result result = new ZipExportEngine(workers, 3).run(jobs, new ByteArrayOutputStream(),
+                    (completed, failed, total) -> written.set(completed));
+            assertEquals(100, result.exported);
+            assertTrue("outstanding " + maxOutstanding.get(), maxOutstanding.get() <= 3);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void cancel_stopsBeforeAllEntriesAreWritten() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch firstWritten = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<ZipExportEngine.Job> jobs = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                int index = i;
+                jobs.add(() -> {
+                    if (index > 0) {
+                        release.await();  // 第一个条目之后的条目一直等到取消
+                    }
+                    return new ZipExportEngine.Entry("e" + index, new byte[16]);
+                });
+            }
+            ZipExportEngine engine = new ZipExportEngine(workers, 4);
+            Thread canceller = new Thread(() -> {
+                try {
+                    firstWritten.await();
+                } catch (InterruptedException ignored) {
+                }
+                engine.cancel();
+                release.countDown();
+            });
+            canceller.start();
+            ZipExportEngine.Result result = engine.run(jobs, new ByteArrayOutputStream(),
+                    (completed, failed, total) -> firstWritten.countDown());
+            canceller.join();
+            assertTrue(result.cancelled);
+            assertTrue(result.exported < jobs.size());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_1_8
+    targetCompatibility = JavaVersion.VERSION_1_8
+}
+
+// 直接编译 app 模块中不依赖 Android 框架的加密代码，保证基准测试测量的就是应用实际使用的实现
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/example/project/AESUtil.java",
+                "com/example/project/CipherEngine.java",
+                "com/example/project/ChunkedCipherInputStream.java",
+                "com/example/project/ChunkedCipherOutputStream.java",
+            )
+        }
+    }
+}
+
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // 输出机器可读的JSON结果，便于在发布前与基线对比
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
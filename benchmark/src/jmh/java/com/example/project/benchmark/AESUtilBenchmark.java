@@ -0,0 +1,108 @@
+package com.example.project.benchmark;
+
+import com.example.project.AESUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+
+/**
+ * AESUtilBenchmark 类测量 AESUtil 的密钥生成、整体加解密和流式加解密在不同数据量下的耗时。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AESUtilBenchmark {
+
+    // 数据量从4KB到8MB
+    @Param({"4096", "65536", "1048576", "8388608"})
+    public int payloadSize;
+
+    private SecretKey key;              // 加解密使用的密钥
+    private byte[] plaintext;           // 明文数据
+    private byte[] ciphertext;          // 整体加密后的密文
+    private byte[] streamCiphertext;    // 流式加密后的密文
+    private byte[] readBuffer;          // 读取解密流时使用的缓冲区
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        key = AESUtil.generateKey();
+        plaintext = new byte[payloadSize];
+        new Random(42).nextBytes(plaintext);
+        ciphertext = AESUtil.encrypt(plaintext, key);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payloadSize + payloadSize / 16 + 64);
+        try (OutputStream encrypting = AESUtil.newEncryptingStream(out, key)) {
+            encrypting.write(plaintext);
+        }
+        streamCiphertext = out.toByteArray();
+        readBuffer = new byte[8192];
+    }
+
+    @Benchmark
+    public SecretKey generateKey() throws Exception {
+        return AESUtil.generateKey();
+    }
+
+    @Benchmark
+    public byte[] encrypt() throws Exception {
+        return AESUtil.encrypt(plaintext, key);
+    }
+
+    @Benchmark
+    public byte[] decrypt() throws Exception {
+        return AESUtil.decrypt(ciphertext, key);
+    }
+
+    @Benchmark
+    public void streamEncrypt(Blackhole blackhole) throws Exception {
+        CountingOutputStream sink = new CountingOutputStream();
+        try (OutputStream encrypting = AESUtil.newEncryptingStream(sink, key)) {
+            encrypting.write(plaintext);
+        }
+        blackhole.consume(sink.count);
+    }
+
+    @Benchmark
+    public void streamDecrypt(Blackhole blackhole) throws Exception {
+        try (InputStream decrypting = AESUtil.newDecryptingStream(new ByteArrayInputStream(streamCiphertext), key)) {
+            int n;
+            while ((n = decrypting.read(readBuffer)) != -1) {
+                blackhole.consume(n);
+            }
+        }
+    }
+
+    /**
+     * 只统计字节数的输出流，避免把写入内存数组的开销计入加密耗时。
+     */
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.project.benchmark;
+
+import com.example.project.AESUtil;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKey;
+import javax.imageio.ImageIO;
+
+/**
+ * SignatureRoundTripBenchmark 类测量签名保存和解密展示的完整链路：
+ * PNG编码 → 加密（SignatureActivity.saveSignature）以及解密 → PNG解码（FilesFragment.decryptAndDisplayImage）。
+ * JVM上没有 Bitmap.compress 和 BitmapFactory，这里用 ImageIO 的PNG编解码器代替。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SignatureRoundTripBenchmark {
+
+    // 签名视图的边长（像素），覆盖普通手机到高分辨率平板
+    @Param({"720", "1440", "2560"})
+    public int viewSize;
+
+    private SecretKey key;           // 加解密使用的密钥
+    private BufferedImage signature; // 模拟的签名图像
+    private byte[] encryptedFile;    // 预先生成的加密文件内容
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        key = AESUtil.generateKey();
+        signature = renderSignature(viewSize);
+        encryptedFile = encodeAndEncrypt();
+    }
+
+    @Benchmark
+    public byte[] encodeAndEncrypt() throws IOException {
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        try (OutputStream encrypting = AESUtil.newEncryptingStream(file, key)) {
+            if (!ImageIO.write(signature, "png", encrypting)) {
+                throw new IOException("No PNG writer");
+            }
+        }
+        return file.toByteArray();
+    }
+
+    @Benchmark
+    public BufferedImage decryptAndDecode() throws Exception {
+        try (InputStream decrypting = AESUtil.openDecryptingStream(new ByteArrayInputStream(encryptedFile), key)) {
+            return ImageIO.read(decrypting);
+        }
+    }
+
+    @Benchmark
+    public BufferedImage roundTrip() throws Exception {
+        byte[] file = encodeAndEncrypt();
+        try (InputStream decrypting = AESUtil.openDecryptingStream(new ByteArrayInputStream(file), key)) {
+            return ImageIO.read(decrypting);
+        }
+    }
+
+    /**
+     * 在透明背景上绘制若干条随机笔画，模拟 SignatureView 生成的 ARGB_8888 位图。
+     */
+    private static BufferedImage renderSignature(int size) {
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = image.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setColor(Color.BLACK);
+        g.setStroke(new BasicStroke(5f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+        Random random = new Random(7);
+        for (int stroke = 0; stroke < 6; stroke++) {
+            Path2D.Float path = new Path2D.Float();
+            float x = size * (0.1f + 0.8f * random.nextFloat());
+            float y = size * (0.3f + 0.4f * random.nextFloat());
+            path.moveTo(x, y);
+            for (int i = 0; i < 200; i++) {
+                x = Math.max(0, Math.min(size, x + (random.nextFloat() - 0.45f) * size / 60f));
+                y = Math.max(0, Math.min(size, y + (random.nextFloat() - 0.5f) * size / 40f));
+                path.lineTo(x, y);
+            }
+            g.draw(path);
+        }
+        g.dispose();
+        return image;
+    }
+}
@@ -22,3 +22,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "Project"
 include(":app")
+include(":benchmark")